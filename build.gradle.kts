@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "org.example"
@@ -21,12 +22,48 @@ dependencies {
     implementation("org.apache.commons:commons-lang3:3.20.0")
     implementation("it.unimi.dsi:fastutil-core:8.5.18")
     implementation("de.siegmar:fastcsv:4.1.0")
+    // The maintained fork of org.lz4:lz4-java (same net.jpountz packages).
+    implementation("at.yawk.lz4:lz4-java:1.10.1")
 
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
+// MeteoFieldScanner : SIMD masks (scalar if the module is not added at runtime). MeteoVectorMasks is the only class
+// requiring the incubator module : compiled on its own and loaded reflectively (i.e., no incubator warning elsewhere).
+val vector: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>(vector.compileJavaTaskName) {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+dependencies {
+    testRuntimeOnly(vector.output)
+    "jmhRuntimeOnly"(vector.output)
+}
+
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
+// ./gradlew jmh (-Pjmh.includes=MeteoParsingBenchmark)
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    jvmArgsAppend.set(listOf("--add-modules", "jdk.incubator.vector"))
+
+    if (project.hasProperty("jmh.includes")) {
+        includes.set(listOf(project.property("jmh.includes").toString()))
+    }
+}
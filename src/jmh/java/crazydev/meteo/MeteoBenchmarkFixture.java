@@ -0,0 +1,78 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A fixed (seeded) synthetic H file and its stations for the benchmarks (see MeteoSynthetic).
+ */
+class MeteoBenchmarkFixture
+{
+    static final int DEPARTMENT = 13;
+
+    static final String PERIOD = "2010-2019";
+
+    static final int STATIONS = 10;
+
+    // 2019 : 365 days.
+    static final int ROWS = STATIONS * 365 * 24;
+
+    private static MeteoSynthetic synthetic(Path folder)
+    {
+        return new MeteoSynthetic(folder, new int[]{DEPARTMENT}, STATIONS, 2019, 2019).seed(42);
+    }
+
+    static int stationId(int station)
+    {
+        return MeteoSynthetic.stationId(DEPARTMENT, station);
+    }
+
+    /**
+     * The H folder (see MeteoH) with a single historic file : the hourly observations of 2019.
+     */
+    static Path createH(Path folder) throws IOException
+    {
+        synthetic(folder).write();
+
+        return new MeteoH(folder.toString()).historic(DEPARTMENT, PERIOD);
+    }
+
+    /**
+     * The stations file (see MeteoStations) of the H file.
+     */
+    static Path createStations(Path file) throws IOException
+    {
+        synthetic(file.getParent()).writeStations(file);
+
+        return file;
+    }
+
+    /**
+     * The rows of the observations file generated from the H file (see MeteoTemperatures).
+     */
+    static String[][] observations(Path h) throws IOException
+    {
+        final MeteoTemperatures.ObsBatch batch = new MeteoTemperatures.ObsBatch();
+
+        try (final var reader = CsvReader.builder().fieldSeparator(";").ofNamedCsvRecord(new GZIPInputStream(Files.newInputStream(h))))
+        {
+            reader.forEach(record -> {
+
+                final Double temp = MeteoUtils.parseObservationTemperature(record.getField(MeteoH.F_T));
+
+                batch.add(
+                        MeteoUtils.parseInteger(record.getField(MeteoH.F_NUM_POSTE)),
+                        MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, record.getField(MeteoH.F_AAAAMMJJHH)),
+                        temp != null ? temp : 0.0,
+                        1
+                );
+            });
+        }
+
+        return batch.batch.toArray(new String[0][]);
+    }
+}
@@ -0,0 +1,106 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The rows/sec of the compression codecs (see MeteoCodec) writing and reading an observations file; the round trip
+ * is checked (and the compressed size logged) at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MeteoCodecBenchmark
+{
+    @Param({"gzip", "gzip-1", "lz4", "none"})
+    private String codecName;
+
+    private MeteoCodec codec;
+
+    private String[][] rows;
+
+    private byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        codec = MeteoCodec.of(codecName);
+
+        final Path folder = Files.createTempDirectory("meteo-jmh");
+
+        try
+        {
+            rows = MeteoBenchmarkFixture.observations(MeteoBenchmarkFixture.createH(folder.resolve("H")));
+        }
+        finally
+        {
+            try (final Stream<Path> paths = Files.walk(folder))
+            {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                {
+                    Files.delete(path);
+                }
+            }
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out);
+        compressed = out.toByteArray();
+
+        // Round trip.
+        final String[][] read;
+
+        try (final var reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(codec.input(new ByteArrayInputStream(compressed))))
+        {
+            read = reader.stream().map(record -> record.getFields().toArray(new String[0])).toArray(String[][]::new);
+        }
+
+        if (!Arrays.deepEquals(rows, read))
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        MeteoLoggers.GENERAL.warn("%s : %s".formatted(codec, MeteoUtils.formatSize(compressed.length)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void write() throws IOException
+    {
+        write(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void read(Blackhole bh) throws IOException
+    {
+        try (final var reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(codec.input(new ByteArrayInputStream(compressed))))
+        {
+            reader.forEach(record -> bh.consume(record.getField(2)));
+        }
+    }
+
+    private void write(OutputStream out) throws IOException
+    {
+        try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(';').build(codec.output(out)))
+        {
+            for (String[] row : rows)
+            {
+                writer.writeRecord(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The rows/sec of the extraction of a synthetic H file (see MeteoBenchmarkFixture) : reading, writing and the
+ * whole MeteoTemperatures pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MeteoExtractionBenchmark
+{
+    private Path folder;
+
+    private Path h;
+
+    private MeteoStations stations;
+
+    private String[][] rows;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        folder = Files.createTempDirectory("meteo-jmh");
+
+        h = MeteoBenchmarkFixture.createH(folder.resolve("H"));
+
+        stations = new MeteoStations(MeteoBenchmarkFixture.createStations(folder.resolve("stations.csv")), folder);
+        stations.build();
+
+        Files.createDirectories(folder.resolve("ic3data"));
+
+        // The rows of the generated observations file.
+        rows = MeteoBenchmarkFixture.observations(h);
+
+        // Same fields as the CSV reader.
+        final List<String> expected = new ArrayList<>();
+        final List<String> actual = new ArrayList<>();
+
+        try (final var reader = CsvReader.builder().fieldSeparator(";").ofNamedCsvRecord(new GZIPInputStream(Files.newInputStream(h))))
+        {
+            reader.forEach(record -> expected.add(String.join(";", record.getFields())));
+        }
+
+        try (final MeteoFieldScanner scanner = new MeteoFieldScanner(new GZIPInputStream(Files.newInputStream(h)), ';'))
+        {
+            scanner.forEach(row -> {
+
+                final String[] fields = new String[row.getHeader().size()];
+
+                for (int ii = 0; ii < fields.length; ii++)
+                {
+                    fields[ii] = row.getField(ii);
+                }
+
+                actual.add(String.join(";", fields));
+            });
+        }
+
+        if (!expected.equals(actual))
+        {
+            throw new RuntimeException("OUCH!");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        try (final Stream<Path> paths = Files.walk(folder))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void readH(Blackhole bh) throws IOException
+    {
+        try (final var reader = CsvReader.builder().fieldSeparator(";").ofNamedCsvRecord(new GZIPInputStream(Files.newInputStream(h))))
+        {
+            reader.forEach(record -> bh.consume(record.getField(MeteoH.F_T)));
+        }
+    }
+
+    /**
+     * SIMD masks if the jdk.incubator.vector module is available.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void readHScanner(Blackhole bh) throws IOException
+    {
+        readH(bh, MeteoFieldScanner.MASKS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void readHScannerScalar(Blackhole bh) throws IOException
+    {
+        readH(bh, new MeteoFieldScanner.ScalarMasks());
+    }
+
+    private void readH(Blackhole bh, MeteoFieldScanner.Masks masks) throws IOException
+    {
+        try (final MeteoFieldScanner scanner = new MeteoFieldScanner(new GZIPInputStream(Files.newInputStream(h)), ';', masks))
+        {
+            scanner.forEach(row -> bh.consume(row.getField(MeteoH.F_T)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void writeCsv() throws IOException
+    {
+        write(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void writeCsvGzip() throws IOException
+    {
+        write(new GZIPOutputStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * The whole pass (read, parse, checks, write) as run by MeteoShell (i.e., 8 threads but a single file).
+     */
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void extract() throws IOException
+    {
+        new MeteoTemperatures(new MeteoH(folder.resolve("H").toString()), folder.resolve("ic3data"), stations)
+                .write(MeteoMode.TEMPERATURES, MeteoBenchmarkFixture.PERIOD, MeteoBenchmarkFixture.DEPARTMENT);
+    }
+
+    private void write(OutputStream out) throws IOException
+    {
+        try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(';').build(out))
+        {
+            for (String[] row : rows)
+            {
+                writer.writeRecord(row);
+            }
+        }
+    }
+}
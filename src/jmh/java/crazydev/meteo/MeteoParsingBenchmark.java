@@ -0,0 +1,166 @@
+package crazydev.meteo;
+
+import org.joda.time.LocalDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The per field/row costs of the extraction (see MeteoTemperatures).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeteoParsingBenchmark
+{
+    private static final int SAMPLES = 1024;
+
+    private final String[] timestamps = new String[SAMPLES];
+
+    private final LocalDateTime[] times = new LocalDateTime[SAMPLES];
+
+    private final String[] temps = new String[SAMPLES];
+
+    private final String[] qualities = new String[SAMPLES];
+
+    private final int[] stationIds = new int[SAMPLES];
+
+    private MeteoStations stations;
+
+    private MeteoUniqueObservations uniques;
+
+    private MeteoUniqueObservations uniquesBudget;
+
+    private Path spills;
+
+    private MeteoMemoryBudget budget;
+
+    private MeteoTemperatures.ObsBatch batch;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException
+    {
+        final SplittableRandom random = new SplittableRandom(42);
+
+        for (int ii = 0; ii < SAMPLES; ii++)
+        {
+            // Distinct within a year.
+            times[ii] = new LocalDateTime(2019, 1, 1, 0, 0).plusHours(ii * 8 + random.nextInt(8));
+            timestamps[ii] = times[ii].toString(MeteoH.TIMESTAMP_FORMAT);
+            temps[ii] = String.valueOf((random.nextInt(500) - 100) / 10.0);
+            qualities[ii] = String.valueOf(random.nextInt(3));
+            stationIds[ii] = MeteoBenchmarkFixture.stationId(random.nextInt(MeteoBenchmarkFixture.STATIONS + 2) /* a few missing stations */);
+        }
+
+        final Path file = MeteoBenchmarkFixture.createStations(Files.createTempFile("stations", ".csv"));
+
+        stations = new MeteoStations(file, file.getParent());
+        stations.build();
+
+        Files.delete(file);
+
+        spills = Files.createTempDirectory("spills");
+        budget = new MeteoMemoryBudget(64 * 1024 * 1024, spills);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException
+    {
+        try (final Stream<Path> paths = Files.walk(spills))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws IOException
+    {
+        uniques.close();
+        uniquesBudget.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration()
+    {
+        uniques = new MeteoUniqueObservations(null);
+        uniquesBudget = new MeteoUniqueObservations(budget);
+        batch = new MeteoTemperatures.ObsBatch();
+        next = 0;
+    }
+
+    @Benchmark
+    public LocalDateTime parseDateTime()
+    {
+        return MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, timestamps[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public Double parseTemperature()
+    {
+        return MeteoUtils.parseObservationTemperature(temps[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public Integer parseQuality()
+    {
+        return MeteoUtils.parseObservationQuality(qualities[next++ & (SAMPLES - 1)]);
+    }
+
+    /**
+     * A new station every SAMPLES calls : the keys are unique and the set grows as within a file.
+     */
+    @Benchmark
+    public long assertUniqueObservations()
+    {
+        final int ii = next++;
+
+        uniques.add(ii >>> 10, times[ii & (SAMPLES - 1)]);
+
+        return uniques.count();
+    }
+
+    /**
+     * Same as above with a memory budget : appended keys, sorted runs spilled once the budget is reached.
+     */
+    @Benchmark
+    public long assertUniqueObservationsBudget()
+    {
+        final int ii = next++;
+
+        uniquesBudget.add(ii >>> 10, times[ii & (SAMPLES - 1)]);
+
+        return uniquesBudget.count();
+    }
+
+    @Benchmark
+    public MeteoStation getStationEx()
+    {
+        return stations.getStationEx(stationIds[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int encodeObservation()
+    {
+        final int ii = next++ & (SAMPLES - 1);
+
+        if (ii == 0)
+        {
+            batch.batch.clear();
+        }
+
+        batch.add(stationIds[ii], times[ii], 12.3, 1);
+
+        return batch.batch.size();
+    }
+}
@@ -0,0 +1,119 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The rows/sec of the decoding of the observations : the series file (see MeteoSeriesFile) vs. the observations file
+ * it is written from (see MeteoTemperatures); both sizes are logged at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MeteoSeriesBenchmark
+{
+    private Path folder;
+
+    private Path observations;
+
+    private MeteoSeriesFile.Reader series;
+
+    private int[] stationIds;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        folder = Files.createTempDirectory("meteo-jmh");
+
+        MeteoBenchmarkFixture.createH(folder.resolve("H"));
+
+        final MeteoStations stations = new MeteoStations(MeteoBenchmarkFixture.createStations(folder.resolve("stations.csv")), folder);
+        stations.build();
+
+        final Path ic3data = Files.createDirectories(folder.resolve("ic3data"));
+
+        new MeteoTemperatures(new MeteoH(folder.resolve("H").toString()), ic3data, stations)
+                .write(MeteoMode.TEMPERATURES, MeteoBenchmarkFixture.PERIOD, MeteoBenchmarkFixture.DEPARTMENT);
+
+        observations = ic3data.resolve("observations-" + MeteoBenchmarkFixture.PERIOD + ".csv.gz");
+
+        final Path file = folder.resolve("observations.series");
+
+        try (final MeteoColumnStore store = MeteoColumnStore.loadObservations(ic3data))
+        {
+            MeteoSeriesFile.write(store, file);
+
+            stationIds = new int[store.stationCount()];
+
+            for (int station = 0; station < stationIds.length; station++)
+            {
+                stationIds[station] = store.stationId(station);
+            }
+        }
+
+        series = MeteoSeriesFile.open(file);
+
+        MeteoLoggers.GENERAL.warn("%s : %s [ series : %s ] [ ratio : %.1f ]".formatted(
+                observations.getFileName(),
+                MeteoUtils.formatSize(Files.size(observations)),
+                MeteoUtils.formatSize(Files.size(file)),
+                (double) Files.size(observations) / Files.size(file)
+        ));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        series.close();
+
+        try (final Stream<Path> paths = Files.walk(folder))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * The fields parsed as the column store does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void readObservations(Blackhole bh) throws IOException
+    {
+        try (final var reader = CsvReader.builder().fieldSeparator(';').ofNamedCsvRecord(MeteoCodec.ofFile(observations).input(Files.newInputStream(observations))))
+        {
+            reader.forEach(record -> {
+
+                bh.consume(MeteoUtils.parseInteger(record.getField(0)));
+                bh.consume(MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, record.getField(1)));
+                bh.consume(MeteoUtils.parseDouble(record.getField(2)));
+                bh.consume(MeteoUtils.parseInteger(record.getField(3)));
+            });
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MeteoBenchmarkFixture.ROWS)
+    public void readSeries(Blackhole bh) throws IOException
+    {
+        for (int stationId : stationIds)
+        {
+            series.read(stationId, 1780, 2026, (id, hour, temp, quality) -> {
+
+                bh.consume(hour);
+                bh.consume(temp);
+                bh.consume(quality);
+            });
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package crazydev.meteo;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression of the generated files (name.csv + extension) : gzip for the icCube inputs (default) and LZ4 or
+ * none for the intermediate files (e.g., loaded by MeteoColumnStore) being much faster to write and read.
+ * <p>
+ * The compressed streams can be concatenated (see MeteoPeriodWriter sorted mode).
+ */
+public class MeteoCodec
+{
+    private enum Kind
+    {
+        GZIP,
+        LZ4,
+        NONE,
+    }
+
+    public static final MeteoCodec GZIP = gzip(Deflater.DEFAULT_COMPRESSION);
+
+    public static final MeteoCodec GZIP_FAST = gzip(Deflater.BEST_SPEED);
+
+    public static final MeteoCodec LZ4 = new MeteoCodec(Kind.LZ4, "lz4", ".lz4", 0);
+
+    public static final MeteoCodec NONE = new MeteoCodec(Kind.NONE, "none", "", 0);
+
+    private final Kind kind;
+
+    public final String name;
+
+    public final String extension;
+
+    private final int level;
+
+    private MeteoCodec(Kind kind, String name, String extension, int level)
+    {
+        this.kind = kind;
+        this.name = name;
+        this.extension = extension;
+        this.level = level;
+    }
+
+    /**
+     * @param level 1 (fastest) to 9 (smallest) or Deflater.DEFAULT_COMPRESSION (6)
+     */
+    public static MeteoCodec gzip(int level)
+    {
+        return new MeteoCodec(Kind.GZIP, level == Deflater.DEFAULT_COMPRESSION ? "gzip" : "gzip-" + level, ".gz", level);
+    }
+
+    /**
+     * @param name e.g., gzip, gzip-1, lz4, none
+     */
+    public static MeteoCodec of(String name)
+    {
+        return switch (name)
+        {
+            case "gzip" -> GZIP;
+            case "lz4" -> LZ4;
+            case "none" -> NONE;
+            default ->
+            {
+                if (!name.startsWith("gzip-"))
+                {
+                    throw new RuntimeException("unknown codec " + name);
+                }
+
+                yield gzip(Integer.parseInt(name.substring("gzip-".length())));
+            }
+        };
+    }
+
+    /**
+     * @return the codec of a generated file (name.csv + extension); null if not a generated file.
+     */
+    @Nullable
+    public static MeteoCodec ofFile(Path file)
+    {
+        final String name = file.getFileName().toString();
+
+        if (name.endsWith(".csv.gz"))
+        {
+            return GZIP;
+        }
+
+        if (name.endsWith(".csv.lz4"))
+        {
+            return LZ4;
+        }
+
+        if (name.endsWith(".csv"))
+        {
+            return NONE;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param name e.g., observations-2010-2019
+     */
+    public Path file(Path folder, String name)
+    {
+        return folder.resolve(name + ".csv" + extension);
+    }
+
+    /**
+     * @return the name of a generated file without .csv + extension (e.g., observations-2010-2019).
+     */
+    public String baseName(Path file)
+    {
+        final String name = file.getFileName().toString();
+        return name.substring(0, name.length() - ".csv".length() - extension.length());
+    }
+
+    public OutputStream output(OutputStream out) throws IOException
+    {
+        return switch (kind)
+        {
+            case GZIP -> new GZIPOutputStream(out, 1 << 16)
+            {
+                {
+                    def.setLevel(level);
+                }
+            };
+
+            case LZ4 -> new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_1MB);
+
+            case NONE -> new BufferedOutputStream(out, 1 << 16);
+        };
+    }
+
+    /**
+     * Reads the concatenated streams as a single one.
+     */
+    public InputStream input(InputStream in) throws IOException
+    {
+        return switch (kind)
+        {
+            case GZIP -> new GZIPInputStream(in, 1 << 16);
+            case LZ4 -> new LZ4FrameInputStream(in);
+            case NONE -> new BufferedInputStream(in, 1 << 16);
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,835 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.reader.NamedCsvRecord;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * All the temperature observations loaded off-heap into columns (11 bytes per row) sorted by station and time :
+ * <pre>
+ *     station  : int   (dense station index)
+ *     hour     : int   (epoch hour : see MeteoUtils.epochHour)
+ *     temp     : short (1/10 °C)
+ *     quality  : byte
+ * </pre>
+ * The rows of a station are indexed (offset, count) and scanned in parallel (fork/join) : see MeteoScan.
+ */
+public class MeteoColumnStore implements AutoCloseable
+{
+    // Rows count of a fork/join leaf.
+    private static final long SCAN_THRESHOLD = 1_000_000;
+
+    private final Arena arena;
+
+    private final long rowCount;
+
+    private final MemorySegment stationColumn;
+
+    private final MemorySegment hourColumn;
+
+    private final MemorySegment tempColumn;
+
+    private final MemorySegment qualityColumn;
+
+    // dense station index -> station ID (sorted)
+    private final int[] stationIds;
+
+    // dense station index -> department
+    private final int[] stationDepartments;
+
+    // dense station index -> first row (length : station count + 1)
+    private final long[] stationOffsets;
+
+    private MeteoColumnStore(Arena arena, long rowCount, MemorySegment stationColumn, MemorySegment hourColumn, MemorySegment tempColumn, MemorySegment qualityColumn, int[] stationIds, int[] stationDepartments, long[] stationOffsets)
+    {
+        this.arena = arena;
+        this.rowCount = rowCount;
+
+        this.stationColumn = stationColumn;
+        this.hourColumn = hourColumn;
+        this.tempColumn = tempColumn;
+        this.qualityColumn = qualityColumn;
+
+        this.stationIds = stationIds;
+        this.stationDepartments = stationDepartments;
+        this.stationOffsets = stationOffsets;
+    }
+
+    public static MeteoColumnStore load(MeteoH in, @Nullable String periodFilter, @Nullable Integer departmentFilter)
+    {
+        return load(in, MeteoFilter.of(periodFilter, departmentFilter));
+    }
+
+    /**
+     * @param filter the files pruned by name and the rows rejected before being parsed (see MeteoFilter).
+     */
+    public static MeteoColumnStore load(MeteoH in, MeteoFilter filter)
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final List<FileColumns> files = new ArrayList<>();
+
+        in.forEachPD(filter, (department, period, path) -> {
+
+            // ---------------------------------------------------------------------------------------------------------
+            // MT callback.
+            // ---------------------------------------------------------------------------------------------------------
+
+            if (!Files.exists(path))
+            {
+                return true;
+            }
+
+            final FileColumns file = FileColumns.load(department, period, path, filter.hasRowFilter() ? filter : null);
+
+            synchronized (files)
+            {
+                files.add(file);
+            }
+
+            return true;
+        });
+
+        return build(files, startMS);
+    }
+
+    /**
+     * Loads the observations-period.csv.gz files (or any other codec, see MeteoCodec) as generated by MeteoTemperatures
+     * (the department of a station is deduced from its ID : DDCCCNNN).
+     */
+    public static MeteoColumnStore loadObservations(Path temperatures) throws IOException
+    {
+        return loadObservations(temperatures, null);
+    }
+
+    /**
+     * Only the members of the files that may match (see MeteoZoneMap) : e.g., a department or a time range; the other
+     * rows of a loaded member are kept. The files without any zone map are loaded entirely.
+     *
+     * @param zones null : all the members
+     */
+    public static MeteoColumnStore loadObservations(Path temperatures, @Nullable Predicate<MeteoZoneMap.Zone> zones) throws IOException
+    {
+        return loadObservations(temperatures, zones, null);
+    }
+
+    /**
+     * The keyed files (see MeteoTemperatures.keys()) : the station keys mapped back to their IDs and the hour keys
+     * used as they are (i.e., epoch hours, see MeteoHours). Loaded entirely : their zones are in the keys space.
+     *
+     * @param stationIds the station IDs of the keys (see MeteoStations.ids()); null : the keyed files are rejected.
+     */
+    public static MeteoColumnStore loadObservations(Path temperatures, @Nullable Predicate<MeteoZoneMap.Zone> zones, @Nullable IntUnaryOperator stationIds) throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final List<Path> paths = new ArrayList<>();
+
+        try (final var stream = Files.list(temperatures))
+        {
+            stream.filter(path -> {
+                final String name = path.getFileName().toString();
+                return name.startsWith("observations-") && MeteoCodec.ofFile(path) != null;
+            }).forEach(paths::add);
+        }
+
+        final List<Path> keyedPaths = new ArrayList<>();
+
+        for (Path path : paths)
+        {
+            if (isKeyed(path))
+            {
+                if (stationIds == null)
+                {
+                    throw new IOException(path + " : keyed observations (STATION_KEY;HOUR_KEY) loaded without the station IDs of the keys");
+                }
+
+                keyedPaths.add(path);
+            }
+        }
+
+        final List<FileColumns> files = new ArrayList<>();
+
+        try (final ExecutorService pool = Executors.newFixedThreadPool(8))
+        {
+            final List<Future<FileColumns>> futures = new ArrayList<>();
+
+            for (Path path : paths)
+            {
+                final String period = Objects.requireNonNull(MeteoCodec.ofFile(path)).baseName(path).substring("observations-".length());
+
+                final boolean keyed = keyedPaths.contains(path);
+
+                futures.add(pool.submit(() -> FileColumns.loadObservations(period, path, keyed ? null : zones, keyed ? stationIds : null)));
+            }
+
+            try
+            {
+                for (Future<FileColumns> future : futures)
+                {
+                    files.add(future.get());
+                }
+            }
+            catch (ExecutionException | InterruptedException ex)
+            {
+                throw new RuntimeException("OUCH!", ex);
+            }
+        }
+
+        return build(files, startMS);
+    }
+
+    private static MeteoColumnStore build(List<FileColumns> files, long startMS)
+    {
+        try
+        {
+            return buildEx(files, startMS);
+        }
+        finally
+        {
+            files.forEach(FileColumns::close);
+        }
+    }
+
+    private static MeteoColumnStore buildEx(List<FileColumns> files, long startMS)
+    {
+        // Periods do not overlap : copying the files in time order keeps the rows of each station sorted.
+        files.sort(Comparator.comparing((FileColumns o) -> MeteoInterval.of(o.period).from));
+
+        final Int2IntOpenHashMap rowCounts = new Int2IntOpenHashMap();
+        final Int2IntOpenHashMap departments = new Int2IntOpenHashMap();
+
+        for (FileColumns file : files)
+        {
+            for (int rr = 0; rr < file.runStationIds.length; rr++)
+            {
+                final int stationId = file.runStationIds[rr];
+                final int department = file.runDepartments[rr];
+
+                if (departments.containsKey(stationId) && departments.get(stationId) != department)
+                {
+                    throw new RuntimeException("OUCH!");
+                }
+
+                departments.put(stationId, department);
+                rowCounts.addTo(stationId, file.runCounts[rr]);
+            }
+        }
+
+        final int[] stationIds = rowCounts.keySet().toIntArray();
+        Arrays.sort(stationIds);
+
+        final int[] stationDepartments = new int[stationIds.length];
+        final long[] stationOffsets = new long[stationIds.length + 1];
+
+        for (int ss = 0; ss < stationIds.length; ss++)
+        {
+            stationDepartments[ss] = departments.get(stationIds[ss]);
+            stationOffsets[ss + 1] = stationOffsets[ss] + rowCounts.get(stationIds[ss]);
+        }
+
+        final long rowCount = stationOffsets[stationIds.length];
+
+        final Arena arena = Arena.ofShared();
+
+        // Column by column : the column of each file is released once copied (i.e., the files and the store are not
+        // held entirely at once, the peak is about the size of the store).
+        final MemorySegment hourColumn = copy(arena, files, stationIds, stationOffsets, Integer.BYTES, file -> file.hours);
+        final MemorySegment tempColumn = copy(arena, files, stationIds, stationOffsets, Short.BYTES, file -> file.temps);
+        final MemorySegment qualityColumn = copy(arena, files, stationIds, stationOffsets, 1, file -> file.qualities);
+
+        final MemorySegment stationColumn = arena.allocate(rowCount * Integer.BYTES, Integer.BYTES);
+
+        for (int ss = 0; ss < stationIds.length; ss++)
+        {
+            for (long row = stationOffsets[ss]; row < stationOffsets[ss + 1]; row++)
+            {
+                stationColumn.setAtIndex(ValueLayout.JAVA_INT, row, ss);
+            }
+        }
+
+        final MeteoColumnStore store = new MeteoColumnStore(arena, rowCount, stationColumn, hourColumn, tempColumn, qualityColumn, stationIds, stationDepartments, stationOffsets);
+
+        MeteoLoggers.GENERAL.warn("column store in %s [ stations : %s ] [ rows : %s ] [ size : %s ]".formatted(
+                MeteoUtils.formatMillisEx(startMS),
+                MeteoUtils.formatNice(stationIds.length),
+                MeteoUtils.formatNice(rowCount),
+                MeteoUtils.formatSize(rowCount * 11.0)
+        ));
+
+        return store;
+    }
+
+    /**
+     * The column of every file copied (in order) into a column of the store : each file column closed once copied.
+     */
+    private static MemorySegment copy(Arena arena, List<FileColumns> files, int[] stationIds, long[] stationOffsets, int byteSize, Function<FileColumns, FileColumn> columnOf)
+    {
+        final MemorySegment column = arena.allocate(stationOffsets[stationIds.length] * byteSize, byteSize);
+
+        // dense station index -> next row to write
+        final long[] cursors = Arrays.copyOf(stationOffsets, stationIds.length);
+
+        for (FileColumns file : files)
+        {
+            try (final FileColumn source = columnOf.apply(file))
+            {
+                for (int rr = 0; rr < file.runStationIds.length; rr++)
+                {
+                    final int station = Arrays.binarySearch(stationIds, file.runStationIds[rr]);
+
+                    final long from = file.runOffsets[rr];
+                    final long count = file.runCounts[rr];
+                    final long to = cursors[station];
+
+                    MemorySegment.copy(source.segment, from * byteSize, column, to * byteSize, count * byteSize);
+
+                    cursors[station] += count;
+                }
+            }
+        }
+
+        return column;
+    }
+
+    public long rowCount()
+    {
+        return rowCount;
+    }
+
+    public int stationCount()
+    {
+        return stationIds.length;
+    }
+
+    /**
+     * @return the dense index of the station (or -1).
+     */
+    public int station(int stationId)
+    {
+        final int station = Arrays.binarySearch(stationIds, stationId);
+        return station >= 0 ? station : -1;
+    }
+
+    public int stationId(int station)
+    {
+        return stationIds[station];
+    }
+
+    public int stationDepartment(int station)
+    {
+        return stationDepartments[station];
+    }
+
+    /**
+     * The first row of the station.
+     */
+    public long stationOffset(int station)
+    {
+        return stationOffsets[station];
+    }
+
+    public long stationRowCount(int station)
+    {
+        return stationOffsets[station + 1] - stationOffsets[station];
+    }
+
+    public int rowStation(long row)
+    {
+        return stationColumn.getAtIndex(ValueLayout.JAVA_INT, row);
+    }
+
+    public int hour(long row)
+    {
+        return hourColumn.getAtIndex(ValueLayout.JAVA_INT, row);
+    }
+
+    /**
+     * 1/10 °C
+     */
+    public short temp(long row)
+    {
+        return tempColumn.getAtIndex(ValueLayout.JAVA_SHORT, row);
+    }
+
+    public byte quality(long row)
+    {
+        return qualityColumn.get(ValueLayout.JAVA_BYTE, row);
+    }
+
+    /**
+     * The first row of the station at or after the given epoch hour.
+     */
+    public long lowerBound(int station, int hour)
+    {
+        long lo = stationOffsets[station];
+        long hi = stationOffsets[station + 1];
+
+        while (lo < hi)
+        {
+            final long mid = (lo + hi) >>> 1;
+
+            if (hour(mid) < hour)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * @return grouping key (see MeteoScan.key) -> statistics
+     */
+    public Long2ObjectOpenHashMap<MeteoScan.Stats> scan(MeteoScan scan)
+    {
+        return ForkJoinPool.commonPool().invoke(new ScanTask(scan, 0, stationIds.length));
+    }
+
+    @Override
+    public void close()
+    {
+        arena.close();
+    }
+
+    // Never serialized (i.e., forked within the common pool only).
+    @SuppressWarnings("serial")
+    private class ScanTask extends RecursiveTask<Long2ObjectOpenHashMap<MeteoScan.Stats>>
+    {
+        private final MeteoScan scan;
+
+        // Dense station index : inclusive
+        private final int from;
+
+        // Dense station index : exclusive
+        private final int to;
+
+        ScanTask(MeteoScan scan, int from, int to)
+        {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long2ObjectOpenHashMap<MeteoScan.Stats> compute()
+        {
+            if (to - from > 1 && stationOffsets[to] - stationOffsets[from] > SCAN_THRESHOLD)
+            {
+                final int mid = (from + to) >>> 1;
+
+                final ScanTask left = new ScanTask(scan, from, mid);
+                final ScanTask right = new ScanTask(scan, mid, to);
+
+                left.fork();
+
+                final Long2ObjectOpenHashMap<MeteoScan.Stats> result = right.compute();
+
+                for (Long2ObjectOpenHashMap.Entry<MeteoScan.Stats> entry : left.join().long2ObjectEntrySet())
+                {
+                    final MeteoScan.Stats stats = result.get(entry.getLongKey());
+
+                    if (stats == null)
+                    {
+                        result.put(entry.getLongKey(), entry.getValue());
+                    }
+                    else
+                    {
+                        stats.merge(entry.getValue());
+                    }
+                }
+
+                return result;
+            }
+
+            final Long2ObjectOpenHashMap<MeteoScan.Stats> result = new Long2ObjectOpenHashMap<>();
+
+            for (int station = from; station < to; station++)
+            {
+                if (!scan.isAcceptedStation(stationIds[station], stationDepartments[station]))
+                {
+                    continue;
+                }
+
+                final long end = stationOffsets[station + 1];
+
+                long currentEpochDay = Long.MIN_VALUE;
+                MeteoScan.Stats current = null;
+
+                for (long row = lowerBound(station, scan.fromHour); row < end; row++)
+                {
+                    final int hour = hour(row);
+
+                    if (hour >= scan.toHour)
+                    {
+                        break;
+                    }
+
+                    if (!scan.isAcceptedQuality(quality(row)))
+                    {
+                        continue;
+                    }
+
+                    final long epochDay = Math.floorDiv(hour, 24);
+
+                    if (epochDay != currentEpochDay)
+                    {
+                        currentEpochDay = epochDay;
+                        current = result.computeIfAbsent(scan.key(epochDay), key -> new MeteoScan.Stats());
+                    }
+
+                    current.add(temp(row));
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * A column of a file : its own arena to be released as soon as copied (see build()).
+     */
+    private static class FileColumn implements AutoCloseable
+    {
+        private final Arena arena = Arena.ofShared();
+
+        final MemorySegment segment;
+
+        FileColumn(long count, int byteSize)
+        {
+            this.segment = arena.allocate(count * byteSize, byteSize);
+        }
+
+        @Override
+        public void close()
+        {
+            if (arena.scope().isAlive())
+            {
+                arena.close();
+            }
+        }
+    }
+
+    /**
+     * The temperatures of a file sorted by station and time.
+     */
+    private static class FileColumns implements AutoCloseable
+    {
+        final String period;
+
+        FileColumn hours;
+
+        FileColumn temps;
+
+        FileColumn qualities;
+
+        int[] runStationIds;
+
+        int[] runDepartments;
+
+        int[] runOffsets;
+
+        int[] runCounts;
+
+        FileColumns(String period)
+        {
+            this.period = period;
+        }
+
+        /**
+         * A (period, department) H file.
+         */
+        static FileColumns load(int department, String period, Path path, @Nullable MeteoFilter filter)
+        {
+            final Rows rows = new Rows();
+
+            // station, timestamp, T, QT : resolved from the header (see MeteoTemperatures.UnitScan).
+            final int[] fields = {-1, -1, -1, -1};
+
+            try (final var reader = createCsvReader(path))
+            {
+                reader.forEach(record -> {
+
+                    if (fields[0] == -1)
+                    {
+                        final List<String> header = record.getHeader();
+
+                        fields[0] = MeteoMeasure.field(header, MeteoSource.C_STATION);
+                        fields[1] = MeteoMeasure.field(header, MeteoSource.C_TIMESTAMP);
+                        fields[2] = MeteoMeasure.field(header, MeteoMeasure.T.column);
+                        fields[3] = MeteoMeasure.field(header, MeteoMeasure.T.qualityColumn);
+                    }
+
+                    if (filter != null && !filter.isAcceptedRow(MeteoFilter.digits(record.getField(fields[0])), MeteoFilter.digits(record.getField(fields[1]))))
+                    {
+                        return;
+                    }
+
+                    final Double temp = MeteoUtils.parseObservationTemperature(record.getField(fields[2]));
+
+                    if (temp == null)
+                    {
+                        return;
+                    }
+
+                    final Integer tempQ = MeteoUtils.parseObservationQuality(record.getField(fields[3]));
+                    MeteoUtils.assertObservationQuality(temp, tempQ);
+
+                    final LocalDateTime time = MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, record.getField(fields[1]));
+
+                    rows.add(MeteoUtils.parseInteger(record.getField(fields[0])), time, temp, tempQ);
+                });
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("error while processing " + path, ex);
+            }
+
+            MeteoLoggers.GENERAL.debug("%s @ %s [ rows : %s ]".formatted(period, department, MeteoUtils.formatNice(rows.stationIds.size())));
+
+            return rows.build(period, stationId -> department);
+        }
+
+        /**
+         * An observations-period.csv.gz file (see MeteoTemperatures) : the members accepted by the zones only.
+         *
+         * @param stationIds keyed file : the station IDs of the keys
+         */
+        static FileColumns loadObservations(String period, Path path, @Nullable Predicate<MeteoZoneMap.Zone> zones, @Nullable IntUnaryOperator stationIds)
+        {
+            final Rows rows = new Rows();
+
+            final Consumer<CsvRecord> add = stationIds != null ? record -> rows.addKeyedObservation(record, stationIds) : rows::addObservation;
+
+            try
+            {
+                final MeteoZoneMap zoneMap = zones != null ? MeteoZoneMap.load(path) : null;
+
+                if (zoneMap == null)
+                {
+                    try (final var reader = createCsvReader(path))
+                    {
+                        reader.forEach(add);
+                    }
+                }
+                else
+                {
+                    final MeteoCodec codec = Objects.requireNonNull(MeteoCodec.ofFile(path));
+
+                    int skipped = 0;
+
+                    for (MeteoZoneMap.Zone zone : zoneMap.zones())
+                    {
+                        if (!zones.test(zone))
+                        {
+                            skipped++;
+                            continue;
+                        }
+
+                        try (final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(codec.input(zoneMap.open(zone))))
+                        {
+                            final var it = reader.iterator();
+
+                            if (zone.hasHeader() && it.hasNext())
+                            {
+                                it.next();
+                            }
+
+                            it.forEachRemaining(add);
+                        }
+                    }
+
+                    MeteoLoggers.GENERAL.debug("%s [ zones : %s ] [ skipped : %s ]".formatted(path.getFileName(), zoneMap.zones().size(), skipped));
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("error while processing " + path, ex);
+            }
+
+            MeteoLoggers.GENERAL.debug("%s [ rows : %s ]".formatted(path.getFileName(), MeteoUtils.formatNice(rows.stationIds.size())));
+
+            return rows.build(period, stationId -> stationId / 1_000_000);
+        }
+
+        @Override
+        public void close()
+        {
+            if (hours != null)
+            {
+                hours.close();
+                temps.close();
+                qualities.close();
+            }
+        }
+    }
+
+    /**
+     * The (unsorted) rows of a file.
+     */
+    private static class Rows
+    {
+        final IntArrayList stationIds = new IntArrayList();
+
+        final IntArrayList hours = new IntArrayList();
+
+        final IntArrayList temps = new IntArrayList();
+
+        final IntArrayList qualities = new IntArrayList();
+
+        void add(int stationId, LocalDateTime time, double temp, int tempQ)
+        {
+            add(stationId, MeteoUtils.epochHour(time), temp, tempQ);
+        }
+
+        void add(int stationId, int hour, double temp, int tempQ)
+        {
+            stationIds.add(stationId);
+            hours.add(hour);
+            temps.add(MeteoUtils.toTenths(temp));
+            qualities.add(tempQ);
+        }
+
+        /**
+         * A row of an observations-period.csv.gz file.
+         */
+        void addObservation(CsvRecord record)
+        {
+            add(
+                    MeteoUtils.parseInteger(record.getField(0)),
+                    MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, record.getField(1)),
+                    MeteoUtils.parseDouble(record.getField(2)),
+                    MeteoUtils.parseInteger(record.getField(3))
+            );
+        }
+
+        /**
+         * A row of a keyed observations-period.csv.gz file : the hour key is the epoch hour (see MeteoHours.key()).
+         */
+        void addKeyedObservation(CsvRecord record, IntUnaryOperator stationIds)
+        {
+            add(
+                    stationIds.applyAsInt(MeteoUtils.parseInteger(record.getField(0))),
+                    MeteoUtils.parseInteger(record.getField(1)),
+                    MeteoUtils.parseDouble(record.getField(2)),
+                    MeteoUtils.parseInteger(record.getField(3))
+            );
+        }
+
+        FileColumns build(String period, IntUnaryOperator departments)
+        {
+            final FileColumns file = new FileColumns(period);
+
+            final int count = stationIds.size();
+
+            // Usually already sorted by station and time.
+            final int[] perm = new int[count];
+
+            for (int ii = 0; ii < count; ii++)
+            {
+                perm[ii] = ii;
+            }
+
+            IntArrays.quickSort(perm, (a, b) -> {
+                final int cmp = Integer.compare(stationIds.getInt(a), stationIds.getInt(b));
+                return cmp != 0 ? cmp : Integer.compare(hours.getInt(a), hours.getInt(b));
+            });
+
+            file.hours = new FileColumn(count, Integer.BYTES);
+            file.temps = new FileColumn(count, Short.BYTES);
+            file.qualities = new FileColumn(count, 1);
+
+            final IntArrayList runStationIds = new IntArrayList();
+            final IntArrayList runOffsets = new IntArrayList();
+            final IntArrayList runCounts = new IntArrayList();
+
+            for (int row = 0; row < count; row++)
+            {
+                final int ii = perm[row];
+                final int stationId = stationIds.getInt(ii);
+
+                if (runStationIds.isEmpty() || runStationIds.getInt(runStationIds.size() - 1) != stationId)
+                {
+                    runStationIds.add(stationId);
+                    runOffsets.add(row);
+                    runCounts.add(0);
+                }
+
+                runCounts.set(runCounts.size() - 1, runCounts.getInt(runCounts.size() - 1) + 1);
+
+                file.hours.segment.setAtIndex(ValueLayout.JAVA_INT, row, hours.getInt(ii));
+                file.temps.segment.setAtIndex(ValueLayout.JAVA_SHORT, row, (short) temps.getInt(ii));
+                file.qualities.segment.set(ValueLayout.JAVA_BYTE, row, (byte) qualities.getInt(ii));
+            }
+
+            file.runStationIds = runStationIds.toIntArray();
+            file.runOffsets = runOffsets.toIntArray();
+            file.runCounts = runCounts.toIntArray();
+
+            file.runDepartments = new int[file.runStationIds.length];
+
+            for (int rr = 0; rr < file.runStationIds.length; rr++)
+            {
+                file.runDepartments[rr] = departments.applyAsInt(file.runStationIds[rr]);
+            }
+
+            return file;
+        }
+    }
+
+    /**
+     * @return true for the keyed observations (see MeteoMeasure.header()).
+     */
+    private static boolean isKeyed(Path path) throws IOException
+    {
+        try (final var reader = createCsvReader(path))
+        {
+            final var it = reader.iterator();
+
+            return it.hasNext() && it.next().getHeader().getFirst().equals("STATION_KEY");
+        }
+    }
+
+    private static CsvReader<NamedCsvRecord> createCsvReader(Path path) throws IOException
+    {
+        final MeteoCodec codec = MeteoCodec.ofFile(path);
+
+        if (codec == null)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        return CsvReader.builder()
+                .fieldSeparator(";")
+                .ofNamedCsvRecord(
+                        codec.input(Files.newInputStream(path))
+                );
+    }
+}
@@ -0,0 +1,142 @@
+package crazydev.meteo;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.joda.time.LocalDateTime;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Streams hourly temperatures into daily ones (see MeteoDailyTemperature) : per station, at most the 3 days
+ * overlapping the 06h-06h window (day before, current day, day after) are kept in memory.
+ * <p>
+ * Not thread safe : the hourly temperatures of a station must be provided in time order.
+ */
+public class MeteoDailyAccumulator
+{
+    private final Consumer<MeteoDailyTemperature> cb;
+
+    // station ID -> opened days
+    private final Int2ObjectOpenHashMap<StationDays> stations = new Int2ObjectOpenHashMap<>();
+
+    public MeteoDailyAccumulator(Consumer<MeteoDailyTemperature> cb)
+    {
+        this.cb = cb;
+    }
+
+    public void accept(int stationId, LocalDateTime time, double temp)
+    {
+        StationDays days = stations.get(stationId);
+
+        if (days == null)
+        {
+            days = new StationDays(stationId);
+            stations.put(stationId, days);
+        }
+
+        days.accept(time, MeteoUtils.toTenths(temp));
+    }
+
+    /**
+     * Emits all the remaining days : note the 06h-06h values of the last day are possibly incomplete.
+     */
+    public void flush()
+    {
+        for (StationDays days : stations.values())
+        {
+            days.flush(Long.MAX_VALUE);
+        }
+
+        stations.clear();
+    }
+
+    private class StationDays
+    {
+        private final int stationId;
+
+        // Sorted by day.
+        private final ArrayDeque<MeteoDailyTemperature> days = new ArrayDeque<>(3);
+
+        private long lastEpochHour = Long.MIN_VALUE;
+
+        StationDays(int stationId)
+        {
+            this.stationId = stationId;
+        }
+
+        void accept(LocalDateTime time, int tenths)
+        {
+            final long epochDay = MeteoUtils.epochDay(time);
+            final int hour = time.getHourOfDay();
+
+            final long epochHour = epochDay * 24 + hour;
+
+            if (epochHour <= lastEpochHour)
+            {
+                throw new RuntimeException("OUCH!");
+            }
+
+            lastEpochHour = epochHour;
+
+            flush(epochDay - 1);
+
+            day(epochDay).addHour(tenths);
+
+            if (hour <= 6)
+            {
+                day(epochDay).addTn(tenths);
+                day(epochDay - 1).addTx(tenths);
+            }
+            else
+            {
+                day(epochDay).addTx(tenths);
+
+                if (hour >= 19)
+                {
+                    day(epochDay + 1).addTn(tenths);
+                }
+            }
+        }
+
+        /**
+         * Emits the days before the given one.
+         */
+        void flush(long epochDay)
+        {
+            while (!days.isEmpty() && days.peekFirst().epochDay < epochDay)
+            {
+                final MeteoDailyTemperature day = days.pollFirst();
+
+                // Possibly created for the 06h-06h window only.
+                if (day.count > 0)
+                {
+                    cb.accept(day);
+                }
+            }
+        }
+
+        private MeteoDailyTemperature day(long epochDay)
+        {
+            for (MeteoDailyTemperature day : days)
+            {
+                if (day.epochDay == epochDay)
+                {
+                    return day;
+                }
+            }
+
+            final MeteoDailyTemperature day = new MeteoDailyTemperature(stationId, epochDay);
+
+            if (!days.isEmpty() && days.peekLast().epochDay > epochDay)
+            {
+                days.addFirst(day);
+            }
+            else
+            {
+                days.addLast(day);
+            }
+
+            return day;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDate;
+
+/**
+ * The temperatures (in 1/10 °C) of a station for a day (UTC).
+ * <pre>
+ *     min, max, avg : the hours of the calendar day (00h-23h)
+ *     tn            : Météo-France convention : from 18h UTC the day before (excl.) to 06h UTC (incl.)
+ *     tx            : Météo-France convention : from 06h UTC (excl.) to 06h UTC the day after (incl.)
+ * </pre>
+ */
+public class MeteoDailyTemperature
+{
+    public final int stationId;
+
+    public final long epochDay;
+
+    int count;
+
+    int min = Integer.MAX_VALUE;
+
+    int max = Integer.MIN_VALUE;
+
+    long sum;
+
+    int tnCount;
+
+    int tn = Integer.MAX_VALUE;
+
+    int txCount;
+
+    int tx = Integer.MIN_VALUE;
+
+    MeteoDailyTemperature(int stationId, long epochDay)
+    {
+        this.stationId = stationId;
+        this.epochDay = epochDay;
+    }
+
+    public LocalDate date()
+    {
+        return MeteoUtils.ofEpochDay(epochDay);
+    }
+
+    public int count()
+    {
+        return count;
+    }
+
+    public int min()
+    {
+        return min;
+    }
+
+    public int max()
+    {
+        return max;
+    }
+
+    public double avg()
+    {
+        return sum / (10.0 * count);
+    }
+
+    public int tnCount()
+    {
+        return tnCount;
+    }
+
+    @Nullable
+    public Integer tn()
+    {
+        return tnCount > 0 ? tn : null;
+    }
+
+    public int txCount()
+    {
+        return txCount;
+    }
+
+    @Nullable
+    public Integer tx()
+    {
+        return txCount > 0 ? tx : null;
+    }
+
+    void addHour(int tenths)
+    {
+        count++;
+        sum += tenths;
+        min = Math.min(min, tenths);
+        max = Math.max(max, tenths);
+    }
+
+    void addTn(int tenths)
+    {
+        tnCount++;
+        tn = Math.min(tn, tenths);
+    }
+
+    void addTx(int tenths)
+    {
+        txCount++;
+        tx = Math.max(tx, tenths);
+    }
+
+    @Override
+    public String toString()
+    {
+        return stationId + " @ " + date();
+    }
+}
@@ -0,0 +1,100 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Pre-aggregated daily temperatures (daily-period.csv.gz) : about 24 times smaller than the hourly observations.
+ */
+public class MeteoDailyTemperatures implements MeteoTemperaturesAggregator
+{
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormat.forPattern("yyyyMMdd");
+
+    private final MeteoPeriodWriter writer;
+
+    public MeteoDailyTemperatures(Path ic3data)
+    {
+        this.writer = new MeteoPeriodWriter(
+                ic3data, "daily",
+                "STATION_ID",
+                "DATE",
+                "TEMP_MIN",
+                "TEMP_MAX",
+                "TEMP_AVG",
+                "TEMP_COUNT",
+                "TEMP_TN",
+                "TEMP_TN_COUNT",
+                "TEMP_TX",
+                "TEMP_TX_COUNT"
+        );
+    }
+
+    @Override
+    public Task createTask(int department, String period)
+    {
+        final List<String[]> batch = new ArrayList<>();
+
+        final MeteoDailyAccumulator accumulator = new MeteoDailyAccumulator(day -> {
+
+            batch.add(new String[]{
+                    String.valueOf(day.stationId),
+                    day.date().toString(DATE_FORMAT),
+                    MeteoUtils.formatTenths(day.min()),
+                    MeteoUtils.formatTenths(day.max()),
+                    String.format(Locale.ENGLISH, "%.2f", day.avg()),
+                    String.valueOf(day.count()),
+                    formatTenthsOpt(day.tn()),
+                    String.valueOf(day.tnCount()),
+                    formatTenthsOpt(day.tx()),
+                    String.valueOf(day.txCount())
+            });
+
+            if (batch.size() > 10_000)
+            {
+                writer.write(period, batch);
+                batch.clear();
+            }
+        });
+
+        return new Task()
+        {
+            @Override
+            public void accept(int stationId, LocalDateTime time, double temp, int tempQ)
+            {
+                accumulator.accept(stationId, time, temp);
+            }
+
+            @Override
+            public void flush()
+            {
+                accumulator.flush();
+
+                if (!batch.isEmpty())
+                {
+                    writer.write(period, batch);
+                    batch.clear();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+
+    @Nullable
+    private static String formatTenthsOpt(@Nullable Integer tenths)
+    {
+        return tenths != null ? MeteoUtils.formatTenths(tenths) : null;
+    }
+}
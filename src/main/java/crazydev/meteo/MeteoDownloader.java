@@ -12,9 +12,21 @@ public class MeteoDownloader
 {
     private final MeteoH in;
 
+    private final String baseUrl;
+
     public MeteoDownloader(MeteoH in)
+    {
+        this(in, MeteoH.URL_BASE);
+    }
+
+    /**
+     * @param baseUrl e.g., a local mirror or mock server (ending with '/') : replaces MeteoH.URL_LATEST,
+     *                MeteoH.URL_PREVIOUS and MeteoH.URL_HISTORIC (i.e., MeteoH.URL_BASE by default).
+     */
+    public MeteoDownloader(MeteoH in, String baseUrl)
     {
         this.in = in;
+        this.baseUrl = baseUrl;
     }
 
     public void downloadLatestH(@Nullable Integer departmentFilter)
@@ -22,11 +34,10 @@ public class MeteoDownloader
         in.forEach("latest", departmentFilter, (department, period, path) -> {
 
             final Path destination = in.latest(department);
-            final String url = MeteoH.URL_LATEST.replace("$DEPT$", MeteoUtils.asDD(department));
 
             MeteoLoggers.GENERAL.debug(period + " @ " + department);
 
-            download(destination, url);
+            download(department, period, destination);
 
             return true;
 
@@ -37,12 +48,11 @@ public class MeteoDownloader
     {
         in.forEach("previous", departmentFilter, (department, period, path) -> {
 
-            final String url = MeteoH.URL_PREVIOUS.replace("$DEPT$", MeteoUtils.asDD(department));
             final Path destination = in.previous(department);
 
             MeteoLoggers.GENERAL.debug(period + " @ " + department);
 
-            download(destination, url);
+            download(department, period, destination);
 
             return true;
 
@@ -53,26 +63,31 @@ public class MeteoDownloader
     {
         in.forEach("historic", departmentFilter, (department, period, path) -> {
 
-            final String url = MeteoH.URL_HISTORIC
-                    .replace("$DEPT$", MeteoUtils.asDD(department))
-                    .replace("$PERIOD$", period);
-
             final Path destination = in.historic(department, period);
 
             MeteoLoggers.GENERAL.debug(period + " @ " + department);
 
-            download(destination, url);
+            download(department, period, destination);
 
             return true;
 
         });
     }
 
-    private void download(Path destination, String url)
+    /**
+     * @param destination the H file (see MeteoH) : its name is the one of the remote file.
+     * @return the HTTP status (the destination deleted unless 2xx).
+     */
+    public int download(int department, String period, Path destination)
     {
+        final String url = baseUrl + destination.getFileName();
+
+        final MeteoEvents.Download event = new MeteoEvents.Download();
+        event.begin();
+
         if (!destination.toFile().getParentFile().exists())
         {
-            if (!destination.toFile().getParentFile().mkdir())
+            if (!destination.toFile().getParentFile().mkdirs())
             {
                 throw new RuntimeException("OUCH!");
             }
@@ -103,6 +118,19 @@ public class MeteoDownloader
 
                 final int statusCode = response.statusCode();
 
+                event.end();
+
+                if (event.shouldCommit())
+                {
+                    event.period = period;
+                    event.department = department;
+                    event.url = url;
+                    event.path = destination.toString();
+                    event.bytes = destination.toFile().length();
+                    event.status = statusCode;
+                    event.commit();
+                }
+
                 if (statusCode >= 200 && statusCode < 300)
                 {
                     MeteoLoggers.GENERAL.info("File size : " + MeteoUtils.formatSize(destination.toFile().length()));
@@ -112,6 +140,8 @@ public class MeteoDownloader
                     MeteoLoggers.GENERAL.error("HTTP error " + statusCode);
                     destination.toFile().delete();
                 }
+
+                return statusCode;
             }
             catch (Exception ex)
             {
@@ -0,0 +1,63 @@
+package crazydev.meteo;
+
+import java.util.List;
+
+/**
+ * The definition of an episode (see MeteoEpisodes) : at least minDays consecutive days reaching all the conditions.
+ * <pre>
+ *     peak      : the most extreme value of the intensity threshold measure during the episode
+ *     intensity : the sum over the days of the distance (1/10 °C) between that measure and the threshold
+ * </pre>
+ */
+public class MeteoEpisode
+{
+    public static final MeteoEpisode HEAT_WAVE = new MeteoEpisode(
+            "HEAT_WAVE", 3, MeteoThreshold.TX_GE_35, List.of(MeteoThreshold.TX_GE_35, MeteoThreshold.TN_GE_20)
+    );
+
+    public static final MeteoEpisode COLD_SPELL = new MeteoEpisode(
+            "COLD_SPELL", 3, MeteoThreshold.TN_LE_M5, List.of(MeteoThreshold.TN_LE_M5)
+    );
+
+    public static final List<MeteoEpisode> DEFAULTS = List.of(HEAT_WAVE, COLD_SPELL);
+
+    public final String name;
+
+    public final int minDays;
+
+    public final MeteoThreshold intensity;
+
+    public final List<MeteoThreshold> conditions;
+
+    public MeteoEpisode(String name, int minDays, MeteoThreshold intensity, List<MeteoThreshold> conditions)
+    {
+        if (minDays < 1 || !conditions.contains(intensity))
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        this.name = name;
+        this.minDays = minDays;
+        this.intensity = intensity;
+        this.conditions = conditions;
+    }
+
+    public boolean isReached(MeteoDailyTemperature day)
+    {
+        for (MeteoThreshold condition : conditions)
+        {
+            if (!condition.isReached(day))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
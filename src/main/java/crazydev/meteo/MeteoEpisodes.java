@@ -0,0 +1,202 @@
+package crazydev.meteo;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The episodes (e.g., heat waves, cold spells) per station (episodes-period.csv.gz) : detected while streaming the
+ * daily temperatures (see MeteoDailyAccumulator), keeping per station and episode definition the opened episode
+ * only (constant memory).
+ * <p>
+ * Days without any observation break the episodes. An episode overlapping two period files is reported twice.
+ */
+public class MeteoEpisodes implements MeteoTemperaturesAggregator
+{
+    private final List<MeteoEpisode> episodes;
+
+    private final MeteoPeriodWriter writer;
+
+    public MeteoEpisodes(Path ic3data)
+    {
+        this(ic3data, MeteoEpisode.DEFAULTS);
+    }
+
+    public MeteoEpisodes(Path ic3data, List<MeteoEpisode> episodes)
+    {
+        this.episodes = episodes;
+
+        this.writer = new MeteoPeriodWriter(
+                ic3data, "episodes",
+                "STATION_ID",
+                "EPISODE",
+                "START",
+                "END",
+                "DURATION",
+                "PEAK",
+                "INTENSITY"
+        );
+    }
+
+    @Override
+    public Task createTask(int department, String period)
+    {
+        final List<String[]> batch = new ArrayList<>();
+
+        // station ID -> opened episodes (indexed as the episode definitions)
+        final Int2ObjectOpenHashMap<Opened[]> stations = new Int2ObjectOpenHashMap<>();
+
+        final MeteoDailyAccumulator accumulator = new MeteoDailyAccumulator(day -> {
+
+            Opened[] opened = stations.get(day.stationId);
+
+            if (opened == null)
+            {
+                opened = new Opened[episodes.size()];
+                stations.put(day.stationId, opened);
+            }
+
+            for (int ii = 0; ii < opened.length; ii++)
+            {
+                final MeteoEpisode episode = episodes.get(ii);
+
+                if (opened[ii] != null && opened[ii].end + 1 != day.epochDay)
+                {
+                    close(batch, episode, opened[ii]);
+                    opened[ii] = null;
+                }
+
+                if (episode.isReached(day))
+                {
+                    if (opened[ii] == null)
+                    {
+                        opened[ii] = new Opened(day.stationId, day.epochDay);
+                    }
+
+                    opened[ii].add(episode, day);
+                }
+                else if (opened[ii] != null)
+                {
+                    close(batch, episode, opened[ii]);
+                    opened[ii] = null;
+                }
+            }
+        });
+
+        return new Task()
+        {
+            @Override
+            public void accept(int stationId, LocalDateTime time, double temp, int tempQ)
+            {
+                accumulator.accept(stationId, time, temp);
+
+                if (batch.size() > 10_000)
+                {
+                    writer.write(period, batch);
+                    batch.clear();
+                }
+            }
+
+            @Override
+            public void flush()
+            {
+                accumulator.flush();
+
+                for (Opened[] opened : stations.values())
+                {
+                    for (int ii = 0; ii < opened.length; ii++)
+                    {
+                        close(batch, episodes.get(ii), opened[ii]);
+                    }
+                }
+
+                stations.clear();
+
+                if (!batch.isEmpty())
+                {
+                    writer.write(period, batch);
+                    batch.clear();
+                }
+            }
+        };
+    }
+
+    private static void close(List<String[]> batch, MeteoEpisode episode, @Nullable Opened opened)
+    {
+        if (opened != null && opened.duration() >= episode.minDays)
+        {
+            batch.add(opened.toRecord(episode));
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+
+    static class Opened
+    {
+        final int stationId;
+
+        final long start;
+
+        long end;
+
+        // 1/10 °C
+        int peak;
+
+        // 1/10 °C
+        long intensity;
+
+        Opened(int stationId, long start)
+        {
+            this.stationId = stationId;
+            this.start = start;
+            this.end = start - 1;
+        }
+
+        void add(MeteoEpisode episode, MeteoDailyTemperature day)
+        {
+            final MeteoThreshold threshold = episode.intensity;
+
+            // Reached : not null.
+            final int value = threshold.value(day);
+
+            if (end < start)
+            {
+                peak = value;
+            }
+            else
+            {
+                peak = threshold.isGreater ? Math.max(peak, value) : Math.min(peak, value);
+            }
+
+            intensity += Math.abs(value - threshold.tenths);
+            end = day.epochDay;
+        }
+
+        int duration()
+        {
+            return (int) (end - start + 1);
+        }
+
+        String[] toRecord(MeteoEpisode episode)
+        {
+            return new String[]{
+                    String.valueOf(stationId),
+                    episode.name,
+                    MeteoUtils.ofEpochDay(start).toString(MeteoDailyTemperatures.DATE_FORMAT),
+                    MeteoUtils.ofEpochDay(end).toString(MeteoDailyTemperatures.DATE_FORMAT),
+                    String.valueOf(duration()),
+                    MeteoUtils.formatTenths(peak),
+                    String.valueOf(intensity / 10.0)
+            };
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package crazydev.meteo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder events of the stages (e.g., java -XX:StartFlightRecording=filename=meteo.jfr ...) : cheap
+ * when not recording as the fields are set only if the event is going to be committed (see shouldCommit()).
+ */
+public abstract class MeteoEvents
+{
+    private MeteoEvents()
+    {
+    }
+
+    @Name("crazydev.meteo.DepartmentFile")
+    @Label("Department File")
+    @Description("The processing of an H file (department and period) by a department thread")
+    @Category({"Meteo"})
+    @StackTrace(false)
+    public static class DepartmentFile extends Event
+    {
+        @Label("Period")
+        String period;
+
+        @Label("Department")
+        int department;
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("crazydev.meteo.WriterFlush")
+    @Label("Writer Flush")
+    @Description("A batch of rows written to a shared (period) writer : includes the wait for the writer lock")
+    @Category({"Meteo"})
+    @StackTrace(false)
+    public static class WriterFlush extends Event
+    {
+        @Label("Period")
+        String period;
+
+        @Label("Department")
+        int department;
+
+        @Label("Path")
+        String path;
+
+        @Label("Rows")
+        int rows;
+    }
+
+    @Name("crazydev.meteo.Download")
+    @Label("Download")
+    @Description("The download of an H file")
+    @Category({"Meteo"})
+    @StackTrace(false)
+    public static class Download extends Event
+    {
+        @Label("Period")
+        String period;
+
+        @Label("Department")
+        int department;
+
+        @Label("URL")
+        String url;
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("HTTP Status")
+        int status;
+    }
+}
@@ -0,0 +1,418 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A CSV scanner of the H files (see MeteoH.scanner()) : the separators and newlines of each 64 bytes chunk are
+ * found at once as bitmasks (SIMD with the jdk.incubator.vector module, see MeteoVectorMasks; scalar otherwise)
+ * and a field is only decoded when requested (e.g., 4 out of the 200 columns).
+ * <p>
+ * Same rows as the CSV reader : empty lines skipped, CRLF or LF and quoted fields (without any newline).
+ */
+public class MeteoFieldScanner implements MeteoSource.Observations
+{
+    static final int CHUNK = 64;
+
+    static final Masks MASKS = createMasks();
+
+    private final InputStream in;
+
+    private final byte separator;
+
+    private final Masks masks;
+
+    private byte[] buffer = new byte[1 << 20];
+
+    // [separators, newlines, quotes] of the current chunk.
+    private final long[] chunk = new long[3];
+
+    // The start of each field of the current line (+ the end of the line + 1).
+    private int[] starts = new int[256];
+
+    private List<String> header;
+
+    public MeteoFieldScanner(InputStream in, char separator)
+    {
+        this(in, separator, MASKS);
+    }
+
+    MeteoFieldScanner(InputStream in, char separator, Masks masks)
+    {
+        this.in = in;
+        this.separator = (byte) separator;
+        this.masks = masks;
+    }
+
+    /**
+     * The vector masks if the jdk.incubator.vector module is available (unless -Dmeteo.scanner.scalar=true).
+     */
+    private static Masks createMasks()
+    {
+        final Masks vector = Boolean.getBoolean("meteo.scanner.scalar") ? null : vectorMasks();
+        final Masks masks = vector != null ? vector : new ScalarMasks();
+
+        MeteoLoggers.GENERAL.info("field scanner : " + masks);
+        return masks;
+    }
+
+    /**
+     * MeteoVectorMasks is compiled on its own (vector source set) : loaded reflectively, i.e., the rest of the code
+     * does not require the (incubator) module neither to compile nor to run.
+     *
+     * @return null if the jdk.incubator.vector module is not available.
+     */
+    @Nullable
+    static Masks vectorMasks()
+    {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+        {
+            return null;
+        }
+
+        try
+        {
+            return Class.forName("crazydev.meteo.MeteoVectorMasks").asSubclass(Masks.class).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError ex)
+        {
+            MeteoLoggers.GENERAL.warn("field scanner : no vector masks (%s)".formatted(ex));
+            return null;
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<MeteoSource.Row> cb)
+    {
+        try
+        {
+            scan(cb);
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException("IO error while scanning", ex);
+        }
+    }
+
+    private void scan(Consumer<MeteoSource.Row> cb) throws IOException
+    {
+        final ScannedRow row = new ScannedRow();
+
+        int limit = 0;
+        int lineStart = 0;
+        boolean eof = false;
+
+        while (!eof)
+        {
+            // ---------------------------------------------------------------------------------------------------------
+            // The current (incomplete) line moved first and rescanned.
+            // ---------------------------------------------------------------------------------------------------------
+
+            if (lineStart > 0)
+            {
+                System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+                limit -= lineStart;
+                lineStart = 0;
+            }
+            else if (limit == buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+
+            final int read = in.readNBytes(buffer, limit, buffer.length - limit);
+
+            limit += read;
+            eof = read == 0;
+
+            int fieldCount = 0;
+            boolean quoted = false;
+
+            starts[0] = lineStart;
+
+            for (int offset = lineStart; offset < limit; offset += CHUNK)
+            {
+                final int length = Math.min(CHUNK, limit - offset);
+
+                // Rescanned once more data available.
+                if (length < CHUNK && !eof)
+                {
+                    break;
+                }
+
+                masks.masks(buffer, offset, length, separator, chunk);
+
+                final long separators = chunk[0];
+                final long newlines = chunk[1];
+
+                if (chunk[2] != 0)
+                {
+                    quoted = true;
+                }
+
+                long bits = separators | newlines;
+
+                while (bits != 0)
+                {
+                    final int position = offset + Long.numberOfTrailingZeros(bits);
+
+                    if ((newlines & (bits & -bits)) != 0)
+                    {
+                        emit(row, lineStart, position, fieldCount, quoted, cb);
+
+                        lineStart = position + 1;
+                        fieldCount = 0;
+                        quoted = (chunk[2] >>> (position - offset) >>> 1) != 0;
+                        starts[0] = lineStart;
+                    }
+                    else
+                    {
+                        if (++fieldCount + 1 >= starts.length)
+                        {
+                            starts = Arrays.copyOf(starts, 2 * starts.length);
+                        }
+
+                        starts[fieldCount] = position + 1;
+                    }
+
+                    bits &= bits - 1;
+                }
+            }
+
+            // Without a final newline.
+            if (eof && lineStart < limit)
+            {
+                emit(row, lineStart, limit, fieldCount, quoted, cb);
+                lineStart = limit;
+            }
+        }
+    }
+
+    /**
+     * @param end the newline (excluded)
+     */
+    private void emit(ScannedRow row, int start, int end, int fieldCount, boolean quoted, Consumer<MeteoSource.Row> cb)
+    {
+        if (end > start && buffer[end - 1] == '\r')
+        {
+            end--;
+        }
+
+        // Empty lines are skipped.
+        if (end == start && fieldCount == 0)
+        {
+            return;
+        }
+
+        starts[fieldCount + 1] = end + 1;
+
+        row.fields = quoted ? split(start, end) : null;
+        row.fieldCount = quoted ? row.fields.length : fieldCount + 1;
+
+        if (header == null)
+        {
+            final List<String> names = new ArrayList<>(row.fieldCount);
+
+            for (int ii = 0; ii < row.fieldCount; ii++)
+            {
+                names.add(row.getField(ii));
+            }
+
+            header = Collections.unmodifiableList(names);
+            return;
+        }
+
+        cb.accept(row);
+    }
+
+    /**
+     * A line with quotes : RFC 4180 (e.g., "a;b" or "a""b").
+     */
+    private String[] split(int start, int end)
+    {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+
+        boolean inQuotes = false;
+        int from = start;
+
+        for (int ii = start; ii < end; ii++)
+        {
+            final byte b = buffer[ii];
+
+            if (inQuotes)
+            {
+                if (b == '"')
+                {
+                    field.append(new String(buffer, from, ii - from, StandardCharsets.UTF_8));
+
+                    if (ii + 1 < end && buffer[ii + 1] == '"')
+                    {
+                        field.append('"');
+                        ii++;
+                    }
+                    else
+                    {
+                        inQuotes = false;
+                    }
+
+                    from = ii + 1;
+                }
+            }
+            else if (b == '"')
+            {
+                field.append(new String(buffer, from, ii - from, StandardCharsets.UTF_8));
+                inQuotes = true;
+                from = ii + 1;
+            }
+            else if (b == separator)
+            {
+                field.append(new String(buffer, from, ii - from, StandardCharsets.UTF_8));
+                fields.add(field.toString());
+                field.setLength(0);
+                from = ii + 1;
+            }
+        }
+
+        field.append(new String(buffer, from, end - from, StandardCharsets.UTF_8));
+        fields.add(field.toString());
+
+        return fields.toArray(new String[0]);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    private class ScannedRow implements MeteoSource.Row
+    {
+        int fieldCount;
+
+        // Quoted line only.
+        String[] fields;
+
+        @Override
+        public List<String> getHeader()
+        {
+            return header;
+        }
+
+        @Override
+        public String getField(int index)
+        {
+            if (index >= fieldCount)
+            {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            if (fields != null)
+            {
+                return fields[index];
+            }
+
+            final int start = starts[index];
+            return new String(buffer, start, starts[index + 1] - 1 - start, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * From the bytes of the field (i.e., without any String).
+         */
+        @Override
+        public long getDigits(int index)
+        {
+            if (index >= fieldCount)
+            {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            if (fields != null)
+            {
+                return MeteoFilter.digits(fields[index]);
+            }
+
+            final int start = starts[index];
+            final int end = starts[index + 1] - 1;
+
+            if (end == start || end - start > 18)
+            {
+                return -1;
+            }
+
+            long number = 0;
+
+            for (int ii = start; ii < end; ii++)
+            {
+                final byte b = buffer[ii];
+
+                if (b < '0' || b > '9')
+                {
+                    return -1;
+                }
+
+                number = number * 10 + (b - '0');
+            }
+
+            return number;
+        }
+    }
+
+    /**
+     * The bitmasks (bit i : byte offset + i) of a chunk.
+     */
+    interface Masks
+    {
+        /**
+         * @param length up to 64 (i.e., end of the data)
+         * @param masks  [separators, newlines, quotes]
+         */
+        void masks(byte[] buffer, int offset, int length, byte separator, long[] masks);
+    }
+
+    static class ScalarMasks implements Masks
+    {
+        @Override
+        public void masks(byte[] buffer, int offset, int length, byte separator, long[] masks)
+        {
+            long separators = 0;
+            long newlines = 0;
+            long quotes = 0;
+
+            for (int ii = 0; ii < length; ii++)
+            {
+                final byte b = buffer[offset + ii];
+
+                if (b == separator)
+                {
+                    separators |= 1L << ii;
+                }
+                else if (b == '\n')
+                {
+                    newlines |= 1L << ii;
+                }
+                else if (b == '"')
+                {
+                    quotes |= 1L << ii;
+                }
+            }
+
+            masks[0] = separators;
+            masks[1] = newlines;
+            masks[2] = quotes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The units and rows to process (see MeteoSource.forEachPD()) : pushed down as far as possible, i.e., the files are
+ * pruned by name (period, department) and the rows rejected from their raw station and time (see
+ * MeteoSource.Row.getDigits()) before being parsed.
+ * <pre>
+ *     departments=13,83;years=2010-2019,2022;stations=13001009;hours=2019070100-2019090100;period=latest
+ * </pre>
+ * Each dimension is a union (empty : all); the dimensions are intersected. The station IDs of the H files start with
+ * their department (DDCCCNNN) : see hasStationIn().
+ */
+public class MeteoFilter
+{
+    // The period expression : latest, previous, historic, >YYYY or a substring of the period (e.g., 2010-2019).
+    @Nullable
+    private String period;
+
+    // Sorted.
+    private int[] departments = new int[0];
+
+    // Sorted.
+    private int[] stations = new int[0];
+
+    // yyyy (i.e., [from, to + 1) of the inclusive years)
+    private final List<Range> years = new ArrayList<>();
+
+    // yyyyMMddHH (i.e., sorts as a number)
+    private final List<Range> hours = new ArrayList<>();
+
+    /**
+     * The legacy filters (e.g., MeteoTemperatures.write(mode, periodFilter, departmentFilter)).
+     */
+    public static MeteoFilter of(@Nullable String periodFilter, @Nullable Integer departmentFilter)
+    {
+        final MeteoFilter filter = new MeteoFilter().period(periodFilter);
+
+        if (departmentFilter != null)
+        {
+            filter.departments(departmentFilter);
+        }
+
+        return filter;
+    }
+
+    /**
+     * @param expression e.g., departments=13,83;years=2010-2019,2022;stations=13001009;hours=2019070100-2019090100
+     */
+    public static MeteoFilter parse(String expression)
+    {
+        final MeteoFilter filter = new MeteoFilter();
+
+        for (String part : expression.split(";"))
+        {
+            if (part.isBlank())
+            {
+                continue;
+            }
+
+            final int eq = part.indexOf('=');
+
+            if (eq == -1)
+            {
+                throw new RuntimeException("invalid filter " + part);
+            }
+
+            final String name = part.substring(0, eq).trim();
+            final String[] values = part.substring(eq + 1).split(",");
+
+            switch (name)
+            {
+                case "period" -> filter.period(part.substring(eq + 1).trim());
+
+                case "departments" -> filter.departments(Arrays.stream(values).map(String::trim).mapToInt(MeteoUtils::parseInteger).toArray());
+
+                case "stations" -> filter.stations(Arrays.stream(values).map(String::trim).mapToInt(MeteoUtils::parseInteger).toArray());
+
+                case "years" ->
+                {
+                    for (String value : values)
+                    {
+                        final String[] range = value.trim().split("-");
+                        filter.years(Integer.parseInt(range[0]), Integer.parseInt(range[range.length - 1]));
+                    }
+                }
+
+                case "hours" ->
+                {
+                    for (String value : values)
+                    {
+                        final String[] range = value.trim().split("-");
+
+                        if (range.length != 2)
+                        {
+                            throw new RuntimeException("invalid hours " + value);
+                        }
+
+                        filter.hours(Long.parseLong(range[0]), Long.parseLong(range[1]));
+                    }
+                }
+
+                default -> throw new RuntimeException("unknown filter " + name);
+            }
+        }
+
+        return filter;
+    }
+
+    /**
+     * @param period latest, previous, historic, >YYYY or a substring of the period (null : all)
+     */
+    public MeteoFilter period(@Nullable String period)
+    {
+        this.period = period;
+        return this;
+    }
+
+    public MeteoFilter departments(int... departments)
+    {
+        this.departments = sorted(this.departments, departments);
+        return this;
+    }
+
+    public MeteoFilter stations(int... stationIds)
+    {
+        this.stations = sorted(this.stations, stationIds);
+        return this;
+    }
+
+    /**
+     * Inclusive.
+     */
+    public MeteoFilter years(int fromYear, int toYear)
+    {
+        if (fromYear > toYear)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        years.add(new Range(fromYear, toYear + 1L));
+        return this;
+    }
+
+    /**
+     * @param from yyyyMMddHH (inclusive)
+     * @param to   yyyyMMddHH (exclusive)
+     */
+    public MeteoFilter hours(long from, long to)
+    {
+        if (from >= to)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        hours.add(new Range(from, to));
+        return this;
+    }
+
+    @Nullable
+    public String period()
+    {
+        return period;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Files.
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param period e.g., 2010-2019, previous-2020-2024, latest-2025-2026 (see MeteoH)
+     */
+    public boolean isAcceptedPeriod(String period)
+    {
+        if (this.period != null && !isAcceptedPeriod(this.period, period))
+        {
+            return false;
+        }
+
+        final MeteoInterval interval = MeteoInterval.of(normalize(period));
+        return isAcceptedYears(interval.from.getYear(), interval.to.getYear() - 1);
+    }
+
+    /**
+     * The years and hours only (inclusive years) : e.g., the period of a source.
+     */
+    public boolean isAcceptedYears(int fromYear, int toYear)
+    {
+        if (!years.isEmpty() && years.stream().noneMatch(range -> range.from <= toYear && range.to > fromYear))
+        {
+            return false;
+        }
+
+        return hours.isEmpty() || hours.stream().anyMatch(range -> range.from < (toYear + 1L) * 1_000_000 && range.to > fromYear * 1_000_000L);
+    }
+
+    public boolean isAcceptedDepartment(int department)
+    {
+        return departments.length == 0 || Arrays.binarySearch(departments, department) >= 0;
+    }
+
+    public boolean isAcceptedStation(int stationId)
+    {
+        return stations.length == 0 || Arrays.binarySearch(stations, stationId) >= 0;
+    }
+
+    /**
+     * H files : the department file may contain one of the stations (i.e., DDCCCNNN).
+     */
+    public boolean hasStationIn(int department)
+    {
+        return stations.length == 0 || Arrays.stream(stations).anyMatch(stationId -> stationId / 1_000_000 == department);
+    }
+
+    /**
+     * @return all the rows of all the units of the period are accepted (e.g., the period file is complete).
+     */
+    public boolean coversPeriod(String period)
+    {
+        if (departments.length > 0 || stations.length > 0 || !hours.isEmpty())
+        {
+            return false;
+        }
+
+        final MeteoInterval interval = MeteoInterval.of(normalize(period));
+        final int fromYear = interval.from.getYear();
+        final int toYear = interval.to.getYear() - 1;
+
+        return years.isEmpty() || years.stream().anyMatch(range -> range.from <= fromYear && range.to > toYear);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Rows.
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return some rows of an accepted unit may be rejected (see isAcceptedRow()).
+     */
+    public boolean hasRowFilter()
+    {
+        return stations.length > 0 || !years.isEmpty() || !hours.isEmpty();
+    }
+
+    /**
+     * @param stationId see MeteoSource.Row.getDigits()
+     * @param timestamp yyyyMMddHH (see MeteoSource.Row.getDigits())
+     * @return accepted if not a number (i.e., reported once parsed).
+     */
+    public boolean isAcceptedRow(long stationId, long timestamp)
+    {
+        if (stationId >= 0 && stations.length > 0 && (stationId > Integer.MAX_VALUE || Arrays.binarySearch(stations, (int) stationId) < 0))
+        {
+            return false;
+        }
+
+        if (timestamp < 0)
+        {
+            return true;
+        }
+
+        if (!years.isEmpty())
+        {
+            final long year = timestamp / 1_000_000;
+
+            if (years.stream().noneMatch(range -> range.contains(year)))
+            {
+                return false;
+            }
+        }
+
+        return hours.isEmpty() || hours.stream().anyMatch(range -> range.contains(timestamp));
+    }
+
+    /**
+     * A member of an (unkeyed) generated file may contain accepted rows (e.g., MeteoColumnStore.loadObservations()).
+     */
+    public boolean isAcceptedZone(MeteoZoneMap.Zone zone)
+    {
+        if (departments.length > 0 && Arrays.stream(departments).noneMatch(department -> zone.stationMin() <= department * 1_000_000L + 999_999 && zone.stationMax() >= department * 1_000_000L))
+        {
+            return false;
+        }
+
+        if (stations.length > 0 && Arrays.stream(stations).noneMatch(stationId -> zone.stationMin() <= stationId && zone.stationMax() >= stationId))
+        {
+            return false;
+        }
+
+        if (!years.isEmpty() && years.stream().noneMatch(range -> range.from <= zone.timeMax() / 1_000_000 && range.to > zone.timeMin() / 1_000_000))
+        {
+            return false;
+        }
+
+        return hours.isEmpty() || hours.stream().anyMatch(range -> range.from <= zone.timeMax() && range.to > zone.timeMin());
+    }
+
+    /**
+     * @return the unsigned number (e.g., NUM_POSTE, AAAAMMJJHH); -1 if empty or not only digits.
+     */
+    public static long digits(CharSequence value)
+    {
+        final int length = value.length();
+
+        if (length == 0 || length > 18)
+        {
+            return -1;
+        }
+
+        long number = 0;
+
+        for (int ii = 0; ii < length; ii++)
+        {
+            final char c = value.charAt(ii);
+
+            if (c < '0' || c > '9')
+            {
+                return -1;
+            }
+
+            number = number * 10 + (c - '0');
+        }
+
+        return number;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static boolean isAcceptedPeriod(String filter, String period)
+    {
+        if (filter.equals("latest"))
+        {
+            return period.contains("latest-");
+        }
+
+        if (filter.equals("previous"))
+        {
+            return period.contains("previous-");
+        }
+
+        if (filter.equals("historic"))
+        {
+            return !period.contains("latest-") && !period.contains("previous-");
+        }
+
+        if (filter.startsWith(">"))
+        {
+            final int filterI = Integer.parseInt(filter.substring(1));
+            final int periodI = Integer.parseInt(normalize(period).substring(0, 4));
+
+            return periodI >= filterI;
+        }
+
+        return period.contains(filter);
+    }
+
+    private static String normalize(String period)
+    {
+        return period
+                .replace("previous-", "")
+                .replace("latest-", "");
+    }
+
+    private static int[] sorted(int[] current, int[] added)
+    {
+        final int[] all = Arrays.copyOf(current, current.length + added.length);
+        System.arraycopy(added, 0, all, current.length, added.length);
+
+        return Arrays.stream(all).sorted().distinct().toArray();
+    }
+
+    @Override
+    public String toString()
+    {
+        final List<String> parts = new ArrayList<>();
+
+        if (period != null)
+        {
+            parts.add("period=" + period);
+        }
+
+        if (departments.length > 0)
+        {
+            parts.add("departments=" + join(departments));
+        }
+
+        if (stations.length > 0)
+        {
+            parts.add("stations=" + join(stations));
+        }
+
+        if (!years.isEmpty())
+        {
+            parts.add("years=" + String.join(",", years.stream().map(range -> range.from + "-" + (range.to - 1)).toList()));
+        }
+
+        if (!hours.isEmpty())
+        {
+            parts.add("hours=" + String.join(",", hours.stream().map(range -> range.from + "-" + range.to).toList()));
+        }
+
+        return String.join(";", parts);
+    }
+
+    private static String join(int[] values)
+    {
+        return String.join(",", Arrays.stream(values).mapToObj(String::valueOf).toList());
+    }
+
+    /**
+     * [from, to)
+     */
+    private record Range(long from, long to)
+    {
+        boolean contains(long value)
+        {
+            return value >= from && value < to;
+        }
+    }
+}
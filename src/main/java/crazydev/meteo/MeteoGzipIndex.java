@@ -0,0 +1,485 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The access points of a gzip file (zran) : every span of inflated bytes, the offset of a deflate block and its 32 KB
+ * window. Computed once (see MeteoInflater) and saved next to the file (.idx) : the file is then inflated from
+ * several access points in parallel (see split()).
+ * <p>
+ * A split is a CSV text on its own : the header of the file followed by the lines starting within its span (i.e.,
+ * the last line completed from the next span).
+ */
+public class MeteoGzipIndex
+{
+    private static final int MAGIC = 0x4D475A49;
+
+    private static final int VERSION = 1;
+
+    private final Path file;
+
+    private final long fileSize;
+
+    private final long fileModified;
+
+    // The first line with its newline.
+    private final byte[] header;
+
+    private final List<Point> points;
+
+    private MeteoGzipIndex(Path file, long fileSize, long fileModified, byte[] header, List<Point> points)
+    {
+        this.file = file;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+        this.header = header;
+        this.points = points;
+    }
+
+    public static Path indexFile(Path file)
+    {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * The saved index if up-to-date with the file; built and saved otherwise.
+     *
+     * @param span e.g., 64 MB : the minimum of inflated bytes between two access points
+     */
+    public static MeteoGzipIndex of(Path file, long span) throws IOException
+    {
+        final MeteoGzipIndex saved = load(file);
+
+        if (saved != null)
+        {
+            return saved;
+        }
+
+        final MeteoGzipIndex index = build(file, span);
+        index.save();
+
+        return index;
+    }
+
+    public static MeteoGzipIndex build(Path file, long span) throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final long size = Files.size(file);
+        final long modified = Files.getLastModifiedTime(file).toMillis();
+
+        final List<Point> points = new ArrayList<>();
+        final MeteoInflater inflater;
+
+        try (final InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16))
+        {
+            inflater = new MeteoInflater(in, span, (byteOffset, outOffset, window, lineStart) -> points.add(
+                    new Point(byteOffset, outOffset, window, lineStart)
+            ));
+
+            final long inflated = inflater.inflate();
+
+            MeteoLoggers.GENERAL.info("%s indexed in %s [ inflated : %s ] [ access points : %s ]".formatted(
+                    file.getFileName(),
+                    MeteoUtils.formatMillisEx(startMS),
+                    MeteoUtils.formatSize(inflated),
+                    points.size()
+            ));
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while indexing " + file, ex);
+        }
+
+        return new MeteoGzipIndex(file, size, modified, inflater.header(), points);
+    }
+
+    /**
+     * @return null if none or not up-to-date (e.g., downloaded again).
+     */
+    @Nullable
+    public static MeteoGzipIndex load(Path file) throws IOException
+    {
+        final Path indexFile = indexFile(file);
+
+        if (!Files.exists(indexFile))
+        {
+            return null;
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return null;
+            }
+
+            final long size = in.readLong();
+            final long modified = in.readLong();
+
+            if (size != Files.size(file) || modified != Files.getLastModifiedTime(file).toMillis())
+            {
+                return null;
+            }
+
+            final byte[] header = in.readNBytes(in.readInt());
+            final int count = in.readInt();
+
+            final List<Point> points = new ArrayList<>(count);
+
+            for (int ii = 0; ii < count; ii++)
+            {
+                final long byteOffset = in.readLong();
+                final long outOffset = in.readLong();
+                final boolean lineStart = in.readBoolean();
+                final int windowSize = in.readInt();
+                final byte[] deflated = in.readNBytes(in.readInt());
+
+                final byte[] window;
+
+                try (final InputStream inflater = new InflaterInputStream(new ByteArrayInputStream(deflated)))
+                {
+                    window = inflater.readNBytes(windowSize);
+                }
+
+                points.add(new Point(byteOffset, outOffset, window, lineStart));
+            }
+
+            return new MeteoGzipIndex(file, size, modified, header, points);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while reading " + indexFile, ex);
+        }
+    }
+
+    public void save() throws IOException
+    {
+        final Path indexFile = indexFile(file);
+        final Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+        try
+        {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fileSize);
+                out.writeLong(fileModified);
+                out.writeInt(header.length);
+                out.write(header);
+                out.writeInt(points.size());
+
+                for (Point point : points)
+                {
+                    final ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+
+                    try (final DeflaterOutputStream deflater = new DeflaterOutputStream(deflated))
+                    {
+                        deflater.write(point.window);
+                    }
+
+                    out.writeLong(point.byteOffset);
+                    out.writeLong(point.outOffset);
+                    out.writeBoolean(point.lineStart);
+                    out.writeInt(point.window.length);
+                    out.writeInt(deflated.size());
+                    deflated.writeTo(out);
+                }
+            }
+
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + indexFile, ex);
+        }
+    }
+
+    public int splitCount()
+    {
+        return points.size();
+    }
+
+    /**
+     * @return the header and the lines starting within the span of the access point.
+     */
+    public InputStream split(int index) throws IOException
+    {
+        final Point point = points.get(index);
+        final long end = index + 1 < points.size() ? points.get(index + 1).outOffset : Long.MAX_VALUE;
+
+        return new Split(file, point, end, index == 0 ? new byte[0] : header);
+    }
+
+    record Point(long byteOffset, long outOffset, byte[] window, boolean lineStart)
+    {
+    }
+
+    /**
+     * Inflates the raw deflate data from an access point up to the end of the line straddling the end of the span.
+     */
+    private static class Split extends InputStream
+    {
+        private enum State
+        {
+            HEADER,
+            SKIP,
+            OWN,
+            TAIL,
+            DONE,
+        }
+
+        private final FileChannel channel;
+
+        private final InputStream in;
+
+        private final Inflater inflater = new Inflater(true);
+
+        private final byte[] input = new byte[1 << 16];
+
+        private final byte[] buffer = new byte[1 << 16];
+
+        private int bufferPos;
+
+        private int bufferLimit;
+
+        // The offset of the next inflated byte.
+        private long position;
+
+        private final long end;
+
+        private final byte[] header;
+
+        private int headerPos;
+
+        // The span starts with a line (i.e., nothing to skip).
+        private final boolean lineStart;
+
+        private State state;
+
+        Split(Path file, Point point, long end, byte[] header) throws IOException
+        {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.channel.position(point.byteOffset);
+            this.in = Channels.newInputStream(channel);
+            this.position = point.outOffset;
+            this.end = end;
+            this.header = header;
+            this.lineStart = point.lineStart;
+            this.state = header.length > 0 ? State.HEADER : (lineStart ? State.OWN : State.SKIP);
+
+            if (point.window.length > 0)
+            {
+                inflater.setDictionary(point.window);
+            }
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+
+            while (true)
+            {
+                switch (state)
+                {
+                    case DONE ->
+                    {
+                        return -1;
+                    }
+
+                    case HEADER ->
+                    {
+                        final int count = Math.min(len, header.length - headerPos);
+                        System.arraycopy(header, headerPos, b, off, count);
+                        headerPos += count;
+
+                        if (headerPos == header.length)
+                        {
+                            state = lineStart ? State.OWN : State.SKIP;
+                        }
+
+                        return count;
+                    }
+
+                    case SKIP ->
+                    {
+                        if (!fill())
+                        {
+                            state = State.DONE;
+                            continue;
+                        }
+
+                        while (bufferPos < bufferLimit)
+                        {
+                            // The next line starts within the next span : none for this split.
+                            if (position >= end)
+                            {
+                                state = State.DONE;
+                                break;
+                            }
+
+                            position++;
+
+                            if (buffer[bufferPos++] == '\n')
+                            {
+                                state = State.OWN;
+                                break;
+                            }
+                        }
+                    }
+
+                    case OWN ->
+                    {
+                        if (position >= end)
+                        {
+                            state = buffer[bufferPos - 1] == '\n' ? State.DONE : State.TAIL;
+                            continue;
+                        }
+
+                        if (!fill())
+                        {
+                            state = State.DONE;
+                            continue;
+                        }
+
+                        final int count = (int) Math.min(Math.min(len, bufferLimit - bufferPos), end - position);
+                        System.arraycopy(buffer, bufferPos, b, off, count);
+                        bufferPos += count;
+                        position += count;
+
+                        return count;
+                    }
+
+                    case TAIL ->
+                    {
+                        if (!fill())
+                        {
+                            throw new RuntimeException("incomplete line at the end of " + end);
+                        }
+
+                        int count = 0;
+
+                        while (count < len && bufferPos < bufferLimit)
+                        {
+                            final byte c = buffer[bufferPos++];
+                            b[off + count++] = c;
+                            position++;
+
+                            if (c == '\n')
+                            {
+                                state = State.DONE;
+                                break;
+                            }
+                        }
+
+                        return count;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return false once inflated (i.e., end of the member).
+         */
+        private boolean fill() throws IOException
+        {
+            if (bufferPos < bufferLimit)
+            {
+                return true;
+            }
+
+            // The previous byte (i.e., OWN -> TAIL) is kept.
+            if (bufferLimit > 0)
+            {
+                buffer[0] = buffer[bufferLimit - 1];
+                bufferPos = 1;
+                bufferLimit = 1;
+            }
+            else
+            {
+                bufferPos = 0;
+                bufferLimit = 0;
+            }
+
+            try
+            {
+                while (true)
+                {
+                    if (inflater.finished())
+                    {
+                        return false;
+                    }
+
+                    final int count = inflater.inflate(buffer, bufferLimit, buffer.length - bufferLimit);
+
+                    if (count > 0)
+                    {
+                        bufferLimit += count;
+                        return true;
+                    }
+
+                    if (inflater.needsDictionary())
+                    {
+                        throw new RuntimeException("OUCH!");
+                    }
+
+                    if (inflater.needsInput())
+                    {
+                        final int read = in.read(input);
+
+                        if (read == -1)
+                        {
+                            throw new IOException("unexpected end of the gzip file");
+                        }
+
+                        inflater.setInput(input, 0, read);
+                    }
+                }
+            }
+            catch (DataFormatException ex)
+            {
+                throw new IOException("invalid deflate data", ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            inflater.end();
+            channel.close();
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package crazydev.meteo;
 
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.NamedCsvRecord;
 import org.jetbrains.annotations.Nullable;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
-public class MeteoH
+/**
+ * The Météo-France hourly observations (H files) : a file per (period, department).
+ */
+public class MeteoH implements MeteoSource
 {
     // -----------------------------------------------------------------------------------------------------------------
     // https://www.data.gouv.fr/datasets/donnees-climatologiques-de-base-horaires/
@@ -21,11 +33,26 @@ public class MeteoH
     //
     // -----------------------------------------------------------------------------------------------------------------
 
-    public static final String URL_LATEST = "https://meteofrance.s3.sbg.io.cloud.ovh.net/data/synchro_ftp/BASE/HOR/H_$DEPT$_latest-2025-2026.csv.gz";
+    // The files are available as H_$DEPT$_$PERIOD$.csv.gz (e.g., H_13_latest-2025-2026.csv.gz).
+    public static final String URL_BASE = "https://meteofrance.s3.sbg.io.cloud.ovh.net/data/synchro_ftp/BASE/HOR/";
 
-    public static final String URL_PREVIOUS = "https://meteofrance.s3.sbg.io.cloud.ovh.net/data/synchro_ftp/BASE/HOR/H_$DEPT$_previous-2020-2024.csv.gz";
+    /**
+     * @deprecated see URL_BASE and MeteoDownloader(in, baseUrl)
+     */
+    @Deprecated
+    public static final String URL_LATEST = URL_BASE + "H_$DEPT$_latest-2025-2026.csv.gz";
 
-    public static final String URL_HISTORIC = "https://meteofrance.s3.sbg.io.cloud.ovh.net/data/synchro_ftp/BASE/HOR/H_$DEPT$_$PERIOD$.csv.gz";
+    /**
+     * @deprecated see URL_BASE and MeteoDownloader(in, baseUrl)
+     */
+    @Deprecated
+    public static final String URL_PREVIOUS = URL_BASE + "H_$DEPT$_previous-2020-2024.csv.gz";
+
+    /**
+     * @deprecated see URL_BASE and MeteoDownloader(in, baseUrl)
+     */
+    @Deprecated
+    public static final String URL_HISTORIC = URL_BASE + "H_$DEPT$_$PERIOD$.csv.gz";
 
     // numéro Météo-France du poste sur 8 chiffres
     public static final int F_NUM_POSTE = 0;
@@ -89,11 +116,60 @@ public class MeteoH
 
     private final String folder;
 
+    @Nullable
+    private volatile Gate gate;
+
+    private volatile boolean scanner;
+
+    private volatile long splitSpan;
+
     public MeteoH(String folder)
     {
         this.folder = folder;
     }
 
+    /**
+     * The first year of the periods (e.g., MeteoHours).
+     */
+    public static int fromYear()
+    {
+        return MeteoInterval.of(normalize(PERIODS[0])).from.getYear();
+    }
+
+    /**
+     * The last year of the periods (inclusive).
+     */
+    public static int toYear()
+    {
+        return MeteoInterval.of(normalize(PERIODS[PERIODS.length - 1])).to.getYear() - 1;
+    }
+
+    /**
+     * forEachPD() : waits for the file of each unit (e.g., being downloaded) before processing it (null : none).
+     */
+    public void gate(@Nullable Gate gate)
+    {
+        this.gate = gate;
+    }
+
+    /**
+     * open() : the H files read by MeteoFieldScanner (SIMD if the jdk.incubator.vector module is available) instead
+     * of the CSV reader (same rows).
+     */
+    public void scanner(boolean scanner)
+    {
+        this.scanner = scanner;
+    }
+
+    /**
+     * openSplits() : the large files (about 20x the compressed size) inflated and parsed from several access points
+     * in parallel, every span of inflated bytes (e.g., 64 MB); see MeteoGzipIndex (built once per file, 0 : none).
+     */
+    public void splits(long span)
+    {
+        this.splitSpan = span;
+    }
+
     public Path latest(int department)
     {
         return Path.of(
@@ -119,17 +195,25 @@ public class MeteoH
     }
 
     public void forEach(@Nullable String periodFilter, @Nullable Integer departmentFilter, Action cb)
+    {
+        forEach(MeteoFilter.of(periodFilter, departmentFilter), cb);
+    }
+
+    /**
+     * The files accepted by the filter (e.g., to be downloaded).
+     */
+    public void forEach(MeteoFilter filter, Action cb)
     {
         for (final String period : PERIODS)
         {
-            if (periodFilter != null && !isAcceptedPeriod(periodFilter, period))
+            if (!filter.isAcceptedPeriod(period))
             {
                 continue;
             }
 
             for (final int department : DEPARTMENTS)
             {
-                if (departmentFilter != null && !isAcceptedDepartment(departmentFilter, department))
+                if (!isAcceptedDepartment(filter, department))
                 {
                     continue;
                 }
@@ -153,15 +237,22 @@ public class MeteoH
         }
     }
 
-    public void forEachPD(@Nullable String periodFilter, @Nullable Integer departmentFilter, Action cb)
+    @Override
+    public void forEachPD(MeteoFilter filter, @Nullable MeteoJournal journal, Action cb, @Nullable PeriodAction completed)
     {
         for (final String period : PERIODS)
         {
-            if (periodFilter != null && !isAcceptedPeriod(periodFilter, period))
+            if (!filter.isAcceptedPeriod(period))
             {
                 continue;
             }
 
+            if (journal != null && journal.isDone(normalize(period)))
+            {
+                MeteoLoggers.GENERAL.info("%s skipped (journal)".formatted(period));
+                continue;
+            }
+
             try (final ExecutorService pool = Executors.newFixedThreadPool(8))
             {
                 final Future<DepartmentTaskResult>[] futures = new Future[DEPARTMENTS.length];
@@ -170,7 +261,7 @@ public class MeteoH
                 {
                     final int department = DEPARTMENTS[dd];
 
-                    futures[dd] = pool.submit(() -> processDepartment(period, departmentFilter, department, cb));
+                    futures[dd] = pool.submit(() -> processDepartment(period, filter, journal, department, cb));
                 }
 
                 // ---------------------------------------------------------------------------------------------------------
@@ -195,13 +286,36 @@ public class MeteoH
                 {
                     throw new RuntimeException("OUCH!", ex);
                 }
+
+                // All the departments and rows (i.e., not filtered) and all done (i.e., none quarantined or absent).
+                final String periodF = normalize(period);
+
+                if (filter.coversPeriod(period) && (journal == null || journal.isComplete(periodF, DEPARTMENTS)))
+                {
+                    try
+                    {
+                        if (completed != null)
+                        {
+                            completed.cb(periodF);
+                        }
+
+                        if (journal != null)
+                        {
+                            journal.done(periodF);
+                        }
+                    }
+                    catch (IOException ex)
+                    {
+                        throw new RuntimeException("IO error while completing " + period, ex);
+                    }
+                }
             }
         }
     }
 
-    private DepartmentTaskResult processDepartment(String period, @Nullable Integer departmentFilter, int department, Action cb)
+    private DepartmentTaskResult processDepartment(String period, MeteoFilter filter, @Nullable MeteoJournal journal, int department, Action cb)
     {
-        if (departmentFilter != null && !isAcceptedDepartment(departmentFilter, department))
+        if (!isAcceptedDepartment(filter, department))
         {
             return new DepartmentTaskResult();
         }
@@ -216,54 +330,151 @@ public class MeteoH
         final String filename = "H_" + dept + "_" + period + ".csv.gz";
         final Path path = Path.of(folder, category, dept, filename);
 
-        final String periodF = period
-                .replace("previous-", "")
-                .replace("latest-", "");
+        final String periodF = normalize(period);
+
+        if (journal != null && journal.isDone(periodF, department))
+        {
+            return new DepartmentTaskResult();
+        }
 
-        cb.cb(department, periodF, path);
+        final Gate unitGate = gate;
+
+        if (unitGate != null)
+        {
+            unitGate.await(department, periodF, path);
+        }
+
+        final MeteoEvents.DepartmentFile event = new MeteoEvents.DepartmentFile();
+        event.begin();
+
+        if (journal == null)
+        {
+            cb.cb(department, periodF, path);
+        }
+        else
+        {
+            journal.process(periodF, department, path, cb);
+        }
+
+        event.end();
+
+        // Not for the missing files (e.g., no station in the department for the period).
+        if (event.shouldCommit() && path.toFile().exists())
+        {
+            event.period = periodF;
+            event.department = department;
+            event.path = path.toString();
+            event.bytes = path.toFile().length();
+            event.commit();
+        }
 
         return new DepartmentTaskResult();
     }
 
-    private boolean isAcceptedPeriod(String filter, String period)
+    private static String normalize(String period)
     {
-        if (filter.equals("latest"))
+        return period
+                .replace("previous-", "")
+                .replace("latest-", "");
+    }
+
+    @Override
+    public Observations open(Path path, MeteoMetrics metrics) throws IOException
+    {
+        return open(metrics.countInflated(new GZIPInputStream(metrics.countRead(Files.newInputStream(path)), 1 << 16)));
+    }
+
+    @Override
+    public List<Observations> openSplits(Path path, MeteoMetrics metrics) throws IOException
+    {
+        final long span = splitSpan;
+
+        if (span == 0 || Files.size(path) * 20 < 2 * span)
         {
-            return period.contains("latest-");
+            return List.of(open(path, metrics));
         }
 
-        if (filter.equals("previous"))
+        final MeteoGzipIndex index = MeteoGzipIndex.of(path, span);
+
+        if (index.splitCount() == 1)
         {
-            return period.contains("previous-");
+            return List.of(open(path, metrics));
         }
 
-        if (filter.equals("historic"))
+        final List<Observations> splits = new ArrayList<>(index.splitCount());
+
+        for (int ii = 0; ii < index.splitCount(); ii++)
         {
-            return !period.contains("latest-") && !period.contains("previous-");
+            splits.add(open(metrics.countInflated(index.split(ii))));
         }
 
-        if (filter.startsWith(">"))
+        return splits;
+    }
+
+    /**
+     * @param inflated the CSV text (i.e., header first)
+     */
+    private Observations open(InputStream inflated)
+    {
+        if (scanner)
         {
-            period = period.replace("previous-", "").replace("latest-", "");
+            return new MeteoFieldScanner(inflated, ';');
+        }
 
-            final int filterI = Integer.parseInt(filter.substring(1));
-            final int periodI = Integer.parseInt(period.substring(0, 4));
+        final CsvReader<NamedCsvRecord> reader = CsvReader.builder()
+                .fieldSeparator(";")
+                .ofNamedCsvRecord(inflated);
 
-            return periodI >= filterI;
-        }
+        return new Observations()
+        {
+            @Override
+            public void forEach(Consumer<Row> cb)
+            {
+                final HRow row = new HRow();
+
+                reader.forEach(record -> {
+                    row.record = record;
+                    cb.accept(row);
+                });
+            }
 
-        return period.contains(filter);
+            @Override
+            public void close() throws IOException
+            {
+                reader.close();
+            }
+        };
     }
 
-    private boolean isAcceptedDepartment(int filter, int department)
+    /**
+     * The department and its stations (DDCCCNNN).
+     */
+    private static boolean isAcceptedDepartment(MeteoFilter filter, int department)
     {
-        return department == filter;
+        return filter.isAcceptedDepartment(department) && filter.hasStationIn(department);
     }
 
     @FunctionalInterface
-    interface Action
+    interface Gate
+    {
+        void await(int department, String period, Path path);
+    }
+
+    private static class HRow implements Row
     {
-        boolean cb(int department, String period, Path path);
+        NamedCsvRecord record;
+
+        @Override
+        public List<String> getHeader()
+        {
+            return record.getHeader();
+        }
+
+        @Override
+        public String getField(int index)
+        {
+            return record.getField(index);
+        }
     }
 
     static class DepartmentTaskResult
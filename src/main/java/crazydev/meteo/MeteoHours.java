@@ -0,0 +1,105 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The hour dimension of the keyed facts (see MeteoTemperatures.keys()) : every hour of the years (UTC as the H files)
+ * with its key, the hours since 1970-01-01 00:00 (negative before).
+ * <pre>
+ *     hours.csv.gz     HOUR_KEY;TIMESTAMP;YEAR;MONTH;DAY;HOUR
+ * </pre>
+ */
+public class MeteoHours
+{
+    private static final long HOUR_MS = 3_600_000L;
+
+    private final Path ic3data;
+
+    // Inclusive
+    private final int fromYear;
+
+    // Inclusive
+    private final int toYear;
+
+    private MeteoCodec codec = MeteoCodec.GZIP;
+
+    public MeteoHours(Path ic3data, int fromYear, int toYear)
+    {
+        if (fromYear > toYear)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        this.ic3data = ic3data;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    /**
+     * The compression of the generated hours file (default : gzip).
+     */
+    public MeteoHours codec(MeteoCodec codec)
+    {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * Same as MeteoUtils.epochHour() : i.e., no DateTime per row.
+     */
+    public static long key(LocalDateTime time)
+    {
+        return MeteoUtils.epochHour(time);
+    }
+
+    public static LocalDateTime time(long key)
+    {
+        return new LocalDateTime(key * HOUR_MS, DateTimeZone.UTC);
+    }
+
+    public void write() throws IOException
+    {
+        final Path file = codec.file(ic3data, "hours");
+
+        final long fromKey = key(new LocalDateTime(fromYear, 1, 1, 0, 0));
+        final long toKey = key(new LocalDateTime(toYear + 1, 1, 1, 0, 0));
+
+        try (final var writer = CsvWriter.builder().fieldSeparator(';').build(codec.output(Files.newOutputStream(file))))
+        {
+            writer.writeRecord(
+                    "HOUR_KEY",
+                    "TIMESTAMP",
+                    "YEAR",
+                    "MONTH",
+                    "DAY",
+                    "HOUR"
+            );
+
+            for (long key = fromKey; key < toKey; key++)
+            {
+                final LocalDateTime time = time(key);
+
+                writer.writeRecord(
+                        String.valueOf(key),
+                        time.toString(MeteoH.TIMESTAMP_FORMAT),
+                        String.valueOf(time.getYear()),
+                        String.valueOf(time.getMonthOfYear()),
+                        String.valueOf(time.getDayOfMonth()),
+                        String.valueOf(time.getHourOfDay())
+                );
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        MeteoLoggers.GENERAL.info("hours : %s [ %s - %s ]".formatted(MeteoUtils.formatNice(toKey - fromKey), fromYear, toYear));
+    }
+}
@@ -0,0 +1,523 @@
+package crazydev.meteo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A (slow) pure Java inflater of a gzip file knowing where each deflate block starts : the access points of the
+ * index (see MeteoGzipIndex) are taken at the block boundaries falling on a byte (i.e., zran). The inflated data is
+ * not kept but the last 32 KB (i.e., the window required to inflate from an access point) and the first line (i.e.,
+ * the header).
+ * <p>
+ * RFC 1951 (deflate) and RFC 1952 (gzip) : the members of a multi-members file are inflated one after the other and
+ * each member starts with an access point.
+ */
+class MeteoInflater
+{
+    static final int WINDOW = 32 * 1024;
+
+    private static final int MAX_BITS = 15;
+
+    private static final int[] LENGTH_BASES = {
+            3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+    };
+
+    private static final int[] LENGTH_EXTRAS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+
+    private static final int[] DISTANCE_BASES = {
+            1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073,
+            4097, 6145, 8193, 12289, 16385, 24577
+    };
+
+    private static final int[] DISTANCE_EXTRAS = {
+            0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+
+    // The order of the code lengths of the code lengths alphabet.
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS;
+
+    private static final Huffman FIXED_DISTANCES;
+
+    static
+    {
+        final int[] literals = new int[288];
+        Arrays.fill(literals, 0, 144, 8);
+        Arrays.fill(literals, 144, 256, 9);
+        Arrays.fill(literals, 256, 280, 7);
+        Arrays.fill(literals, 280, 288, 8);
+
+        final int[] distances = new int[30];
+        Arrays.fill(distances, 5);
+
+        FIXED_LITERALS = new Huffman(literals, literals.length);
+        FIXED_DISTANCES = new Huffman(distances, distances.length);
+    }
+
+    private final InputStream in;
+
+    private final AccessPoints cb;
+
+    // The minimum of inflated bytes between two access points.
+    private final long span;
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Bits are consumed from the LSB.
+    // ---------------------------------------------------------------------------------------------------------------
+
+    private long bits;
+
+    private int bitCount;
+
+    private long bytesRead;
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // The last 32 KB inflated (circular).
+    // ---------------------------------------------------------------------------------------------------------------
+
+    private final byte[] window = new byte[WINDOW];
+
+    private long out;
+
+    private long lastPoint;
+
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+    private boolean headerDone;
+
+    MeteoInflater(InputStream in, long span, AccessPoints cb)
+    {
+        this.in = in;
+        this.span = span;
+        this.cb = cb;
+    }
+
+    /**
+     * @return the first line of the inflated data (i.e., the CSV header with its newline).
+     */
+    byte[] header()
+    {
+        return header.toByteArray();
+    }
+
+    /**
+     * @return the size of the inflated data.
+     */
+    long inflate() throws IOException
+    {
+        boolean first = true;
+
+        while (readMemberHeader(first))
+        {
+            first = false;
+
+            cb.point(bitPosition() >>> 3, out, new byte[0], isLineStart());
+            lastPoint = out;
+
+            boolean last;
+
+            do
+            {
+                // Byte aligned only : the stored blocks are aligned on the bytes of the file (i.e., java.util.zip has no
+                // inflatePrime() to inflate from a bit offset).
+                if (out - lastPoint >= span && (bitPosition() & 7) == 0)
+                {
+                    cb.point(bitPosition() >>> 3, out, window(), isLineStart());
+                    lastPoint = out;
+                }
+
+                last = readBits(1) == 1;
+
+                switch (readBits(2))
+                {
+                    case 0 -> inflateStored();
+                    case 1 -> inflateBlock(FIXED_LITERALS, FIXED_DISTANCES);
+                    case 2 -> inflateDynamic();
+                    default -> throw new IOException("invalid deflate block");
+                }
+            }
+            while (!last);
+
+            // CRC32 and ISIZE.
+            alignToByte();
+            readBits(32);
+            readBits(32);
+        }
+
+        return out;
+    }
+
+    /**
+     * @return false at the end of the file (i.e., no more member).
+     */
+    private boolean readMemberHeader(boolean first) throws IOException
+    {
+        final int id1 = readByteOrEOF();
+
+        if (id1 == -1 && !first)
+        {
+            return false;
+        }
+
+        if (id1 != 0x1f || readBits(8) != 0x8b || readBits(8) != 8)
+        {
+            throw new IOException("not a gzip file");
+        }
+
+        final int flags = readBits(8);
+
+        // MTIME, XFL, OS
+        readBits(32);
+        readBits(16);
+
+        // FEXTRA
+        if ((flags & 4) != 0)
+        {
+            final int length = readBits(16);
+
+            for (int ii = 0; ii < length; ii++)
+            {
+                readBits(8);
+            }
+        }
+
+        // FNAME, FCOMMENT : zero terminated.
+        for (int flag : new int[]{8, 16})
+        {
+            if ((flags & flag) != 0)
+            {
+                while (readBits(8) != 0)
+                {
+                    // skip
+                }
+            }
+        }
+
+        // FHCRC
+        if ((flags & 2) != 0)
+        {
+            readBits(16);
+        }
+
+        return true;
+    }
+
+    private void inflateStored() throws IOException
+    {
+        alignToByte();
+
+        final int length = readBits(16);
+        final int nlength = readBits(16);
+
+        if ((length ^ 0xFFFF) != nlength)
+        {
+            throw new IOException("invalid stored block");
+        }
+
+        for (int ii = 0; ii < length; ii++)
+        {
+            output((byte) readBits(8));
+        }
+    }
+
+    private void inflateDynamic() throws IOException
+    {
+        final int literalCount = readBits(5) + 257;
+        final int distanceCount = readBits(5) + 1;
+        final int codeLengthCount = readBits(4) + 4;
+
+        final int[] codeLengthLengths = new int[19];
+
+        for (int ii = 0; ii < codeLengthCount; ii++)
+        {
+            codeLengthLengths[CODE_LENGTH_ORDER[ii]] = readBits(3);
+        }
+
+        final Huffman codeLengths = new Huffman(codeLengthLengths, 19);
+        final int[] lengths = new int[literalCount + distanceCount];
+
+        for (int ii = 0; ii < lengths.length; )
+        {
+            final int symbol = decode(codeLengths);
+
+            if (symbol < 16)
+            {
+                lengths[ii++] = symbol;
+                continue;
+            }
+
+            final int value;
+            final int repeat;
+
+            switch (symbol)
+            {
+                case 16 ->
+                {
+                    if (ii == 0)
+                    {
+                        throw new IOException("invalid code lengths");
+                    }
+
+                    value = lengths[ii - 1];
+                    repeat = 3 + readBits(2);
+                }
+                case 17 ->
+                {
+                    value = 0;
+                    repeat = 3 + readBits(3);
+                }
+                default ->
+                {
+                    value = 0;
+                    repeat = 11 + readBits(7);
+                }
+            }
+
+            if (ii + repeat > lengths.length)
+            {
+                throw new IOException("invalid code lengths");
+            }
+
+            Arrays.fill(lengths, ii, ii + repeat, value);
+            ii += repeat;
+        }
+
+        inflateBlock(
+                new Huffman(lengths, literalCount),
+                new Huffman(Arrays.copyOfRange(lengths, literalCount, lengths.length), distanceCount)
+        );
+    }
+
+    private void inflateBlock(Huffman literals, Huffman distances) throws IOException
+    {
+        while (true)
+        {
+            final int symbol = decode(literals);
+
+            if (symbol < 256)
+            {
+                output((byte) symbol);
+                continue;
+            }
+
+            if (symbol == 256)
+            {
+                return;
+            }
+
+            final int lengthCode = symbol - 257;
+
+            if (lengthCode >= LENGTH_BASES.length)
+            {
+                throw new IOException("invalid length code");
+            }
+
+            final int length = LENGTH_BASES[lengthCode] + readBits(LENGTH_EXTRAS[lengthCode]);
+            final int distanceCode = decode(distances);
+
+            if (distanceCode >= DISTANCE_BASES.length)
+            {
+                throw new IOException("invalid distance code");
+            }
+
+            final int distance = DISTANCE_BASES[distanceCode] + readBits(DISTANCE_EXTRAS[distanceCode]);
+
+            if (distance > out)
+            {
+                throw new IOException("invalid distance");
+            }
+
+            for (int ii = 0; ii < length; ii++)
+            {
+                output(window[(int) ((out - distance) & (WINDOW - 1))]);
+            }
+        }
+    }
+
+    private void output(byte b)
+    {
+        window[(int) (out & (WINDOW - 1))] = b;
+        out++;
+
+        if (!headerDone)
+        {
+            header.write(b);
+            headerDone = b == '\n';
+        }
+    }
+
+    /**
+     * @return the last 32 KB (or less) inflated.
+     */
+    private byte[] window()
+    {
+        final int size = (int) Math.min(out, WINDOW);
+        final byte[] copy = new byte[size];
+
+        for (int ii = 0; ii < size; ii++)
+        {
+            copy[ii] = window[(int) ((out - size + ii) & (WINDOW - 1))];
+        }
+
+        return copy;
+    }
+
+    private boolean isLineStart()
+    {
+        return out == 0 || window[(int) ((out - 1) & (WINDOW - 1))] == '\n';
+    }
+
+    private int decode(Huffman huffman) throws IOException
+    {
+        fill(huffman.maxLength);
+
+        final int entry = huffman.table[(int) (bits & ((1 << huffman.maxLength) - 1))];
+        final int length = entry & 0xF;
+
+        if (length == 0 || length > bitCount)
+        {
+            throw new IOException("invalid Huffman code");
+        }
+
+        bits >>>= length;
+        bitCount -= length;
+
+        return entry >>> 4;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Bits.
+    // ---------------------------------------------------------------------------------------------------------------
+
+    private long bitPosition()
+    {
+        return bytesRead * 8 - bitCount;
+    }
+
+    /**
+     * At least count bits (unless the end of the file : zeros never consumed).
+     */
+    private void fill(int count) throws IOException
+    {
+        while (bitCount < count)
+        {
+            final int b = in.read();
+
+            if (b == -1)
+            {
+                return;
+            }
+
+            bits |= (long) b << bitCount;
+            bitCount += 8;
+            bytesRead++;
+        }
+    }
+
+    private int readBits(int count) throws IOException
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        fill(count);
+
+        if (bitCount < count)
+        {
+            throw new EOFException("unexpected end of the gzip file");
+        }
+
+        final int value = (int) (bits & ((1L << count) - 1));
+
+        bits >>>= count;
+        bitCount -= count;
+
+        return value;
+    }
+
+    private int readByteOrEOF() throws IOException
+    {
+        fill(8);
+        return bitCount == 0 ? -1 : readBits(8);
+    }
+
+    private void alignToByte()
+    {
+        final int drop = bitCount & 7;
+
+        bits >>>= drop;
+        bitCount -= drop;
+    }
+
+    /**
+     * A canonical Huffman code as a lookup table of its max. length (bits reversed as read from the stream) : entry
+     * is (symbol << 4) | length.
+     */
+    private static class Huffman
+    {
+        final int maxLength;
+
+        final int[] table;
+
+        Huffman(int[] lengths, int count)
+        {
+            final int[] lengthCounts = new int[MAX_BITS + 1];
+            int max = 1;
+
+            for (int ii = 0; ii < count; ii++)
+            {
+                lengthCounts[lengths[ii]]++;
+                max = Math.max(max, lengths[ii]);
+            }
+
+            lengthCounts[0] = 0;
+
+            final int[] nextCodes = new int[MAX_BITS + 2];
+
+            for (int length = 1; length <= MAX_BITS; length++)
+            {
+                nextCodes[length + 1] = (nextCodes[length] + lengthCounts[length]) << 1;
+            }
+
+            this.maxLength = max;
+            this.table = new int[1 << max];
+
+            for (int symbol = 0; symbol < count; symbol++)
+            {
+                final int length = lengths[symbol];
+
+                if (length == 0)
+                {
+                    continue;
+                }
+
+                final int code = nextCodes[length]++;
+                final int reversed = Integer.reverse(code) >>> (32 - length);
+
+                for (int ii = reversed; ii < table.length; ii += 1 << length)
+                {
+                    table[ii] = (symbol << 4) | length;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface AccessPoints
+    {
+        /**
+         * @param byteOffset the start of a deflate block within the file
+         * @param outOffset  the inflated bytes so far
+         * @param window     the last (up to) 32 KB inflated
+         * @param lineStart  the previous inflated byte is a newline (or none)
+         */
+        void point(long byteOffset, long outOffset, byte[] window, boolean lineStart) throws IOException;
+    }
+}
@@ -0,0 +1,227 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The durable progress of a pass over a source (e.g., journal-temperatures.csv) : a line per completed or failed (period, department)
+ * unit and per completed period, flushed to the disk before moving on. A restarted pass skips the completed units
+ * and periods, and retries the failed (i.e., quarantined) ones.
+ * <p>
+ * A unit without any file is absent : checked again by the next passes (i.e., a file available later is processed)
+ * and its period is not completed until then (see isComplete()).
+ * <p>
+ * Delete the journal to start from scratch.
+ */
+public class MeteoJournal implements AutoCloseable
+{
+    public enum Status
+    {
+        DONE,
+        FAILED,
+        ABSENT,
+    }
+
+    private static final String PERIOD = "*";
+
+    private final Path file;
+
+    private final Object journalLOCK = new Object();
+
+    // period/department -> last status (department '*' : the whole period)
+    private final Map<String, Status> units = new HashMap<>();
+
+    @Nullable
+    private CsvWriter writer;
+
+    public MeteoJournal(Path file) throws IOException
+    {
+        this.file = file;
+
+        if (Files.exists(file))
+        {
+            try (final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(Files.newInputStream(file)))
+            {
+                for (CsvRecord record : reader)
+                {
+                    // Incomplete last line (e.g., killed while writing it).
+                    if (record.getFieldCount() < 3)
+                    {
+                        continue;
+                    }
+
+                    units.put(record.getField(0) + "/" + record.getField(1), Status.valueOf(record.getField(2)));
+                }
+            }
+            catch (IllegalArgumentException ex)
+            {
+                throw new IOException("invalid journal " + file, ex);
+            }
+
+            MeteoLoggers.GENERAL.info("journal %s [ done : %d ] [ failed : %d ] [ absent : %d ]".formatted(
+                    file,
+                    units.values().stream().filter(s -> s == Status.DONE).count(),
+                    units.values().stream().filter(s -> s == Status.FAILED).count(),
+                    units.values().stream().filter(s -> s == Status.ABSENT).count()
+            ));
+        }
+    }
+
+    /**
+     * The unit is journaled as done (absent if its file is missing) or as failed if the callback throws.
+     */
+    void process(String period, int department, Path path, MeteoSource.Action cb)
+    {
+        try
+        {
+            try
+            {
+                cb.cb(department, period, path);
+            }
+            catch (RuntimeException ex)
+            {
+                MeteoLoggers.GENERAL.error("%s @ %s quarantined : %s".formatted(period, department, ex.getMessage()), ex);
+                failed(period, department, ex);
+                return;
+            }
+
+            if (Files.exists(path))
+            {
+                done(period, department);
+            }
+            else
+            {
+                absent(period, department);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException("journal error while processing " + path, ex);
+        }
+    }
+
+    public boolean isDone(String period)
+    {
+        return isDone(period, PERIOD);
+    }
+
+    public boolean isDone(String period, int department)
+    {
+        return isDone(period, String.valueOf(department));
+    }
+
+    private boolean isDone(String period, String department)
+    {
+        synchronized (journalLOCK)
+        {
+            return units.get(period + "/" + department) == Status.DONE;
+        }
+    }
+
+    /**
+     * @param departments the accepted units of the period
+     * @return all the units are done (i.e., none failed or absent) : the period can be completed.
+     */
+    public boolean isComplete(String period, int[] departments)
+    {
+        for (int department : departments)
+        {
+            if (!isDone(period, department))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return at least a unit of the period is failed (i.e., not done since).
+     */
+    public boolean hasFailed(String period)
+    {
+        synchronized (journalLOCK)
+        {
+            return units.entrySet().stream().anyMatch(e -> e.getKey().startsWith(period + "/") && e.getValue() == Status.FAILED);
+        }
+    }
+
+    public void done(String period) throws IOException
+    {
+        record(period, PERIOD, Status.DONE, null);
+    }
+
+    public void done(String period, int department) throws IOException
+    {
+        record(period, String.valueOf(department), Status.DONE, null);
+    }
+
+    public void failed(String period, int department, Throwable error) throws IOException
+    {
+        record(period, String.valueOf(department), Status.FAILED, String.valueOf(error));
+    }
+
+    /**
+     * Journaled once (i.e., not again while still absent) : checked again by the next passes.
+     */
+    public void absent(String period, int department) throws IOException
+    {
+        synchronized (journalLOCK)
+        {
+            if (units.get(period + "/" + department) == Status.ABSENT)
+            {
+                return;
+            }
+
+            record(period, String.valueOf(department), Status.ABSENT, null);
+        }
+    }
+
+    private void record(String period, String department, Status status, @Nullable String message) throws IOException
+    {
+        synchronized (journalLOCK)
+        {
+            try
+            {
+                if (writer == null)
+                {
+                    writer = CsvWriter.builder().fieldSeparator(';').build(Files.newOutputStream(
+                            file, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC
+                    ));
+                }
+
+                writer.writeRecord(period, department, status.name(), LocalDateTime.now().toString(), message != null ? message : "");
+                writer.flush();
+            }
+            catch (IOException ex)
+            {
+                throw new IOException("IO error while writing " + file, ex);
+            }
+
+            units.put(period + "/" + department, status);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (journalLOCK)
+        {
+            if (writer != null)
+            {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+}
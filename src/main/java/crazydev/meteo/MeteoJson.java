@@ -0,0 +1,201 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A minimal JSON writer (no dependency) : commas are handled according to the nesting.
+ */
+public class MeteoJson
+{
+    private final StringBuilder sb = new StringBuilder();
+
+    // Nesting level -> has a first element already.
+    private boolean[] hasElement = new boolean[16];
+
+    private int depth;
+
+    // Next value is the value of a name.
+    private boolean isNamed;
+
+    public MeteoJson beginObject()
+    {
+        open('{');
+        return this;
+    }
+
+    public MeteoJson endObject()
+    {
+        close('}');
+        return this;
+    }
+
+    public MeteoJson beginArray()
+    {
+        open('[');
+        return this;
+    }
+
+    public MeteoJson endArray()
+    {
+        close(']');
+        return this;
+    }
+
+    public MeteoJson name(String name)
+    {
+        separator();
+        quote(name);
+        sb.append(':');
+        isNamed = true;
+        return this;
+    }
+
+    public MeteoJson value(@Nullable String value)
+    {
+        separator();
+
+        if (value == null)
+        {
+            sb.append("null");
+        }
+        else
+        {
+            quote(value);
+        }
+
+        return this;
+    }
+
+    public MeteoJson value(long value)
+    {
+        separator();
+        sb.append(value);
+        return this;
+    }
+
+    public MeteoJson value(double value)
+    {
+        separator();
+
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            sb.append("null");
+        }
+        else
+        {
+            sb.append(String.format(Locale.ENGLISH, "%.3f", value));
+        }
+
+        return this;
+    }
+
+    public MeteoJson value(boolean value)
+    {
+        separator();
+        sb.append(value);
+        return this;
+    }
+
+    public MeteoJson field(String name, @Nullable String value)
+    {
+        return name(name).value(value);
+    }
+
+    public MeteoJson field(String name, long value)
+    {
+        return name(name).value(value);
+    }
+
+    public MeteoJson field(String name, double value)
+    {
+        return name(name).value(value);
+    }
+
+    public MeteoJson field(String name, boolean value)
+    {
+        return name(name).value(value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return sb.toString();
+    }
+
+    private void open(char c)
+    {
+        separator();
+        sb.append(c);
+
+        depth++;
+
+        if (depth == hasElement.length)
+        {
+            hasElement = Arrays.copyOf(hasElement, depth * 2);
+        }
+
+        hasElement[depth] = false;
+    }
+
+    private void close(char c)
+    {
+        if (depth == 0)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        depth--;
+        sb.append(c);
+    }
+
+    private void separator()
+    {
+        if (isNamed)
+        {
+            isNamed = false;
+            return;
+        }
+
+        if (hasElement[depth])
+        {
+            sb.append(',');
+        }
+
+        hasElement[depth] = true;
+    }
+
+    private void quote(String value)
+    {
+        sb.append('"');
+
+        for (int ii = 0; ii < value.length(); ii++)
+        {
+            final char c = value.charAt(ii);
+
+            switch (c)
+            {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+
+        sb.append('"');
+    }
+}
@@ -0,0 +1,94 @@
+package crazydev.meteo;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A measure of the H files (e.g., T/QT) extracted by MeteoTemperatures into its own prefix-period.csv.gz files : the
+ * columns are resolved by name from the header of each file.
+ */
+public class MeteoMeasure
+{
+    /**
+     * Temperature (°C) : the observations-period.csv.gz files.
+     */
+    public static final MeteoMeasure T = new MeteoMeasure("T", "QT", "observations", "TEMP");
+
+    /**
+     * Precipitations over the hour (mm).
+     */
+    public static final MeteoMeasure RR1 = new MeteoMeasure("RR1", "QRR1", "precipitations", "RAIN");
+
+    /**
+     * Mean wind speed over 10 min. (m/s).
+     */
+    public static final MeteoMeasure FF = new MeteoMeasure("FF", "QFF", "winds", "WIND");
+
+    /**
+     * Relative humidity (%).
+     */
+    public static final MeteoMeasure U = new MeteoMeasure("U", "QU", "humidities", "HUMIDITY");
+
+    /**
+     * Sea level pressure (hPa).
+     */
+    public static final MeteoMeasure PMER = new MeteoMeasure("PMER", "QPMER", "pressures", "PRESSURE");
+
+    public static final List<MeteoMeasure> ALL = List.of(T, RR1, FF, U, PMER);
+
+    /**
+     * The H file columns.
+     */
+    public final String column;
+
+    public final String qualityColumn;
+
+    /**
+     * The generated files : prefix-period.csv.gz with STATION_ID;TIMESTAMP;name;Q_name (or STATION_KEY;HOUR_KEY;...
+     * once keyed, see MeteoTemperatures.keys()).
+     */
+    public final String prefix;
+
+    public final String name;
+
+    public MeteoMeasure(String column, String qualityColumn, String prefix, String name)
+    {
+        this.column = column;
+        this.qualityColumn = qualityColumn;
+        this.prefix = prefix;
+        this.name = name;
+    }
+
+    MeteoPeriodWriter createWriter(Path ic3data)
+    {
+        return new MeteoPeriodWriter(ic3data, prefix, header(false));
+    }
+
+    String[] header(boolean keyed)
+    {
+        return keyed
+                ? new String[]{"STATION_KEY", "HOUR_KEY", name, "Q_" + name}
+                : new String[]{"STATION_ID", "TIMESTAMP", name, "Q_" + name};
+    }
+
+    /**
+     * @return the index of the column within the header.
+     */
+    static int field(List<String> header, String column)
+    {
+        final int field = header.indexOf(column);
+
+        if (field == -1)
+        {
+            throw new RuntimeException("missing column " + column);
+        }
+
+        return field;
+    }
+
+    @Override
+    public String toString()
+    {
+        return column;
+    }
+}
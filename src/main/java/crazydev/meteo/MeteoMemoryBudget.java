@@ -0,0 +1,146 @@
+package crazydev.meteo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A (heap) memory budget shared by the department threads : the components register their (estimated) usage and
+ * either wait for memory to be released (backpressure) or spill to temporary files when the budget is reached.
+ * <p>
+ * A reservation is always granted when nothing is reserved : a single task larger than the budget still runs.
+ */
+public class MeteoMemoryBudget
+{
+    private final long maxBytes;
+
+    private final Path spillFolder;
+
+    private final Object LOCK = new Object();
+
+    private long used;
+
+    private long peak;
+
+    final AtomicLong spills = new AtomicLong();
+
+    final AtomicLong spilledBytes = new AtomicLong();
+
+    public MeteoMemoryBudget(long maxBytes, Path spillFolder)
+    {
+        this.maxBytes = maxBytes;
+        this.spillFolder = spillFolder;
+    }
+
+    public long maxBytes()
+    {
+        return maxBytes;
+    }
+
+    public long used()
+    {
+        synchronized (LOCK)
+        {
+            return used;
+        }
+    }
+
+    public long peak()
+    {
+        synchronized (LOCK)
+        {
+            return peak;
+        }
+    }
+
+    /**
+     * Waits until the bytes fit within the budget (backpressure).
+     */
+    public void reserve(long bytes)
+    {
+        synchronized (LOCK)
+        {
+            while (used > 0 && used + bytes > maxBytes)
+            {
+                try
+                {
+                    LOCK.wait();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while waiting for " + MeteoUtils.formatSize(bytes), ex);
+                }
+            }
+
+            add(bytes);
+        }
+    }
+
+    /**
+     * @return false if the bytes do not fit within the budget (e.g., the caller spills instead).
+     */
+    public boolean tryReserve(long bytes)
+    {
+        synchronized (LOCK)
+        {
+            if (used > 0 && used + bytes > maxBytes)
+            {
+                return false;
+            }
+
+            add(bytes);
+            return true;
+        }
+    }
+
+    /**
+     * Over the budget if required : for the minimal memory a component cannot progress without.
+     */
+    public void reserveForced(long bytes)
+    {
+        synchronized (LOCK)
+        {
+            add(bytes);
+        }
+    }
+
+    public void release(long bytes)
+    {
+        synchronized (LOCK)
+        {
+            used -= bytes;
+
+            if (used < 0)
+            {
+                throw new RuntimeException("OUCH!");
+            }
+
+            LOCK.notifyAll();
+        }
+    }
+
+    Path createSpillFile(String prefix) throws IOException
+    {
+        Files.createDirectories(spillFolder);
+        return Files.createTempFile(spillFolder, prefix, ".bin");
+    }
+
+    private void add(long bytes)
+    {
+        used += bytes;
+        peak = Math.max(peak, used);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[ budget : %s ] [ peak : %s ] [ spills : %s ] [ spilled : %s ]".formatted(
+                MeteoUtils.formatSize(maxBytes),
+                MeteoUtils.formatSize(peak()),
+                MeteoUtils.formatNice(spills.get()),
+                MeteoUtils.formatSize(spilledBytes.get())
+        );
+    }
+}
@@ -0,0 +1,313 @@
+package crazydev.meteo;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The per stage metrics of a pass over the H files (e.g., MeteoTemperatures) : updated by the department threads
+ * and reported as JSON at the end of the pass (optionally as periodic snapshots in the log as well).
+ */
+public class MeteoMetrics implements AutoCloseable
+{
+    private final String name;
+
+    private final long startMS = System.currentTimeMillis();
+
+    // Compressed bytes of the H files.
+    final LongAdder bytesRead = new LongAdder();
+
+    final LongAdder bytesInflated = new LongAdder();
+
+    final LongAdder rowsParsed = new LongAdder();
+
+    // Without any value.
+    final LongAdder rowsMissing = new LongAdder();
+
+    // E.g., outside the opening period of the station.
+    final LongAdder rowsRejected = new LongAdder();
+
+    final LongAdder rowsWritten = new LongAdder();
+
+    // Already written (see MeteoTemperatures.tail()).
+    final LongAdder rowsSkipped = new LongAdder();
+
+    // Rejected by the filter before being parsed (see MeteoFilter).
+    final LongAdder rowsFiltered = new LongAdder();
+
+    // Blocked on the (shared) writers.
+    final LongAdder lockWaitNS = new LongAdder();
+
+    // Compression and write of the generated files.
+    final LongAdder compressionNS = new LongAdder();
+
+    private final Object filesLOCK = new Object();
+
+    // department -> file latencies (ms)
+    private final Int2ObjectOpenHashMap<LongArrayList> files = new Int2ObjectOpenHashMap<>();
+
+    @Nullable
+    private ScheduledExecutorService snapshots;
+
+    public MeteoMetrics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Logs a snapshot of the metrics every given seconds (until closed).
+     */
+    public MeteoMetrics snapshotEvery(int seconds)
+    {
+        if (seconds > 0)
+        {
+            snapshots = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("metrics-" + name).factory());
+            snapshots.scheduleAtFixedRate(() -> MeteoLoggers.GENERAL.info(toJson(false)), seconds, seconds, TimeUnit.SECONDS);
+        }
+
+        return this;
+    }
+
+    public InputStream countRead(InputStream in)
+    {
+        return new CountingInputStream(in, bytesRead);
+    }
+
+    public InputStream countInflated(InputStream in)
+    {
+        return new CountingInputStream(in, bytesInflated);
+    }
+
+    public OutputStream timeCompression(OutputStream out)
+    {
+        return new TimedOutputStream(out, compressionNS);
+    }
+
+    /**
+     * @param startNS before waiting for the lock
+     */
+    public void lockAcquired(long startNS)
+    {
+        lockWaitNS.add(System.nanoTime() - startNS);
+    }
+
+    /**
+     * @param startMS the start of the processing of the file
+     */
+    public void fileProcessed(int department, long startMS)
+    {
+        final long latencyMS = System.currentTimeMillis() - startMS;
+
+        synchronized (filesLOCK)
+        {
+            files.computeIfAbsent(department, d -> new LongArrayList()).add(latencyMS);
+        }
+    }
+
+    /**
+     * Writes the JSON report (and stops the snapshots).
+     */
+    public void report(Path file) throws IOException
+    {
+        close();
+
+        final String json = toJson(true);
+
+        try
+        {
+            Files.writeString(file, json, StandardCharsets.UTF_8);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        MeteoLoggers.GENERAL.info("%s metrics : %s".formatted(name, file));
+    }
+
+    @Override
+    public void close()
+    {
+        if (snapshots != null)
+        {
+            snapshots.shutdownNow();
+            snapshots = null;
+        }
+    }
+
+    String toJson(boolean withDepartments)
+    {
+        final long elapsedMS = System.currentTimeMillis() - startMS;
+
+        final MeteoJson json = new MeteoJson().beginObject();
+
+        json.field("name", name);
+        json.field("elapsedMS", elapsedMS);
+
+        json.name("bytes").beginObject();
+        json.field("read", bytesRead.sum());
+        json.field("inflated", bytesInflated.sum());
+        json.endObject();
+
+        json.name("rows").beginObject();
+        json.field("parsed", rowsParsed.sum());
+        json.field("missing", rowsMissing.sum());
+        json.field("rejected", rowsRejected.sum());
+        json.field("written", rowsWritten.sum());
+        json.field("skipped", rowsSkipped.sum());
+        json.field("filtered", rowsFiltered.sum());
+        json.field("parsedPerSecond", rowsParsed.sum() * 1000.0 / Math.max(1, elapsedMS));
+        json.endObject();
+
+        json.field("lockWaitMS", lockWaitNS.sum() / 1_000_000.0);
+        json.field("compressionMS", compressionNS.sum() / 1_000_000.0);
+
+        synchronized (filesLOCK)
+        {
+            final LongArrayList all = new LongArrayList();
+
+            for (LongArrayList latencies : files.values())
+            {
+                all.addAll(latencies);
+            }
+
+            json.name("fileLatencyMS");
+            latencies(json, all);
+
+            if (withDepartments)
+            {
+                final int[] departments = files.keySet().toIntArray();
+                IntArrays.quickSort(departments);
+
+                json.name("departments").beginArray();
+
+                for (int department : departments)
+                {
+                    json.beginObject();
+                    json.field("department", department);
+                    json.name("fileLatencyMS");
+                    latencies(json, files.get(department));
+                    json.endObject();
+                }
+
+                json.endArray();
+            }
+        }
+
+        return json.endObject().toString();
+    }
+
+    private static void latencies(MeteoJson json, LongArrayList latencies)
+    {
+        final long[] sorted = latencies.toLongArray();
+        Arrays.sort(sorted);
+
+        json.beginObject();
+        json.field("count", sorted.length);
+        json.field("p50", percentile(sorted, 0.50));
+        json.field("p99", percentile(sorted, 0.99));
+        json.field("max", sorted.length > 0 ? sorted[sorted.length - 1] : 0);
+        json.field("total", Arrays.stream(sorted).sum());
+        json.endObject();
+    }
+
+    /**
+     * Nearest rank.
+     */
+    private static long percentile(long[] sorted, double percentile)
+    {
+        if (sorted.length == 0)
+        {
+            return 0;
+        }
+
+        return sorted[(int) Math.max(0, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static class CountingInputStream extends FilterInputStream
+    {
+        private final LongAdder count;
+
+        CountingInputStream(InputStream in, LongAdder count)
+        {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final int b = super.read();
+
+            if (b >= 0)
+            {
+                count.increment();
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            final int read = super.read(b, off, len);
+
+            if (read > 0)
+            {
+                count.add(read);
+            }
+
+            return read;
+        }
+    }
+
+    private static class TimedOutputStream extends FilterOutputStream
+    {
+        private final LongAdder elapsedNS;
+
+        TimedOutputStream(OutputStream out, LongAdder elapsedNS)
+        {
+            super(out);
+            this.elapsedNS = elapsedNS;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            final long startNS = System.nanoTime();
+            out.write(b);
+            elapsedNS.add(System.nanoTime() - startNS);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            final long startNS = System.nanoTime();
+            out.write(b, off, len);
+            elapsedNS.add(System.nanoTime() - startNS);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            final long startNS = System.nanoTime();
+            out.close();
+            elapsedNS.add(System.nanoTime() - startNS);
+        }
+    }
+}
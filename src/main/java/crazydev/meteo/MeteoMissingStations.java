@@ -8,10 +8,11 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 public class MeteoMissingStations
 {
@@ -23,6 +24,18 @@ public class MeteoMissingStations
 
     private final Map<Integer, MeteoMissingStation> missingStations = new HashMap<>();
 
+    private int metricsSnapshotSeconds;
+
+    private MeteoCodec codec = MeteoCodec.GZIP;
+
+    private boolean keyed;
+
+    // About the size of a MeteoMissingStation and its entry.
+    private static final long MISSING_STATION_BYTES = 512;
+
+    @Nullable
+    private MeteoMemoryBudget budget;
+
     public MeteoMissingStations(MeteoH in, Path ic3data, MeteoStations stations)
     {
         this.in = in;
@@ -30,11 +43,60 @@ public class MeteoMissingStations
         this.stations = stations;
     }
 
+    /**
+     * Logs a snapshot of the metrics (see MeteoMetrics) every given seconds while writing (0 : none).
+     */
+    public MeteoMissingStations metricsSnapshots(int seconds)
+    {
+        this.metricsSnapshotSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * The compression of the generated missing stations file (default : gzip).
+     */
+    public MeteoMissingStations codec(MeteoCodec codec)
+    {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * The generated missing stations file with a STATION_KEY column : following the keys of the stations (see
+     * MeteoStations.key()).
+     */
+    public MeteoMissingStations keys(boolean keyed)
+    {
+        this.keyed = keyed;
+        return this;
+    }
+
+    /**
+     * Registers the memory of the missing stations (null : none).
+     */
+    public MeteoMissingStations memoryBudget(@Nullable MeteoMemoryBudget budget)
+    {
+        this.budget = budget;
+        return this;
+    }
+
     public void write(@Nullable String periodFilter, @Nullable Integer departmentFilter) throws IOException
+    {
+        write(MeteoFilter.of(periodFilter, departmentFilter));
+    }
+
+    /**
+     * @param filter the files pruned by name and the rows rejected before being parsed (see MeteoFilter).
+     */
+    public void write(MeteoFilter filter) throws IOException
     {
         final long totalStartMS = System.currentTimeMillis();
 
-        in.forEachPD(periodFilter, departmentFilter, (department, period, path) -> {
+        final boolean rowFilter = filter.hasRowFilter();
+
+        final MeteoMetrics metrics = new MeteoMetrics("missing-stations").snapshotEvery(metricsSnapshotSeconds);
+
+        in.forEachPD(filter, (department, period, path) -> {
 
             // ---------------------------------------------------------------------------------------------------------
             // MT callback.
@@ -49,22 +111,32 @@ public class MeteoMissingStations
 
                 final long startMS = System.currentTimeMillis();
 
-                try (final var reader = createCsvReader(path))
+                try (final var reader = createCsvReader(path, metrics))
                 {
                     MeteoLoggers.GENERAL.info(period + " @ " + department);
 
                     reader.forEach(record -> {
 
+                        metrics.rowsParsed.increment();
+
+                        if (rowFilter && !filter.isAcceptedRow(MeteoFilter.digits(record.getField(MeteoH.F_NUM_POSTE)), MeteoFilter.digits(record.getField(MeteoH.F_AAAAMMJJHH))))
+                        {
+                            metrics.rowsFiltered.increment();
+                            return;
+                        }
+
                         final int stationId = MeteoUtils.parseInteger(record.getField(MeteoH.F_NUM_POSTE));
                         final MeteoStation station = stations.getStationEx(stationId);
 
                         if (station == null)
                         {
-                            reportMissingStation(department, stationId, record);
+                            reportMissingStation(metrics, department, stationId, record);
                         }
 
                     });
 
+                    metrics.fileProcessed(department, startMS);
+
                     MeteoLoggers.GENERAL.debug("%s @ %s in %s".formatted(
                             period,
                             department,
@@ -82,31 +154,49 @@ public class MeteoMissingStations
 
         write();
 
+        metrics.report(ic3data.resolve("metrics-missing-stations.json"));
+
+        if (budget != null)
+        {
+            budget.release(missingStations.size() * MISSING_STATION_BYTES);
+            MeteoLoggers.GENERAL.info("memory " + budget);
+        }
+
         MeteoLoggers.GENERAL.warn("%s [ count : %s ]".formatted(
                 MeteoUtils.formatMillisEx(totalStartMS),
                 MeteoUtils.formatNice(missingStations.size())
         ));
     }
 
-    private static CsvReader<NamedCsvRecord> createCsvReader(Path path) throws IOException
+    private static CsvReader<NamedCsvRecord> createCsvReader(Path path, MeteoMetrics metrics) throws IOException
     {
         return CsvReader.builder()
                 .fieldSeparator(";")
                 .ofNamedCsvRecord(
-                        new GZIPInputStream(Files.newInputStream(path))
+                        metrics.countInflated(new GZIPInputStream(metrics.countRead(Files.newInputStream(path))))
                 );
     }
 
-    private void reportMissingStation(int department, int stationId, NamedCsvRecord record)
+    private void reportMissingStation(MeteoMetrics metrics, int department, int stationId, NamedCsvRecord record)
     {
+        final long startNS = System.nanoTime();
+
         synchronized (missingStations)
         {
+            metrics.lockAcquired(startNS);
+
             MeteoMissingStation missing = missingStations.get(stationId);
 
             if (missing == null)
             {
                 missing = MeteoMissingStation.of(department, record);
                 missingStations.put(stationId, missing);
+
+                if (budget != null)
+                {
+                    // Required whatever the budget : the file cannot be written without.
+                    budget.reserveForced(MISSING_STATION_BYTES);
+                }
             }
             else
             {
@@ -122,43 +212,41 @@ public class MeteoMissingStations
 
     private void write() throws IOException
     {
-        final Path file = ic3data.resolve("stations-missings.csv.gz");
+        if (keyed)
+        {
+            stations.addMissingStations(missingStations.keySet());
+        }
+
+        final Path file = codec.file(ic3data, "stations-missings");
 
-        try (final var writer = CsvWriter.builder().fieldSeparator(';').build(new GZIPOutputStream(Files.newOutputStream(file))))
+        try (final var writer = CsvWriter.builder().fieldSeparator(';').build(codec.output(Files.newOutputStream(file))))
         {
-            writer.writeRecord(
-                    "STATION_IS_MISSING",
-                    "STATION_ID",
-                    "STATION_NAME",
-                    "STATION_LONG_NAME",
-                    "STATION_NAMED_PLACE",
-                    "STATION_DEPARTMENT_ID",
-                    "STATION_DEPARTMENT_NAME",
-                    "STATION_LAT",
-                    "STATION_LON",
-                    "STATION_ALT",
-                    "STATION_START_DATE",
-                    "STATION_END_DATE",
-                    "STATION_IS_CURRENT"
-            );
+            writer.writeRecord(MeteoStations.header(keyed));
 
             for (MeteoMissingStation station : missingStations.values())
             {
-                writer.writeRecord(
-                        String.valueOf(true),
-                        String.valueOf(station.id),
-                        station.name,
-                        null,
-                        null,
-                        String.valueOf(station.dept),
-                        station.deptName,
-                        String.valueOf(station.lat),
-                        String.valueOf(station.lon),
-                        String.valueOf(station.alt),
-                        station.startDate.toString(MeteoStations.STATION_DATE_FORMAT),
-                        station.endDate.toString(MeteoStations.STATION_DATE_FORMAT),
-                        String.valueOf(station.endDate.equals(MeteoStation.EOT))
-                );
+                final List<String> row = new ArrayList<>(14);
+
+                if (keyed)
+                {
+                    row.add(String.valueOf(stations.key(station.id)));
+                }
+
+                row.add(String.valueOf(true));
+                row.add(String.valueOf(station.id));
+                row.add(station.name);
+                row.add(null);
+                row.add(null);
+                row.add(String.valueOf(station.dept));
+                row.add(station.deptName);
+                row.add(String.valueOf(station.lat));
+                row.add(String.valueOf(station.lon));
+                row.add(String.valueOf(station.alt));
+                row.add(station.startDate.toString(MeteoStations.STATION_DATE_FORMAT));
+                row.add(station.endDate.toString(MeteoStations.STATION_DATE_FORMAT));
+                row.add(String.valueOf(station.endDate.equals(MeteoStation.EOT)));
+
+                writer.writeRecord(row);
             }
         }
         catch (IOException ex)
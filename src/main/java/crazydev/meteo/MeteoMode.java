@@ -4,5 +4,8 @@ public enum MeteoMode
 {
     STATIONS,
     MISSING_STATIONS,
-    TEMPERATURES
+    TEMPERATURES,
+    DAILY_TEMPERATURES,
+    NORMALS,
+    HOURS
 }
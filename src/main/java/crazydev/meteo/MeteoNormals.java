@@ -0,0 +1,452 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.NamedCsvRecord;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Climatological normals of a baseline period (e.g., 1991-2020) per station and day of the year, computed from the
+ * daily temperatures (see MeteoDailyTemperatures) and smoothed over a moving window of days :
+ * <pre>
+ *     normals-TEMP_AVG-1991-2020.csv.gz
+ *     normals-TEMP_AVG-1991-2020.fingerprint
+ * </pre>
+ * The normals are not recomputed as long as the fingerprint (parameters and daily input files) is unchanged.
+ */
+public class MeteoNormals
+{
+    // Day of year (leap year) of the first day of each month.
+    private static final int[] MONTH_OFFSETS = {0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335};
+
+    private static final int DAYS = 366;
+
+    private final Path daily;
+
+    private final Path ic3data;
+
+    // TEMP_AVG, TEMP_TN, TEMP_TX, ...
+    private final String measure;
+
+    // Inclusive
+    private final int fromYear;
+
+    // Inclusive
+    private final int toYear;
+
+    // e.g., 15 : +/- 15 days around the day of the year.
+    private final int halfWindow;
+
+    private final int[] percentiles;
+
+    public MeteoNormals(Path daily, Path ic3data, String measure, int fromYear, int toYear, int halfWindow, int... percentiles)
+    {
+        if (fromYear > toYear || halfWindow < 0 || halfWindow >= DAYS / 2)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        this.daily = daily;
+        this.ic3data = ic3data;
+        this.measure = measure;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        this.halfWindow = halfWindow;
+        this.percentiles = percentiles.length > 0 ? percentiles : new int[]{10, 50, 90};
+    }
+
+    public Path file()
+    {
+        return ic3data.resolve("normals-" + measure + "-" + fromYear + "-" + toYear + ".csv.gz");
+    }
+
+    private Path fingerprintFile()
+    {
+        return ic3data.resolve("normals-" + measure + "-" + fromYear + "-" + toYear + ".fingerprint");
+    }
+
+    /**
+     * @return false if the normals are up-to-date.
+     */
+    public boolean write() throws IOException
+    {
+        final long totalStartMS = System.currentTimeMillis();
+
+        final List<Path> inputs = inputs();
+        final String fingerprint = fingerprint(inputs);
+
+        if (Files.exists(file()) && Files.exists(fingerprintFile()) && Files.readString(fingerprintFile()).equals(fingerprint))
+        {
+            MeteoLoggers.GENERAL.info("%s is up-to-date".formatted(file()));
+            return false;
+        }
+
+        final Int2ObjectOpenHashMap<StationValues> values = load(inputs);
+        final StationNormals[] normals = compute(values);
+
+        write(normals);
+
+        Files.writeString(fingerprintFile(), fingerprint);
+
+        MeteoLoggers.GENERAL.warn("%s in %s [ stations : %s ]".formatted(
+                file(),
+                MeteoUtils.formatMillisEx(totalStartMS),
+                MeteoUtils.formatNice(normals.length)
+        ));
+
+        return true;
+    }
+
+    private List<Path> inputs() throws IOException
+    {
+        final List<Path> inputs = new ArrayList<>();
+
+        try (final var stream = Files.list(daily))
+        {
+            stream.forEach(path -> {
+
+                final String name = path.getFileName().toString();
+
+                if (name.startsWith("daily-") && name.endsWith(".csv.gz"))
+                {
+                    final MeteoInterval interval = MeteoInterval.of(name.substring("daily-".length(), name.length() - ".csv.gz".length()));
+
+                    if (interval.from.getYear() <= toYear && interval.to.getYear() > fromYear)
+                    {
+                        inputs.add(path);
+                    }
+                }
+            });
+        }
+
+        inputs.sort(Comparator.naturalOrder());
+
+        return inputs;
+    }
+
+    private String fingerprint(List<Path> inputs) throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(measure).append(';').append(fromYear).append(';').append(toYear).append(';').append(halfWindow).append(';').append(Arrays.toString(percentiles)).append('\n');
+
+        for (Path input : inputs)
+        {
+            sb.append(input.getFileName()).append(';').append(Files.size(input)).append(';').append(Files.getLastModifiedTime(input).toMillis()).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private Int2ObjectOpenHashMap<StationValues> load(List<Path> inputs)
+    {
+        final Int2ObjectOpenHashMap<StationValues> values = new Int2ObjectOpenHashMap<>();
+
+        runAll(inputs, input -> {
+
+            final long startMS = System.currentTimeMillis();
+
+            try (final var reader = createCsvReader(input))
+            {
+                reader.forEach(record -> {
+
+                    final String value = record.getField(measure);
+
+                    if (MeteoUtils.isNullOrBlank(value))
+                    {
+                        return;
+                    }
+
+                    final String date = record.getField("DATE");
+                    final int year = MeteoUtils.parseInteger(date.substring(0, 4));
+
+                    if (year < fromYear || year > toYear)
+                    {
+                        return;
+                    }
+
+                    final int month = MeteoUtils.parseInteger(date.substring(4, 6));
+                    final int day = MeteoUtils.parseInteger(date.substring(6, 8));
+
+                    final int stationId = MeteoUtils.parseInteger(record.getField("STATION_ID"));
+
+                    // 1/100 °C : the daily average has two decimals.
+                    final int hundredths = (int) Math.round(MeteoUtils.parseDouble(value) * 100.0);
+
+                    final StationValues station;
+
+                    synchronized (values)
+                    {
+                        station = values.computeIfAbsent(stationId, StationValues::new);
+                    }
+
+                    station.add(MONTH_OFFSETS[month - 1] + day - 1, hundredths);
+                });
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("error while processing " + input, ex);
+            }
+
+            MeteoLoggers.GENERAL.debug("%s in %s".formatted(input.getFileName(), MeteoUtils.formatMillisEx(startMS)));
+        });
+
+        return values;
+    }
+
+    private StationNormals[] compute(Int2ObjectOpenHashMap<StationValues> values)
+    {
+        final List<StationValues> stations = new ArrayList<>(values.values());
+        stations.sort(Comparator.comparingInt(o -> o.stationId));
+
+        final StationNormals[] normals = new StationNormals[stations.size()];
+
+        final List<Integer> indices = new ArrayList<>();
+
+        for (int ii = 0; ii < normals.length; ii++)
+        {
+            indices.add(ii);
+        }
+
+        runAll(indices, ii -> normals[ii] = compute(stations.get(ii)));
+
+        return normals;
+    }
+
+    private StationNormals compute(StationValues station)
+    {
+        final StationNormals normals = new StationNormals(station.stationId, percentiles.length);
+
+        final IntArrayList window = new IntArrayList();
+
+        for (int doy = 0; doy < DAYS; doy++)
+        {
+            window.clear();
+
+            for (int dd = -halfWindow; dd <= halfWindow; dd++)
+            {
+                final IntArrayList dayValues = station.values[Math.floorMod(doy + dd, DAYS)];
+
+                if (dayValues != null)
+                {
+                    window.addAll(dayValues);
+                }
+            }
+
+            final int count = window.size();
+
+            if (count == 0)
+            {
+                continue;
+            }
+
+            final int[] sorted = window.toIntArray();
+            Arrays.sort(sorted);
+
+            double sum = 0;
+
+            for (int value : sorted)
+            {
+                sum += value;
+            }
+
+            final double mean = sum / count;
+
+            double sq = 0;
+
+            for (int value : sorted)
+            {
+                sq += (value - mean) * (value - mean);
+            }
+
+            normals.count[doy] = count;
+            normals.mean[doy] = mean / 100.0;
+            normals.stddev[doy] = count > 1 ? Math.sqrt(sq / (count - 1)) / 100.0 : 0;
+
+            for (int pp = 0; pp < percentiles.length; pp++)
+            {
+                normals.percentiles[pp][doy] = percentile(sorted, percentiles[pp]) / 100.0;
+            }
+        }
+
+        return normals;
+    }
+
+    /**
+     * Linear interpolation between the closest ranks.
+     */
+    static double percentile(int[] sorted, double percentile)
+    {
+        final double rank = percentile / 100.0 * (sorted.length - 1);
+
+        final int lo = (int) Math.floor(rank);
+        final int hi = (int) Math.ceil(rank);
+
+        return sorted[lo] + (rank - lo) * (sorted[hi] - sorted[lo]);
+    }
+
+    private void write(StationNormals[] normals) throws IOException
+    {
+        final Path file = file();
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        final List<String> header = new ArrayList<>(List.of(
+                "STATION_ID",
+                "MONTH",
+                "DAY",
+                "NORMAL_MEAN",
+                "NORMAL_STDDEV"
+        ));
+
+        for (int percentile : percentiles)
+        {
+            header.add("NORMAL_P" + percentile);
+        }
+
+        header.add("NORMAL_COUNT");
+
+        try (final var writer = CsvWriter.builder().fieldSeparator(';').build(new GZIPOutputStream(Files.newOutputStream(tmp))))
+        {
+            writer.writeRecord(header);
+
+            for (StationNormals station : normals)
+            {
+                for (int month = 1; month <= 12; month++)
+                {
+                    final int days = (month < 12 ? MONTH_OFFSETS[month] : DAYS) - MONTH_OFFSETS[month - 1];
+
+                    for (int day = 1; day <= days; day++)
+                    {
+                        final int doy = MONTH_OFFSETS[month - 1] + day - 1;
+
+                        if (station.count[doy] == 0)
+                        {
+                            continue;
+                        }
+
+                        final List<String> row = new ArrayList<>(header.size());
+
+                        row.add(String.valueOf(station.stationId));
+                        row.add(String.valueOf(month));
+                        row.add(String.valueOf(day));
+                        row.add(format(station.mean[doy]));
+                        row.add(format(station.stddev[doy]));
+
+                        for (double[] percentile : station.percentiles)
+                        {
+                            row.add(format(percentile[doy]));
+                        }
+
+                        row.add(String.valueOf(station.count[doy]));
+
+                        writer.writeRecord(row);
+                    }
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String format(double value)
+    {
+        return String.format(Locale.ENGLISH, "%.2f", value);
+    }
+
+    private static CsvReader<NamedCsvRecord> createCsvReader(Path path) throws IOException
+    {
+        return CsvReader.builder()
+                .fieldSeparator(";")
+                .ofNamedCsvRecord(
+                        new GZIPInputStream(Files.newInputStream(path))
+                );
+    }
+
+    private static <T> void runAll(List<T> items, Consumer<T> cb)
+    {
+        try (final ExecutorService pool = Executors.newFixedThreadPool(8))
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (T item : items)
+            {
+                futures.add(pool.submit(() -> cb.accept(item)));
+            }
+
+            try
+            {
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (ExecutionException | InterruptedException ex)
+            {
+                throw new RuntimeException("OUCH!", ex);
+            }
+        }
+    }
+
+    static class StationValues
+    {
+        final int stationId;
+
+        // day of year -> daily values (1/100 °C)
+        final IntArrayList[] values = new IntArrayList[DAYS];
+
+        StationValues(int stationId)
+        {
+            this.stationId = stationId;
+        }
+
+        synchronized void add(int doy, int value)
+        {
+            IntArrayList dayValues = values[doy];
+
+            if (dayValues == null)
+            {
+                dayValues = new IntArrayList();
+                values[doy] = dayValues;
+            }
+
+            dayValues.add(value);
+        }
+    }
+
+    static class StationNormals
+    {
+        final int stationId;
+
+        final int[] count = new int[DAYS];
+
+        final double[] mean = new double[DAYS];
+
+        final double[] stddev = new double[DAYS];
+
+        final double[][] percentiles;
+
+        StationNormals(int stationId, int percentileCount)
+        {
+            this.stationId = stationId;
+            this.percentiles = new double[percentileCount][DAYS];
+        }
+    }
+}
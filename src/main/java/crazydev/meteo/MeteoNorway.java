@@ -0,0 +1,332 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.reader.NamedCsvRecord;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The Norway hourly temperatures as downloaded from https://frost.met.no by the norway scripts :
+ * <pre>
+ *      /sources.csv        id,name,shortName,countryCode,county,municipality,latitude,longitude
+ *      /SN18700.zip        SN18700.csv : date,temperature,quality code
+ *      /...
+ * </pre>
+ * A single period (e.g., 1900-2026) and a unit per station (i.e., the department is the station ID without its SN
+ * prefix) : read as the H files (NUM_POSTE, AAAAMMJJHH, T, QT).
+ */
+public class MeteoNorway implements MeteoSource
+{
+    static final List<String> HEADER = List.of(C_STATION, C_TIMESTAMP, MeteoMeasure.T.column, MeteoMeasure.T.qualityColumn);
+
+    private final Path folder;
+
+    private final String period;
+
+    private final int toYear;
+
+    public MeteoNorway(Path folder, int fromYear, int toYear)
+    {
+        this.folder = folder;
+        this.period = fromYear + "-" + toYear;
+        this.toYear = toYear;
+    }
+
+    public Path file(int stationId)
+    {
+        return folder.resolve("SN" + stationId + ".zip");
+    }
+
+    /**
+     * @return the IDs of the sources.csv stations with a temperatures file.
+     */
+    public List<Integer> stationIds() throws IOException
+    {
+        final List<Integer> stationIds = new ArrayList<>();
+        final Path sources = folder.resolve("sources.csv");
+
+        try (final CsvReader<NamedCsvRecord> reader = CsvReader.builder().fieldSeparator(",").ofNamedCsvRecord(Files.newInputStream(sources)))
+        {
+            for (NamedCsvRecord record : reader)
+            {
+                final int stationId = parseStationId(record.getField("id"));
+
+                if (Files.exists(file(stationId)))
+                {
+                    stationIds.add(stationId);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while reading " + sources, ex);
+        }
+
+        stationIds.sort(null);
+
+        return stationIds;
+    }
+
+    @Override
+    public void forEachPD(MeteoFilter filter, @Nullable MeteoJournal journal, Action cb, @Nullable PeriodAction completed)
+    {
+        if (filter.period() != null && !isAcceptedPeriod(filter.period()))
+        {
+            return;
+        }
+
+        if (!filter.isAcceptedYears(MeteoInterval.of(period).from.getYear(), toYear))
+        {
+            return;
+        }
+
+        if (journal != null && journal.isDone(period))
+        {
+            MeteoLoggers.GENERAL.info("%s skipped (journal)".formatted(period));
+            return;
+        }
+
+        final List<Integer> stationIds;
+
+        try
+        {
+            stationIds = stationIds();
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException("IO error while processing " + folder, ex);
+        }
+
+        // A station per unit.
+        final int[] units = stationIds.stream()
+                .mapToInt(Integer::intValue)
+                .filter(stationId -> filter.isAcceptedDepartment(stationId) && filter.isAcceptedStation(stationId))
+                .toArray();
+
+        try (final ExecutorService pool = Executors.newFixedThreadPool(8))
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (final int stationId : units)
+            {
+                if (journal != null && journal.isDone(period, stationId))
+                {
+                    continue;
+                }
+
+                futures.add(pool.submit(() -> {
+
+                    if (journal == null)
+                    {
+                        cb.cb(stationId, period, file(stationId));
+                    }
+                    else
+                    {
+                        journal.process(period, stationId, file(stationId), cb);
+                    }
+                }));
+            }
+
+            // ---------------------------------------------------------------------------------------------------------
+            // *** Blocking ***  call waiting for all futures to complete.
+            // ---------------------------------------------------------------------------------------------------------
+
+            try
+            {
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (ExecutionException | InterruptedException ex)
+            {
+                throw new RuntimeException("OUCH!", ex);
+            }
+        }
+
+        // All the stations (i.e., not filtered) and all done (i.e., none quarantined).
+        if (filter.coversPeriod(period) && (journal == null || journal.isComplete(period, units)))
+        {
+            try
+            {
+                if (completed != null)
+                {
+                    completed.cb(period);
+                }
+
+                if (journal != null)
+                {
+                    journal.done(period);
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("IO error while completing " + period, ex);
+            }
+        }
+    }
+
+    /**
+     * The hours are averaged by the download script : a repeated hour is skipped.
+     */
+    @Override
+    public Observations open(Path path, MeteoMetrics metrics) throws IOException
+    {
+        final String name = path.getFileName().toString();
+        final String stationId = String.valueOf(parseStationId(name.substring(0, name.length() - ".zip".length())));
+
+        final ZipInputStream zip = new ZipInputStream(metrics.countRead(Files.newInputStream(path)));
+        final ZipEntry entry = zip.getNextEntry();
+
+        if (entry == null)
+        {
+            zip.close();
+            throw new IOException("empty " + path);
+        }
+
+        final CsvReader<CsvRecord> reader = CsvReader.builder()
+                .fieldSeparator(",")
+                .ofCsvRecord(metrics.countInflated(zip));
+
+        return new Observations()
+        {
+            @Override
+            public void forEach(Consumer<Row> cb)
+            {
+                final NorwayRow row = new NorwayRow(stationId);
+                final Iterator<CsvRecord> records = reader.iterator();
+
+                // date,temperature,quality code
+                if (records.hasNext())
+                {
+                    records.next();
+                }
+
+                String previous = null;
+
+                while (records.hasNext())
+                {
+                    final CsvRecord record = records.next();
+                    final String timestamp = parseTimestamp(record.getField(0));
+
+                    if (timestamp.equals(previous))
+                    {
+                        continue;
+                    }
+
+                    previous = timestamp;
+
+                    row.fields[1] = timestamp;
+                    row.fields[2] = parseTemperature(record.getField(1));
+                    row.fields[3] = row.fields[2].isEmpty() ? "" : parseQuality(record.getField(2));
+
+                    cb.accept(row);
+                }
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                reader.close();
+            }
+        };
+    }
+
+    private boolean isAcceptedPeriod(String filter)
+    {
+        if (filter.startsWith(">"))
+        {
+            return toYear >= Integer.parseInt(filter.substring(1));
+        }
+
+        return period.contains(filter);
+    }
+
+    /**
+     * e.g., SN18700 or SN18700:0 (sensor)
+     */
+    static int parseStationId(String id)
+    {
+        if (!id.startsWith("SN"))
+        {
+            throw new RuntimeException("unexpected station " + id);
+        }
+
+        final int sensor = id.indexOf(':');
+
+        return MeteoUtils.parseInteger(sensor == -1 ? id.substring(2) : id.substring(2, sensor));
+    }
+
+    /**
+     * e.g., 1970-01-01 13:00:00+00:00 -> 1970010113
+     */
+    static String parseTimestamp(String date)
+    {
+        if (date.length() < 13)
+        {
+            throw new RuntimeException("unexpected date " + date);
+        }
+
+        return date.substring(0, 4) + date.substring(5, 7) + date.substring(8, 10) + date.substring(11, 13);
+    }
+
+    /**
+     * Averaged by the download script : rounded to the tenths as the H files.
+     */
+    static String parseTemperature(String temperature)
+    {
+        final Double value = MeteoUtils.parseObservationValue(temperature);
+        return value == null ? "" : MeteoUtils.formatTenths(MeteoUtils.toTenths(value));
+    }
+
+    /**
+     * Frost quality code as H quality : 0 (OK) as validated, -1 (none) as filtered and doubtful otherwise.
+     */
+    static String parseQuality(String quality)
+    {
+        final Integer code = MeteoUtils.parseObservationQuality(quality);
+
+        if (code == null || code == -1)
+        {
+            return "9";
+        }
+
+        return code == 0 ? "1" : "2";
+    }
+
+    private static class NorwayRow implements Row
+    {
+        final String[] fields = new String[HEADER.size()];
+
+        NorwayRow(String stationId)
+        {
+            fields[0] = stationId;
+        }
+
+        @Override
+        public List<String> getHeader()
+        {
+            return HEADER;
+        }
+
+        @Override
+        public String getField(int index)
+        {
+            return fields[index];
+        }
+    }
+}
@@ -0,0 +1,849 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A (prefix-period.csv.gz) icCube input file per period shared by all the department threads (see codec()).
+ * <p>
+ * Sorted mode (see sorted()) : the rows of each unit (e.g., a department file) are sorted by their keys (spilled as
+ * sorted runs to temporary files merged at the end of the unit) into their own compressed member; the file is then the
+ * concatenation of the header and the members in unit order. I.e., sorted as long as the units do not overlap (e.g.,
+ * the station IDs of different departments) and byte identical whatever the order the units are processed.
+ * <p>
+ * Partitioned mode (see partitioned()) : each unit is committed on its own as a (prefix-period.unit.part) member
+ * renamed once complete; the members are kept on the disk after the file is written until deleteUnits() (i.e.,
+ * the file of a resumed pass is written again from the members of the previous passes).
+ * <p>
+ * Appended mode (see appended()) : the rows are appended to the existing file as new members (e.g., tail update).
+ * <p>
+ * Zones (see zones()) : the range of the stations and times of each member saved next to the file (see MeteoZoneMap).
+ */
+public class MeteoPeriodWriter
+{
+    // Sorted mode : the rows of a unit in memory before being spilled as a sorted run.
+    private static final int RUN_ROWS = 500_000;
+
+    private final Path folder;
+
+    private final String prefix;
+
+    private String[] header;
+
+    private final Object writersLOCK = new Object();
+
+    // period -> writer
+    private final Map<String, CsvWriter> writers = new HashMap<>();
+
+    @Nullable
+    private MeteoMetrics metrics;
+
+    private MeteoCodec codec = MeteoCodec.GZIP;
+
+    @Nullable
+    private SortKey order;
+
+    @Nullable
+    private MeteoMemoryBudget spillBudget;
+
+    private boolean partitioned;
+
+    private boolean appended;
+
+    private boolean zones;
+
+    // Zones : period -> stats of the rows written directly (guarded by writersLOCK)
+    private final Map<String, MeteoZoneMap.Stats> directStats = new HashMap<>();
+
+    // Zones : period -> size of the file before the rows written directly (guarded by writersLOCK)
+    private final Map<String, Long> directStarts = new HashMap<>();
+
+    // Zones : period -> unit -> stats of the member (guarded by writersLOCK)
+    private final Map<String, Map<Integer, MeteoZoneMap.Stats>> memberStats = new HashMap<>();
+
+    // Sorted/partitioned mode : period/unit -> opened run
+    private final Map<String, UnitRun> runs = new ConcurrentHashMap<>();
+
+    // Sorted/partitioned mode : period -> unit -> member (guarded by writersLOCK)
+    private final Map<String, SortedMap<Integer, Path>> members = new HashMap<>();
+
+    public MeteoPeriodWriter(Path folder, String prefix, String... header)
+    {
+        this.folder = folder;
+        this.prefix = prefix;
+        this.header = header;
+    }
+
+    /**
+     * Lock wait and compression time of the writers created from now.
+     */
+    public void metrics(@Nullable MeteoMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * The compression of the files created from now (default : gzip).
+     */
+    public void codec(MeteoCodec codec)
+    {
+        this.codec = codec;
+    }
+
+    /**
+     * The header of the files created from now (e.g., keyed facts).
+     */
+    public void header(String... header)
+    {
+        this.header = header;
+    }
+
+    /**
+     * The rows of each unit sorted according to their keys (null : as written).
+     */
+    public void sorted(@Nullable SortKey order)
+    {
+        this.order = order;
+    }
+
+    /**
+     * Sorted mode : the runs spilled to the temporary files of the budget (null : the temporary folder).
+     */
+    public void spills(@Nullable MeteoMemoryBudget budget)
+    {
+        this.spillBudget = budget;
+    }
+
+    /**
+     * Each unit committed on its own (see closeUnit()) and kept until deleteUnits() : e.g., resumed pass.
+     */
+    public void partitioned(boolean partitioned)
+    {
+        this.partitioned = partitioned;
+    }
+
+    /**
+     * The rows appended to the existing files as new members : the header is only written to a new file (e.g., tail
+     * update, see MeteoTailState).
+     */
+    public void appended(boolean appended)
+    {
+        this.appended = appended;
+    }
+
+    /**
+     * A zone map (see MeteoZoneMap) written with each file : a zone per member (i.e., a single one for the rows
+     * written directly).
+     */
+    public void zones(boolean zones)
+    {
+        this.zones = zones;
+    }
+
+    private boolean isUnitMode()
+    {
+        return order != null || partitioned;
+    }
+
+    public Path file(String period)
+    {
+        return codec.file(folder, prefix + "-" + period);
+    }
+
+    public void write(String period, List<String[]> rows)
+    {
+        if (isUnitMode())
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        final long startNS = System.nanoTime();
+
+        synchronized (writersLOCK)
+        {
+            if (metrics != null)
+            {
+                metrics.lockAcquired(startNS);
+            }
+
+            final CsvWriter writer = writers.computeIfAbsent(period, this::createCsvWriter);
+
+            for (String[] row : rows)
+            {
+                writer.writeRecord(row);
+            }
+
+            if (zones)
+            {
+                directStats.computeIfAbsent(period, p -> new MeteoZoneMap.Stats()).add(rows);
+            }
+        }
+    }
+
+    /**
+     * @param unit e.g., the department : the rows of a unit are written by a single thread (or by the threads of its
+     *             splits, see MeteoSource.openSplits()).
+     */
+    public void write(String period, int unit, List<String[]> rows)
+    {
+        if (!isUnitMode())
+        {
+            write(period, rows);
+            return;
+        }
+
+        runs.computeIfAbsent(period + "/" + unit, k -> new UnitRun(period, unit)).add(rows);
+    }
+
+    /**
+     * Sorted/partitioned mode : all the rows of the unit have been written (i.e., the member is committed).
+     */
+    public void closeUnit(String period, int unit) throws IOException
+    {
+        final UnitRun run = runs.remove(period + "/" + unit);
+
+        if (run == null)
+        {
+            return;
+        }
+
+        final Path member = run.writeMember();
+
+        synchronized (writersLOCK)
+        {
+            members.computeIfAbsent(period, p -> new TreeMap<>()).put(unit, member);
+
+            if (zones)
+            {
+                memberStats.computeIfAbsent(period, p -> new HashMap<>()).put(unit, run.stats);
+            }
+        }
+    }
+
+    /**
+     * Sorted/partitioned mode : the rows of the unit written so far are dropped (e.g., failing unit).
+     */
+    public void abortUnit(String period, int unit) throws IOException
+    {
+        final UnitRun run = runs.remove(period + "/" + unit);
+
+        if (run != null)
+        {
+            run.delete();
+        }
+    }
+
+    /**
+     * Partitioned mode : the file of the period is complete.
+     */
+    public void deleteUnits(String period) throws IOException
+    {
+        if (!partitioned)
+        {
+            return;
+        }
+
+        for (Path member : committedUnits(period).values())
+        {
+            Files.delete(member);
+        }
+    }
+
+    public void close(String period) throws IOException
+    {
+        synchronized (writersLOCK)
+        {
+            final CsvWriter writer = writers.remove(period);
+
+            if (writer != null)
+            {
+                writer.close();
+
+                final MeteoZoneMap.Stats stats = directStats.remove(period);
+                final long start = directStarts.remove(period);
+
+                if (stats != null)
+                {
+                    final Path file = file(period);
+                    saveZones(file, start, List.of(stats.zone(start, Files.size(file) - start)));
+                }
+            }
+
+            SortedMap<Integer, Path> periodMembers = members.remove(period);
+
+            if (partitioned)
+            {
+                periodMembers = committedUnits(period);
+            }
+
+            if (periodMembers != null && !periodMembers.isEmpty())
+            {
+                concat(period, periodMembers);
+            }
+        }
+    }
+
+    public void close() throws IOException
+    {
+        synchronized (writersLOCK)
+        {
+            for (String period : new ArrayList<>(writers.keySet()))
+            {
+                close(period);
+            }
+
+            for (String period : new ArrayList<>(members.keySet()))
+            {
+                close(period);
+            }
+        }
+
+        // Not closed (e.g., error while processing the unit).
+        for (UnitRun run : runs.values())
+        {
+            run.delete();
+        }
+
+        runs.clear();
+    }
+
+    private CsvWriter createCsvWriter(String period)
+    {
+        final Path file = file(period);
+
+        try
+        {
+            Files.createDirectories(folder);
+
+            if (isAppending(file))
+            {
+                directStarts.put(period, Files.size(file));
+                return createCsvWriter(Files.newOutputStream(file, StandardOpenOption.APPEND));
+            }
+
+            MeteoZoneMap.delete(file);
+            directStarts.put(period, 0L);
+
+            final CsvWriter writer = createCsvWriter(Files.newOutputStream(file));
+
+            writer.writeRecord(header);
+
+            return writer;
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException("IO error while creating " + file, ex);
+        }
+    }
+
+    private CsvWriter createCsvWriter(OutputStream file) throws IOException
+    {
+        final OutputStream out = codec.output(file);
+
+        return CsvWriter.builder()
+                .fieldSeparator(';')
+                .build(metrics != null ? metrics.timeCompression(out) : out);
+    }
+
+    private boolean isAppending(Path file) throws IOException
+    {
+        return appended && Files.exists(file) && Files.size(file) > 0;
+    }
+
+    /**
+     * The header (as its own member) followed by the members of the units. Appended mode : the members of the units
+     * appended to the existing file.
+     */
+    private void concat(String period, SortedMap<Integer, Path> periodMembers) throws IOException
+    {
+        final Path file = file(period);
+
+        final Map<Integer, MeteoZoneMap.Stats> stats = memberStats.remove(period);
+        final List<MeteoZoneMap.Zone> added = zones ? memberZones(periodMembers, stats) : List.of();
+
+        if (isAppending(file))
+        {
+            final long start = Files.size(file);
+
+            try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND), 1 << 16))
+            {
+                for (Path member : periodMembers.values())
+                {
+                    Files.copy(member, out);
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new IOException("IO error while writing " + file, ex);
+            }
+
+            if (zones)
+            {
+                saveZones(file, start, shift(added, start));
+            }
+
+            deleteMembers(periodMembers);
+            return;
+        }
+
+        MeteoZoneMap.delete(file);
+
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))
+        {
+            try (final CsvWriter headerWriter = createCsvWriter(new UnclosedOutputStream(out)))
+            {
+                headerWriter.writeRecord(header);
+            }
+
+            for (Path member : periodMembers.values())
+            {
+                Files.copy(member, out);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (zones)
+        {
+            // The header member first.
+            final long headerLength = Files.size(file) - added.stream().mapToLong(MeteoZoneMap.Zone::length).sum();
+            saveZones(file, 0, shift(added, headerLength));
+        }
+
+        deleteMembers(periodMembers);
+    }
+
+    /**
+     * The zones of the members (offsets from 0) : the stats of the members committed by a previous pass are computed
+     * from their rows.
+     */
+    private List<MeteoZoneMap.Zone> memberZones(SortedMap<Integer, Path> periodMembers, @Nullable Map<Integer, MeteoZoneMap.Stats> stats) throws IOException
+    {
+        final List<MeteoZoneMap.Zone> memberZones = new ArrayList<>();
+
+        long offset = 0;
+
+        for (Map.Entry<Integer, Path> member : periodMembers.entrySet())
+        {
+            MeteoZoneMap.Stats memberStats = stats != null ? stats.get(member.getKey()) : null;
+
+            if (memberStats == null)
+            {
+                memberStats = MeteoZoneMap.Stats.scan(codec.input(Files.newInputStream(member.getValue())));
+            }
+
+            final long length = Files.size(member.getValue());
+
+            memberZones.add(memberStats.zone(offset, length));
+            offset += length;
+        }
+
+        return memberZones;
+    }
+
+    private static List<MeteoZoneMap.Zone> shift(List<MeteoZoneMap.Zone> zones, long start)
+    {
+        return zones.stream()
+                .map(zone -> new MeteoZoneMap.Zone(start + zone.offset(), zone.length(), zone.rows(), zone.stationMin(), zone.stationMax(), zone.timeMin(), zone.timeMax()))
+                .toList();
+    }
+
+    /**
+     * The zones of the members written from the start (e.g., 0 or appended) following the zones of the previous
+     * members; no zone map if the previous members are not covered.
+     */
+    private static void saveZones(Path file, long start, List<MeteoZoneMap.Zone> added) throws IOException
+    {
+        final List<MeteoZoneMap.Zone> previous = start == 0 ? List.of() : MeteoZoneMap.load(file, start);
+
+        if (previous == null)
+        {
+            MeteoZoneMap.delete(file);
+            return;
+        }
+
+        final List<MeteoZoneMap.Zone> all = new ArrayList<>(previous);
+        all.addAll(added);
+
+        MeteoZoneMap.save(file, all);
+    }
+
+    private void deleteMembers(SortedMap<Integer, Path> periodMembers) throws IOException
+    {
+        if (!partitioned)
+        {
+            for (Path member : periodMembers.values())
+            {
+                Files.delete(member);
+            }
+        }
+    }
+
+    private Path member(String period, int unit)
+    {
+        return folder.resolve(prefix + "-" + period + "." + unit + ".part");
+    }
+
+    /**
+     * @return (period, unit) of a committed member of this writer; null otherwise.
+     */
+    @Nullable
+    private String[] parseMember(Path file)
+    {
+        final String name = file.getFileName().toString();
+
+        if (!name.startsWith(prefix + "-") || !name.endsWith(".part"))
+        {
+            return null;
+        }
+
+        final String periodUnit = name.substring(prefix.length() + 1, name.length() - ".part".length());
+        final int dot = periodUnit.lastIndexOf('.');
+
+        if (dot <= 0 || !periodUnit.substring(dot + 1).chars().allMatch(Character::isDigit))
+        {
+            return null;
+        }
+
+        return new String[]{periodUnit.substring(0, dot), periodUnit.substring(dot + 1)};
+    }
+
+    private SortedMap<Integer, Path> committedUnits(String period) throws IOException
+    {
+        final SortedMap<Integer, Path> units = new TreeMap<>();
+
+        if (!Files.isDirectory(folder))
+        {
+            return units;
+        }
+
+        try (final var files = Files.list(folder))
+        {
+            files.forEach(file -> {
+
+                final String[] member = parseMember(file);
+
+                if (member != null && member[0].equals(period))
+                {
+                    units.put(Integer.parseInt(member[1]), file);
+                }
+            });
+        }
+
+        return units;
+    }
+
+    /**
+     * The rows of a unit : sorted runs spilled to temporary files once too large, merged into the compressed member.
+     * Unsorted : written as they come into the (temporary) member.
+     */
+    private class UnitRun
+    {
+        private final String period;
+
+        private final int unit;
+
+        private final List<String[]> rows = new ArrayList<>();
+
+        private final List<Path> spills = new ArrayList<>();
+
+        private final Path member;
+
+        private final Path tmp;
+
+        // Zones : the rows of the member.
+        final MeteoZoneMap.Stats stats = new MeteoZoneMap.Stats();
+
+        // Unsorted.
+        @Nullable
+        private CsvWriter direct;
+
+        UnitRun(String period, int unit)
+        {
+            this.period = period;
+            this.unit = unit;
+            this.member = member(period, unit);
+            this.tmp = member.resolveSibling(member.getFileName() + ".tmp");
+        }
+
+        synchronized void add(List<String[]> batch)
+        {
+            if (zones)
+            {
+                stats.add(batch);
+            }
+
+            try
+            {
+                if (order == null)
+                {
+                    for (String[] row : batch)
+                    {
+                        direct().writeRecord(row);
+                    }
+
+                    return;
+                }
+
+                rows.addAll(batch);
+
+                if (rows.size() >= RUN_ROWS)
+                {
+                    spill();
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("IO error while writing " + tmp, ex);
+            }
+        }
+
+        Path writeMember() throws IOException
+        {
+            try
+            {
+                Files.createDirectories(folder);
+
+                if (order == null)
+                {
+                    direct().close();
+                    direct = null;
+                }
+                else
+                {
+                    try (final CsvWriter writer = createCsvWriter(Files.newOutputStream(tmp)))
+                    {
+                        if (spills.isEmpty())
+                        {
+                            writeSorted(writer);
+                        }
+                        else
+                        {
+                            spill();
+                            merge(writer);
+                        }
+                    }
+                }
+
+                Files.move(tmp, member, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException ex)
+            {
+                throw new IOException("IO error while writing " + member, ex);
+            }
+            finally
+            {
+                delete();
+            }
+
+            return member;
+        }
+
+        private CsvWriter direct() throws IOException
+        {
+            if (direct == null)
+            {
+                Files.createDirectories(folder);
+                direct = createCsvWriter(Files.newOutputStream(tmp));
+            }
+
+            return direct;
+        }
+
+        private void spill() throws IOException
+        {
+            if (rows.isEmpty())
+            {
+                return;
+            }
+
+            final String spillPrefix = prefix + "-" + period + "." + unit + ".";
+
+            final Path spill = spillBudget != null ? spillBudget.createSpillFile(spillPrefix) : Files.createTempFile(spillPrefix, ".run");
+            spills.add(spill);
+
+            try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(';').build(new BufferedOutputStream(Files.newOutputStream(spill), 1 << 16)))
+            {
+                writeSorted(writer);
+            }
+
+            if (spillBudget != null)
+            {
+                spillBudget.spills.incrementAndGet();
+                spillBudget.spilledBytes.addAndGet(Files.size(spill));
+            }
+
+            rows.clear();
+        }
+
+        /**
+         * The keys computed once per row : the rows then written in the (stable) order of their keys.
+         */
+        private void writeSorted(CsvWriter writer)
+        {
+            final int count = rows.size();
+
+            final long[] keys = new long[count];
+            final int[] indexes = new int[count];
+
+            for (int ii = 0; ii < count; ii++)
+            {
+                keys[ii] = order.of(rows.get(ii));
+                indexes[ii] = ii;
+            }
+
+            IntArrays.mergeSort(indexes, (i1, i2) -> Long.compare(keys[i1], keys[i2]));
+
+            for (int index : indexes)
+            {
+                writer.writeRecord(rows.get(index));
+            }
+        }
+
+        /**
+         * K-way merge of the spilled runs.
+         */
+        private void merge(CsvWriter writer) throws IOException
+        {
+            final List<CsvReader<CsvRecord>> readers = new ArrayList<>();
+
+            try
+            {
+                final PriorityQueue<Head> heads = new PriorityQueue<>((h1, h2) -> Long.compare(h1.key, h2.key));
+
+                for (Path spill : spills)
+                {
+                    final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(Files.newInputStream(spill));
+                    readers.add(reader);
+
+                    final Head head = new Head(reader.iterator(), order);
+
+                    if (head.next())
+                    {
+                        heads.add(head);
+                    }
+                }
+
+                while (!heads.isEmpty())
+                {
+                    final Head head = heads.poll();
+
+                    writer.writeRecord(head.row);
+
+                    if (head.next())
+                    {
+                        heads.add(head);
+                    }
+                }
+            }
+            finally
+            {
+                for (CsvReader<CsvRecord> reader : readers)
+                {
+                    reader.close();
+                }
+            }
+        }
+
+        void delete() throws IOException
+        {
+            if (direct != null)
+            {
+                direct.close();
+                direct = null;
+            }
+
+            Files.deleteIfExists(tmp);
+
+            for (Path spill : spills)
+            {
+                Files.deleteIfExists(spill);
+            }
+
+            spills.clear();
+            rows.clear();
+        }
+    }
+
+    private static class Head
+    {
+        private final Iterator<CsvRecord> it;
+
+        private final SortKey order;
+
+        String[] row;
+
+        long key;
+
+        Head(Iterator<CsvRecord> it, SortKey order)
+        {
+            this.it = it;
+            this.order = order;
+        }
+
+        boolean next()
+        {
+            if (!it.hasNext())
+            {
+                return false;
+            }
+
+            row = it.next().getFields().toArray(new String[0]);
+            key = order.of(row);
+
+            return true;
+        }
+    }
+
+    /**
+     * The sort key of a row (sorted mode) : e.g., the station and the time packed into a long.
+     */
+    @FunctionalInterface
+    public interface SortKey
+    {
+        long of(String[] row);
+    }
+
+    /**
+     * The header member is written to the (still opened) output.
+     */
+    private static class UnclosedOutputStream extends FilterOutputStream
+    {
+        UnclosedOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+    }
+}
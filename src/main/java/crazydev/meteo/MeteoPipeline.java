@@ -0,0 +1,168 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Download, stations and temperatures extraction as a job graph : each (period, department) H file is extracted as
+ * soon as downloaded (see MeteoH.gate()) while the stations are built concurrently with the downloads. I.e., the
+ * total time is the one of the slowest path instead of the sum of the stages.
+ * <p>
+ * A failing download does not stop the extraction of the other files : the run fails once they are extracted.
+ */
+public class MeteoPipeline
+{
+    private final MeteoH in;
+
+    private final MeteoDownloader downloader;
+
+    private final MeteoStations stations;
+
+    private final MeteoTemperatures temps;
+
+    private int downloadThreads = 4;
+
+    /**
+     * @param temps extracting from the same H files; its stations being the ones built by the pipeline.
+     */
+    public MeteoPipeline(MeteoH in, MeteoDownloader downloader, MeteoStations stations, MeteoTemperatures temps)
+    {
+        this.in = in;
+        this.downloader = downloader;
+        this.stations = stations;
+        this.temps = temps;
+    }
+
+    public MeteoPipeline downloadThreads(int downloadThreads)
+    {
+        this.downloadThreads = downloadThreads;
+        return this;
+    }
+
+    public void run(@Nullable String periodFilter, @Nullable Integer departmentFilter) throws IOException
+    {
+        run(MeteoFilter.of(periodFilter, departmentFilter));
+    }
+
+    /**
+     * @param filter the files downloaded and extracted (see MeteoH.forEach()) and the rows extracted.
+     * @throws IOException some files could not be downloaded (once the others are extracted).
+     */
+    public void run(MeteoFilter filter) throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        // period/department
+        final ConcurrentLinkedQueue<String> failed = new ConcurrentLinkedQueue<>();
+
+        try (final ExecutorService downloads = Executors.newFixedThreadPool(downloadThreads);
+             final ExecutorService builds = Executors.newSingleThreadExecutor())
+        {
+            final CompletableFuture<Void> stationsF = CompletableFuture.runAsync(() -> {
+
+                try
+                {
+                    stations.build();
+                }
+                catch (IOException ex)
+                {
+                    throw new RuntimeException("error while building the stations", ex);
+                }
+
+                MeteoLoggers.GENERAL.info("stations built in " + MeteoUtils.formatMillisEx(startMS));
+
+            }, builds);
+
+            // ---------------------------------------------------------------------------------------------------------
+            // Submitted in the order of the extraction (see MeteoH.forEachPD()).
+            // ---------------------------------------------------------------------------------------------------------
+
+            final Map<String, CompletableFuture<Void>> units = new HashMap<>();
+
+            in.forEach(filter, (department, period, path) -> {
+
+                units.put(unit(department, period), CompletableFuture.runAsync(() -> download(department, period, path, failed), downloads));
+                return true;
+
+            });
+
+            final CompletableFuture<Void> downloadsF = CompletableFuture
+                    .allOf(units.values().toArray(new CompletableFuture<?>[0]))
+                    .thenRun(() -> MeteoLoggers.GENERAL.info("%d files downloaded in %s [ failed : %d ]".formatted(units.size() - failed.size(), MeteoUtils.formatMillisEx(startMS), failed.size())));
+
+            in.gate((department, period, path) -> {
+
+                stationsF.join();
+
+                final CompletableFuture<Void> unit = units.get(unit(department, period));
+
+                if (unit != null)
+                {
+                    unit.join();
+                }
+            });
+
+            try
+            {
+                temps.write(MeteoMode.TEMPERATURES, filter);
+            }
+            finally
+            {
+                in.gate(null);
+            }
+
+            stationsF.join();
+            downloadsF.join();
+        }
+
+        if (!failed.isEmpty())
+        {
+            final List<String> sorted = failed.stream().sorted().toList();
+
+            MeteoLoggers.GENERAL.error("pipeline failed in %s [ not downloaded : %s ]".formatted(MeteoUtils.formatMillisEx(startMS), sorted));
+
+            throw new IOException("%d files not downloaded : %s".formatted(sorted.size(), sorted));
+        }
+
+        MeteoLoggers.GENERAL.warn("pipeline completed in " + MeteoUtils.formatMillisEx(startMS));
+    }
+
+    /**
+     * A failing download is a missing file for the extraction (i.e., journaled as absent and retried by the next
+     * journaled pass, see MeteoJournal) : reported as failed by the run. Not a remote file not found (404), e.g.,
+     * no station in the department for the period.
+     */
+    private void download(int department, String period, Path path, ConcurrentLinkedQueue<String> failed)
+    {
+        MeteoLoggers.GENERAL.debug(period + " @ " + department);
+
+        try
+        {
+            final int status = downloader.download(department, period, path);
+
+            if ((status < 200 || status >= 300) && status != 404)
+            {
+                failed.add(unit(department, period));
+            }
+        }
+        catch (RuntimeException ex)
+        {
+            MeteoLoggers.GENERAL.error("%s @ %s not downloaded : %s".formatted(period, department, ex.getMessage()), ex);
+            failed.add(unit(department, period));
+        }
+    }
+
+    private static String unit(int department, String period)
+    {
+        return period + "/" + department;
+    }
+}
@@ -0,0 +1,334 @@
+package crazydev.meteo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An embedded HTTP endpoint (no icCube required) answering aggregate queries over a MeteoColumnStore, e.g.,
+ * <pre>
+ *     GET /query?departments=13,83&from=2019070100&to=2019090100&granularity=month&statistic=avg
+ *
+ *     departments  : comma separated (optional)
+ *     stations     : comma separated (optional)
+ *     qualities    : comma separated (optional)
+ *     from, to     : yyyyMMddHH (optional; to is exclusive)
+ *     granularity  : none, day, month, year (default : none)
+ *     statistic    : avg, min, max, count, stddev (default : avg)
+ * </pre>
+ * The JSON responses are cached (LRU bounded by the size of the responses) : the scan time of a computed response is
+ * sent as the X-Scan-MS header only (i.e., not part of the cached body).
+ * <p>
+ * Listening on the loopback address by default : any other address (e.g., the wildcard one) must be explicit.
+ */
+public class MeteoQueryServer implements AutoCloseable
+{
+    private static final Set<String> PARAMETERS = Set.of(
+            "departments", "stations", "qualities", "from", "to", "granularity", "statistic"
+    );
+
+    private final MeteoColumnStore store;
+
+    private final ResultCache cache;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    /**
+     * Listening on the loopback address only.
+     */
+    public MeteoQueryServer(MeteoColumnStore store, int port, long cacheMaxBytes) throws IOException
+    {
+        this(store, InetAddress.getLoopbackAddress(), port, cacheMaxBytes);
+    }
+
+    /**
+     * @param address e.g., new InetSocketAddress(port).getAddress() to listen on all the interfaces
+     */
+    public MeteoQueryServer(MeteoColumnStore store, InetAddress address, int port, long cacheMaxBytes) throws IOException
+    {
+        this.store = store;
+        this.cache = new ResultCache(cacheMaxBytes);
+
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        this.executor = Executors.newFixedThreadPool(4);
+
+        server.setExecutor(executor);
+        server.createContext("/query", this::handle);
+    }
+
+    public MeteoQueryServer start()
+    {
+        server.start();
+
+        MeteoLoggers.GENERAL.info("query server listening on " + server.getAddress());
+
+        return this;
+    }
+
+    public int port()
+    {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!exchange.getRequestMethod().equals("GET"))
+            {
+                reply(exchange, 405, error("GET expected"));
+                return;
+            }
+
+            final SortedMap<String, String> params;
+
+            try
+            {
+                params = parameters(exchange.getRequestURI().getRawQuery());
+            }
+            catch (RuntimeException ex)
+            {
+                reply(exchange, 400, error(ex.getMessage()));
+                return;
+            }
+
+            final String key = params.toString();
+
+            byte[] response = cache.get(key);
+
+            if (response == null)
+            {
+                final long startNS = System.nanoTime();
+
+                try
+                {
+                    response = query(params).getBytes(StandardCharsets.UTF_8);
+                }
+                catch (RuntimeException ex)
+                {
+                    reply(exchange, 400, error("invalid query : " + ex.getMessage()));
+                    return;
+                }
+
+                cache.put(key, response);
+
+                exchange.getResponseHeaders().set("X-Scan-MS", String.valueOf((System.nanoTime() - startNS) / 1_000_000.0));
+            }
+
+            reply(exchange, 200, response);
+        }
+    }
+
+    String query(Map<String, String> params)
+    {
+        final MeteoScan scan = new MeteoScan();
+
+        final String departments = params.get("departments");
+
+        if (departments != null)
+        {
+            scan.departments(parseInts(departments));
+        }
+
+        final String stations = params.get("stations");
+
+        if (stations != null)
+        {
+            scan.stations(parseInts(stations));
+        }
+
+        final String qualities = params.get("qualities");
+
+        if (qualities != null)
+        {
+            scan.qualities(parseInts(qualities));
+        }
+
+        final String from = params.get("from");
+        final String to = params.get("to");
+
+        if (from != null || to != null)
+        {
+            scan.time(
+                    from != null ? MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, from) : new LocalDateTime(1700, 1, 1, 0, 0),
+                    to != null ? MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, to) : new LocalDateTime(2100, 1, 1, 0, 0)
+            );
+        }
+
+        final MeteoScan.Granularity granularity = MeteoScan.Granularity.valueOf(params.getOrDefault("granularity", "none").toUpperCase(Locale.ENGLISH));
+        scan.granularity(granularity);
+
+        final String statistic = params.getOrDefault("statistic", "avg");
+
+        if (!Set.of("avg", "min", "max", "count", "stddev").contains(statistic))
+        {
+            throw new RuntimeException("unknown statistic " + statistic);
+        }
+
+        final Long2ObjectOpenHashMap<MeteoScan.Stats> result = store.scan(scan);
+
+        final long[] keys = result.keySet().toLongArray();
+        Arrays.sort(keys);
+
+        final MeteoJson json = new MeteoJson().beginObject();
+
+        json.field("granularity", granularity.name().toLowerCase(Locale.ENGLISH));
+        json.field("statistic", statistic);
+
+        json.name("rows").beginArray();
+
+        for (long key : keys)
+        {
+            final MeteoScan.Stats stats = result.get(key);
+
+            json.beginObject();
+            json.field("key", formatKey(granularity, key));
+            json.name("value");
+
+            switch (statistic)
+            {
+                case "avg" -> json.value(stats.avg());
+                case "min" -> json.value(stats.min / 10.0);
+                case "max" -> json.value(stats.max / 10.0);
+                case "count" -> json.value(stats.count);
+                case "stddev" -> json.value(stats.stddev());
+            }
+
+            json.field("count", stats.count);
+            json.endObject();
+        }
+
+        json.endArray();
+
+        return json.endObject().toString();
+    }
+
+    private static String formatKey(MeteoScan.Granularity granularity, long key)
+    {
+        return switch (granularity)
+        {
+            case NONE -> "all";
+            case DAY -> LocalDate.ofEpochDay(key).toString();
+            case MONTH -> String.format("%04d-%02d", key / 100, key % 100);
+            case YEAR -> String.valueOf(key);
+        };
+    }
+
+    private static SortedMap<String, String> parameters(@Nullable String query)
+    {
+        final SortedMap<String, String> params = new TreeMap<>();
+
+        if (query == null || query.isEmpty())
+        {
+            return params;
+        }
+
+        for (String param : query.split("&"))
+        {
+            final int eq = param.indexOf('=');
+
+            final String name = URLDecoder.decode(eq >= 0 ? param.substring(0, eq) : param, StandardCharsets.UTF_8);
+            final String value = URLDecoder.decode(eq >= 0 ? param.substring(eq + 1) : "", StandardCharsets.UTF_8);
+
+            if (!PARAMETERS.contains(name))
+            {
+                throw new RuntimeException("unknown parameter " + name);
+            }
+
+            params.put(name, value);
+        }
+
+        return params;
+    }
+
+    private static int[] parseInts(String values)
+    {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(MeteoUtils::parseInteger).toArray();
+    }
+
+    private static byte[] error(@Nullable String message)
+    {
+        return new MeteoJson().beginObject().field("error", message).endObject().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void reply(HttpExchange exchange, int status, byte[] response) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, response.length);
+
+        try (final OutputStream out = exchange.getResponseBody())
+        {
+            out.write(response);
+        }
+    }
+
+    /**
+     * LRU : evicts the least recently used responses once the total size exceeds the max. size.
+     */
+    static class ResultCache
+    {
+        private final long maxBytes;
+
+        private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long bytes;
+
+        ResultCache(long maxBytes)
+        {
+            this.maxBytes = maxBytes;
+        }
+
+        @Nullable
+        synchronized byte[] get(String key)
+        {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, byte[] response)
+        {
+            if (response.length > maxBytes)
+            {
+                return;
+            }
+
+            final byte[] previous = entries.put(key, response);
+
+            if (previous != null)
+            {
+                bytes -= previous.length;
+            }
+
+            bytes += response.length;
+
+            final Iterator<byte[]> it = entries.values().iterator();
+
+            while (bytes > maxBytes && it.hasNext())
+            {
+                bytes -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+}
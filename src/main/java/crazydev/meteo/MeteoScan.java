@@ -0,0 +1,159 @@
+package crazydev.meteo;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+
+import java.time.LocalDate;
+
+/**
+ * A scan of the MeteoColumnStore : filters and grouping of the observations.
+ */
+public class MeteoScan
+{
+    public enum Granularity
+    {
+        NONE,
+        DAY,
+        MONTH,
+        YEAR
+    }
+
+    @Nullable
+    IntOpenHashSet departments;
+
+    @Nullable
+    IntOpenHashSet stations;
+
+    // Epoch hour : inclusive
+    int fromHour = Integer.MIN_VALUE;
+
+    // Epoch hour : exclusive
+    int toHour = Integer.MAX_VALUE;
+
+    // 1 << quality (i.e., 0, 1, 2 and 9)
+    int qualities = ~0;
+
+    Granularity granularity = Granularity.NONE;
+
+    public MeteoScan departments(int... departments)
+    {
+        this.departments = new IntOpenHashSet(departments);
+        return this;
+    }
+
+    public MeteoScan stations(int... stations)
+    {
+        this.stations = new IntOpenHashSet(stations);
+        return this;
+    }
+
+    /**
+     * @param from inclusive
+     * @param to   exclusive
+     */
+    public MeteoScan time(LocalDateTime from, LocalDateTime to)
+    {
+        this.fromHour = MeteoUtils.epochHour(from);
+        this.toHour = MeteoUtils.epochHour(to);
+        return this;
+    }
+
+    public MeteoScan qualities(int... qualities)
+    {
+        this.qualities = 0;
+
+        for (int quality : qualities)
+        {
+            this.qualities |= 1 << quality;
+        }
+
+        return this;
+    }
+
+    public MeteoScan granularity(Granularity granularity)
+    {
+        this.granularity = granularity;
+        return this;
+    }
+
+    boolean isAcceptedStation(int stationId, int department)
+    {
+        return (departments == null || departments.contains(department))
+               && (stations == null || stations.contains(stationId));
+    }
+
+    boolean isAcceptedQuality(int quality)
+    {
+        return (qualities & (1 << quality)) != 0;
+    }
+
+    /**
+     * The grouping key of a day : epoch day, yyyyMM or yyyy.
+     */
+    long key(long epochDay)
+    {
+        return switch (granularity)
+        {
+            case NONE -> 0;
+            case DAY -> epochDay;
+            case MONTH ->
+            {
+                final LocalDate date = LocalDate.ofEpochDay(epochDay);
+                yield date.getYear() * 100L + date.getMonthValue();
+            }
+            case YEAR -> LocalDate.ofEpochDay(epochDay).getYear();
+        };
+    }
+
+    /**
+     * Statistics of a group : temperatures in 1/10 °C.
+     */
+    public static class Stats
+    {
+        public long count;
+
+        public long sum;
+
+        public long sumSq;
+
+        public int min = Integer.MAX_VALUE;
+
+        public int max = Integer.MIN_VALUE;
+
+        void add(int tenths)
+        {
+            count++;
+            sum += tenths;
+            sumSq += (long) tenths * tenths;
+            min = Math.min(min, tenths);
+            max = Math.max(max, tenths);
+        }
+
+        void merge(Stats other)
+        {
+            count += other.count;
+            sum += other.sum;
+            sumSq += other.sumSq;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * °C
+         */
+        public double avg()
+        {
+            return sum / (10.0 * count);
+        }
+
+        /**
+         * °C
+         */
+        public double stddev()
+        {
+            final double mean = (double) sum / count;
+            return Math.sqrt(Math.max(0, (double) sumSq / count - mean * mean)) / 10.0;
+        }
+    }
+}
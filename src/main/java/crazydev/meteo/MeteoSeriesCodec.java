@@ -0,0 +1,257 @@
+package crazydev.meteo;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The encoding of a block of observations of a station (see MeteoSeriesFile) :
+ * <pre>
+ *     count        : varint
+ *     hours        : first hour (zigzag varint), then run-length encoded delta-of-deltas (zigzag varint, run varint)
+ *     temps        : first temp (zigzag varint), then deltas (zigzag varint)
+ *     qualities    : run-length encoded (byte, run varint)
+ * </pre>
+ * The whole block is then deflated (raw) and prefixed with its uncompressed length (4 bytes).
+ */
+public abstract class MeteoSeriesCodec
+{
+    private MeteoSeriesCodec()
+    {
+    }
+
+    public static byte[] encode(int[] hours, short[] temps, byte[] qualities, int count)
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2 + 16);
+
+        MeteoVarints.write(out, count);
+
+        if (count > 0)
+        {
+            // Hours : hourly observations mostly give a delta of 1 and a delta-of-delta of 0.
+
+            MeteoVarints.writeZigzag(out, hours[0]);
+
+            int prevDelta = 1;
+            int runValue = 0;
+            int runLength = 0;
+
+            for (int ii = 1; ii < count; ii++)
+            {
+                final int delta = hours[ii] - hours[ii - 1];
+                final int dod = delta - prevDelta;
+
+                prevDelta = delta;
+
+                if (runLength > 0 && dod == runValue)
+                {
+                    runLength++;
+                }
+                else
+                {
+                    if (runLength > 0)
+                    {
+                        MeteoVarints.writeZigzag(out, runValue);
+                        MeteoVarints.write(out, runLength);
+                    }
+
+                    runValue = dod;
+                    runLength = 1;
+                }
+            }
+
+            if (runLength > 0)
+            {
+                MeteoVarints.writeZigzag(out, runValue);
+                MeteoVarints.write(out, runLength);
+            }
+
+            // Temps.
+
+            MeteoVarints.writeZigzag(out, temps[0]);
+
+            for (int ii = 1; ii < count; ii++)
+            {
+                MeteoVarints.writeZigzag(out, temps[ii] - temps[ii - 1]);
+            }
+
+            // Qualities.
+
+            byte runQuality = qualities[0];
+            int runQualityLength = 1;
+
+            for (int ii = 1; ii < count; ii++)
+            {
+                if (qualities[ii] == runQuality)
+                {
+                    runQualityLength++;
+                }
+                else
+                {
+                    out.write(runQuality);
+                    MeteoVarints.write(out, runQualityLength);
+
+                    runQuality = qualities[ii];
+                    runQualityLength = 1;
+                }
+            }
+
+            out.write(runQuality);
+            MeteoVarints.write(out, runQualityLength);
+        }
+
+        return deflate(out.toByteArray());
+    }
+
+    public static Block decode(byte[] encoded)
+    {
+        final byte[] bytes = inflate(encoded);
+        final int[] pos = {0};
+
+        final int count = MeteoVarints.read(bytes, pos);
+        final Block block = new Block(count);
+
+        if (count > 0)
+        {
+            block.hours[0] = MeteoVarints.readZigzag(bytes, pos);
+
+            int prevDelta = 1;
+            int ii = 1;
+
+            while (ii < count)
+            {
+                final int dod = MeteoVarints.readZigzag(bytes, pos);
+                final int runLength = MeteoVarints.read(bytes, pos);
+
+                for (int rr = 0; rr < runLength; rr++, ii++)
+                {
+                    prevDelta += dod;
+                    block.hours[ii] = block.hours[ii - 1] + prevDelta;
+                }
+            }
+
+            block.temps[0] = (short) MeteoVarints.readZigzag(bytes, pos);
+
+            for (ii = 1; ii < count; ii++)
+            {
+                block.temps[ii] = (short) (block.temps[ii - 1] + MeteoVarints.readZigzag(bytes, pos));
+            }
+
+            ii = 0;
+
+            while (ii < count)
+            {
+                final byte quality = bytes[pos[0]++];
+                final int runLength = MeteoVarints.read(bytes, pos);
+
+                for (int rr = 0; rr < runLength; rr++, ii++)
+                {
+                    block.qualities[ii] = quality;
+                }
+            }
+        }
+
+        if (pos[0] != bytes.length)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        return block;
+    }
+
+    private static byte[] deflate(byte[] bytes)
+    {
+        final int length = bytes.length;
+
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try
+        {
+            deflater.setInput(bytes, 0, length);
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 16);
+            final byte[] buffer = new byte[8192];
+
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+
+            while (!deflater.finished())
+            {
+                final int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] encoded)
+    {
+        final Inflater inflater = new Inflater(true);
+
+        try
+        {
+            final int uncompressedLength = ((encoded[0] & 0xFF) << 24) | ((encoded[1] & 0xFF) << 16) | ((encoded[2] & 0xFF) << 8) | (encoded[3] & 0xFF);
+
+            inflater.setInput(encoded, 4, encoded.length - 4);
+
+            final byte[] bytes = new byte[uncompressedLength];
+            int offset = 0;
+
+            while (offset < uncompressedLength && !inflater.finished())
+            {
+                final int count = inflater.inflate(bytes, offset, uncompressedLength - offset);
+
+                if (count == 0 && inflater.needsInput())
+                {
+                    throw new RuntimeException("OUCH!");
+                }
+
+                offset += count;
+            }
+
+            if (offset != uncompressedLength)
+            {
+                throw new RuntimeException("OUCH!");
+            }
+
+            return bytes;
+        }
+        catch (DataFormatException ex)
+        {
+            throw new RuntimeException("corrupted block", ex);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    public static class Block
+    {
+        public final int count;
+
+        public final int[] hours;
+
+        // 1/10 °C
+        public final short[] temps;
+
+        public final byte[] qualities;
+
+        Block(int count)
+        {
+            this.count = count;
+            this.hours = new int[count];
+            this.temps = new short[count];
+            this.qualities = new byte[count];
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package crazydev.meteo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The observations of the MeteoColumnStore as a file of compressed blocks (see MeteoSeriesCodec), one block per
+ * station and year, followed by an index of the blocks :
+ * <pre>
+ *     MAGIC (int) VERSION (int)
+ *     blocks
+ *     index        : count (int) then (station ID (int), year (int), offset (long), length (int), rows (int)) * count
+ *     footer       : index offset (long) MAGIC (int)
+ * </pre>
+ * The index is sorted by station and year : a (station, years) range is decoded without reading the other blocks.
+ */
+public class MeteoSeriesFile
+{
+    private static final int MAGIC = 0x4D534552 /* MSER */;
+
+    private static final int VERSION = 1;
+
+    private static final int INDEX_ENTRY_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    private static final int FOOTER_SIZE = 8 + 4;
+
+    private MeteoSeriesFile()
+    {
+    }
+
+    public static void write(MeteoColumnStore store, Path file) throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        final Index entries = new Index();
+
+        long offset = 0;
+
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            offset += 8;
+
+            for (int station = 0; station < store.stationCount(); station++)
+            {
+                final long end = store.stationOffset(station) + store.stationRowCount(station);
+
+                long row = store.stationOffset(station);
+
+                while (row < end)
+                {
+                    final int year = LocalDate.ofEpochDay(Math.floorDiv(store.hour(row), 24)).getYear();
+                    final int nextYearHour = (int) (LocalDate.of(year + 1, 1, 1).toEpochDay() * 24);
+
+                    final long from = row;
+
+                    while (row < end && store.hour(row) < nextYearHour)
+                    {
+                        row++;
+                    }
+
+                    final int count = (int) (row - from);
+
+                    final int[] hours = new int[count];
+                    final short[] temps = new short[count];
+                    final byte[] qualities = new byte[count];
+
+                    for (int ii = 0; ii < count; ii++)
+                    {
+                        hours[ii] = store.hour(from + ii);
+                        temps[ii] = store.temp(from + ii);
+                        qualities[ii] = store.quality(from + ii);
+                    }
+
+                    final byte[] block = MeteoSeriesCodec.encode(hours, temps, qualities, count);
+
+                    out.write(block);
+
+                    entries.add(store.stationId(station), year, offset, block.length, count);
+
+                    offset += block.length;
+                }
+            }
+
+            out.writeInt(entries.size);
+
+            for (int ii = 0; ii < entries.size; ii++)
+            {
+                out.writeInt(entries.stationIds[ii]);
+                out.writeInt(entries.years[ii]);
+                out.writeLong(entries.offsets[ii]);
+                out.writeInt(entries.lengths[ii]);
+                out.writeInt(entries.rows[ii]);
+            }
+
+            out.writeLong(offset);
+            out.writeInt(MAGIC);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        MeteoLoggers.GENERAL.warn("%s in %s [ blocks : %s ] [ rows : %s ] [ size : %s ] [ bytes per row : %.2f ]".formatted(
+                file,
+                MeteoUtils.formatMillisEx(startMS),
+                MeteoUtils.formatNice(entries.size),
+                MeteoUtils.formatNice(store.rowCount()),
+                MeteoUtils.formatSize(Files.size(file)),
+                (double) Files.size(file) / Math.max(1, store.rowCount())
+        ));
+    }
+
+    public static Reader open(Path file) throws IOException
+    {
+        return new Reader(file);
+    }
+
+    @FunctionalInterface
+    public interface RowAction
+    {
+        /**
+         * @param temp 1/10 °C
+         */
+        void cb(int stationId, int hour, short temp, byte quality);
+    }
+
+    /**
+     * Thread safe (positional reads).
+     */
+    public static class Reader implements AutoCloseable
+    {
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private final Index index;
+
+        Reader(Path file) throws IOException
+        {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+            try
+            {
+                final ByteBuffer footer = read(channel.size() - FOOTER_SIZE, FOOTER_SIZE);
+
+                final long indexOffset = footer.getLong();
+
+                if (footer.getInt() != MAGIC)
+                {
+                    throw new IOException(file + " is not a series file");
+                }
+
+                final ByteBuffer header = read(0, 8);
+
+                if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                {
+                    throw new IOException(file + " : unsupported version");
+                }
+
+                final int count = read(indexOffset, 4).getInt();
+                final ByteBuffer entries = read(indexOffset + 4, count * INDEX_ENTRY_SIZE);
+
+                this.index = new Index();
+
+                for (int ii = 0; ii < count; ii++)
+                {
+                    index.add(entries.getInt(), entries.getInt(), entries.getLong(), entries.getInt(), entries.getInt());
+                }
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        public int blockCount()
+        {
+            return index.size;
+        }
+
+        /**
+         * @param fromYear inclusive
+         * @param toYear   inclusive
+         *
+         * @return the number of rows read.
+         */
+        public long read(int stationId, int fromYear, int toYear, RowAction cb) throws IOException
+        {
+            long rows = 0;
+
+            for (int ii = index.lowerBound(stationId, fromYear); ii < index.size; ii++)
+            {
+                if (index.stationIds[ii] != stationId || index.years[ii] > toYear)
+                {
+                    break;
+                }
+
+                final ByteBuffer encoded = read(index.offsets[ii], index.lengths[ii]);
+                final MeteoSeriesCodec.Block block = MeteoSeriesCodec.decode(encoded.array());
+
+                if (block.count != index.rows[ii])
+                {
+                    throw new IOException(file + " : corrupted block " + stationId + " @ " + index.years[ii]);
+                }
+
+                for (int rr = 0; rr < block.count; rr++)
+                {
+                    cb.cb(stationId, block.hours[rr], block.temps[rr], block.qualities[rr]);
+                }
+
+                rows += block.count;
+            }
+
+            return rows;
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException
+        {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                {
+                    throw new IOException(file + " : unexpected end of file");
+                }
+            }
+
+            return buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sorted by station and year (as written).
+     */
+    private static class Index
+    {
+        int size;
+
+        int[] stationIds = new int[1024];
+
+        int[] years = new int[1024];
+
+        long[] offsets = new long[1024];
+
+        int[] lengths = new int[1024];
+
+        int[] rows = new int[1024];
+
+        void add(int stationId, int year, long offset, int length, int rowCount)
+        {
+            if (size == stationIds.length)
+            {
+                stationIds = Arrays.copyOf(stationIds, size * 2);
+                years = Arrays.copyOf(years, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+
+            stationIds[size] = stationId;
+            years[size] = year;
+            offsets[size] = offset;
+            lengths[size] = length;
+            rows[size] = rowCount;
+
+            size++;
+        }
+
+        /**
+         * The first entry at or after (station, year).
+         */
+        int lowerBound(int stationId, int year)
+        {
+            int lo = 0;
+            int hi = size;
+
+            while (lo < hi)
+            {
+                final int mid = (lo + hi) >>> 1;
+
+                final int cmp = stationIds[mid] != stationId
+                                ? Integer.compare(stationIds[mid], stationId)
+                                : Integer.compare(years[mid], year);
+
+                if (cmp < 0)
+                {
+                    lo = mid + 1;
+                }
+                else
+                {
+                    hi = mid;
+                }
+            }
+
+            return lo;
+        }
+    }
+}
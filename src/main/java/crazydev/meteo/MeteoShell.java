@@ -20,12 +20,42 @@ public class MeteoShell
      * </pre>
      *
      * Adjust to your own file system and update accordingly the definitions of the file data sources
-     * in the Meteo.icc-schema file.
+     * in the Meteo.icc-schema file (Meteo-keyed.icc-schema for the keyed observations, with hours.csv.gz).
      */
     static final Path DATA_FOLDER = Path.of("/home/mpo/icCube/meteo/ic3/data");
 
     static final Path DATA_TEMPERATURES_FOLDER = DATA_FOLDER.resolve("temperatures");
 
+    /**
+     * The daily temperatures (as pre-aggregated from the observations) : daily-1780-1789.csv.gz, ...
+     */
+    static final Path DATA_DAILY_FOLDER = DATA_FOLDER.resolve("temperatures-daily");
+
+    /**
+     * The number of days reaching the temperature thresholds per station and month : thresholds-1780-1789.csv.gz, ...
+     */
+    static final Path DATA_THRESHOLDS_FOLDER = DATA_FOLDER.resolve("temperatures-thresholds");
+
+    /**
+     * The quantile sketches of the temperatures per station and month : sketches-1780-1789.csv.gz, ...
+     */
+    static final Path DATA_SKETCHES_FOLDER = DATA_FOLDER.resolve("temperatures-sketches");
+
+    /**
+     * The episodes (heat waves, cold spells) per station : episodes-1780-1789.csv.gz, ...
+     */
+    static final Path DATA_EPISODES_FOLDER = DATA_FOLDER.resolve("temperatures-episodes");
+
+    /**
+     * The Norway temperatures (as extracted from the Norway files) : observations-1900-2026.csv.gz.
+     */
+    static final Path DATA_NORWAY_FOLDER = DATA_FOLDER.resolve("temperatures-norway");
+
+    /**
+     * The observations as compressed blocks per station and year (see MeteoSeriesFile).
+     */
+    static final Path FILE_SERIES = DATA_FOLDER.resolve("temperatures.series");
+
     /**
      * The folder containing the Météo-France data files.
      * <pre>
@@ -54,15 +84,23 @@ public class MeteoShell
      */
     static final MeteoH H_FILES = new MeteoH("/home/mpo/icCube/meteo/meteo-france/H");
 
+    /**
+     * As downloaded by the norway scripts (sources.csv, SN*.zip).
+     */
+    static final Path FILE_NORWAY = Path.of("/home/mpo/icCube/meteo/norway");
+
     static void main() throws Exception
     {
         MeteoLog4jUtils.configure(Level.DEBUG);
 
+        // 2020-2026 : downloads (latest and previous), stations and temperatures pipelined.
+        pipeline(">2020");
+
         // 2025-2026
-        downloadLatest();
+        // downloadLatest();
 
         // 2020-2024
-        downloadPrevious();
+        // downloadPrevious();
 
         // Before 2020
         // downloadHistoric();
@@ -70,7 +108,23 @@ public class MeteoShell
         // generateIcCubeData(MeteoMode.STATIONS);
         // generateIcCubeData(MeteoMode.MISSING_STATIONS);
 
-        generateIcCubeData(MeteoMode.TEMPERATURES, ">2020");
+        // generateIcCubeData(MeteoMode.TEMPERATURES, ">2020");
+
+        // Temperatures and their daily rollup (Tn/Tx) in a single pass : required by the normals.
+        // generateIcCubeData(MeteoMode.DAILY_TEMPERATURES, null);
+
+        // generateIcCubeData(MeteoMode.NORMALS, null);
+
+        // generateNorwayData();
+
+        // serveQueries(8080);
+
+        // The observations (as generated above) as a series file and a station read back from it.
+        // writeSeries();
+        // readSeries(13054001, 2019, 2020);
+
+        // Synthetic H files (and stations) : e.g., for the benchmarks without the Météo-France data.
+        // new MeteoSynthetic(Path.of("/tmp/meteo-synthetic/H"), new int[]{13, 83}, 50, 1990, 2026).write();
     }
 
     private static void downloadLatest()
@@ -91,6 +145,101 @@ public class MeteoShell
         downloader.downloadHistoricH(null);
     }
 
+    /**
+     * Each H file extracted as soon as downloaded : e.g., new MeteoDownloader(H_FILES, "http://localhost:8000/")
+     * for a local mirror.
+     */
+    private static void pipeline(@Nullable String periodFilter) throws IOException
+    {
+        if (periodFilter == null)
+        {
+            MeteoUtils.assertOutputConsistency(DATA_TEMPERATURES_FOLDER);
+        }
+
+        final MeteoStations stations = new MeteoStations(
+                FILE_STATIONS,
+                DATA_FOLDER
+        );
+
+        // H_FILES.scanner(true);
+        // H_FILES.splits(64L * 1024 * 1024);
+
+        final MeteoTemperatures temps = new MeteoTemperatures(H_FILES, DATA_TEMPERATURES_FOLDER, stations);
+
+        new MeteoPipeline(H_FILES, new MeteoDownloader(H_FILES), stations, temps).run(periodFilter, null);
+    }
+
+    /**
+     * Same extraction as the H files : without any stations registry (i.e., the opening periods are not checked).
+     */
+    private static void generateNorwayData() throws IOException
+    {
+        final MeteoStations none = new MeteoStations(FILE_STATIONS, DATA_NORWAY_FOLDER);
+        final MeteoTemperatures temps = new MeteoTemperatures(new MeteoNorway(FILE_NORWAY, 1900, 2026), DATA_NORWAY_FOLDER, none);
+
+        temps.write(MeteoMode.TEMPERATURES, null, null);
+    }
+
+    /**
+     * Quick checks without icCube : e.g., http://localhost:8080/query?departments=13&granularity=year&statistic=max
+     */
+    private static void serveQueries(int port) throws IOException, InterruptedException
+    {
+        // Some departments only (see MeteoTemperatures.zones()) :
+        // MeteoColumnStore.loadObservations(DATA_TEMPERATURES_FOLDER, MeteoFilter.parse("departments=13,83")::isAcceptedZone)
+
+        // Keyed observations (see MeteoTemperatures.keys()) : the station IDs of the keys.
+        // final MeteoStations stations = new MeteoStations(FILE_STATIONS, DATA_FOLDER);
+        // stations.build();
+        // stations.loadMissingStations(DATA_FOLDER.resolve("stations-missings.csv.gz"));
+        // MeteoColumnStore.loadObservations(DATA_TEMPERATURES_FOLDER, null, stations.ids())
+
+        try (final MeteoColumnStore store = MeteoColumnStore.loadObservations(DATA_TEMPERATURES_FOLDER);
+             final MeteoQueryServer server = new MeteoQueryServer(store, port, 64 * 1024 * 1024))
+        {
+            server.start();
+            Thread.currentThread().join();
+        }
+    }
+
+    private static void writeSeries() throws IOException
+    {
+        try (final MeteoColumnStore store = MeteoColumnStore.loadObservations(DATA_TEMPERATURES_FOLDER))
+        {
+            MeteoSeriesFile.write(store, FILE_SERIES);
+        }
+    }
+
+    /**
+     * Only the blocks of the station and years are read and decoded.
+     */
+    private static void readSeries(int stationId, int fromYear, int toYear) throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final MeteoTemperatureSketch sketch = new MeteoTemperatureSketch();
+
+        try (final MeteoSeriesFile.Reader reader = MeteoSeriesFile.open(FILE_SERIES))
+        {
+            reader.read(stationId, fromYear, toYear, (id, hour, temp, quality) -> sketch.add(temp));
+        }
+
+        if (sketch.count() == 0)
+        {
+            MeteoLoggers.GENERAL.warn("%d [%d-%d] : no observation".formatted(stationId, fromYear, toYear));
+            return;
+        }
+
+        MeteoLoggers.GENERAL.warn("%d [%d-%d] in %s [ rows : %s ] [ min : %s ] [ median : %s ] [ max : %s ]".formatted(
+                stationId, fromYear, toYear,
+                MeteoUtils.formatMillisEx(startMS),
+                MeteoUtils.formatNice(sketch.count()),
+                MeteoUtils.formatTenths(sketch.quantile(0)),
+                MeteoUtils.formatTenths(sketch.quantile(0.5)),
+                MeteoUtils.formatTenths(sketch.quantile(1))
+        ));
+    }
+
     private static void generateIcCubeData(MeteoMode mode, @Nullable String periodFilter) throws IOException
     {
         // -------------------------------------------------------------------------------------------------------------
@@ -105,6 +254,7 @@ public class MeteoShell
             );
 
             stations.build();
+            // stations.keys(true);
             stations.write();
         }
 
@@ -124,18 +274,24 @@ public class MeteoShell
 
             final MeteoMissingStations missingStations = new MeteoMissingStations(H_FILES, DATA_FOLDER, stations);
 
+            // missingStations.keys(true);
             missingStations.write(null, null);
         }
 
         // -------------------------------------------------------------------------------------------------------------
-        // Extract temperatures information from the observations.
+        // Extract temperatures information from the observations (and their daily rollup).
         // -------------------------------------------------------------------------------------------------------------
 
-        if (mode == MeteoMode.TEMPERATURES)
+        if (mode == MeteoMode.TEMPERATURES || mode == MeteoMode.DAILY_TEMPERATURES)
         {
             if (periodFilter == null)
             {
                 MeteoUtils.assertOutputConsistency(DATA_TEMPERATURES_FOLDER);
+
+                if (mode == MeteoMode.DAILY_TEMPERATURES)
+                {
+                    MeteoUtils.assertOutputConsistency(DATA_DAILY_FOLDER);
+                }
             }
 
             final MeteoStations stations = new MeteoStations(
@@ -147,9 +303,51 @@ public class MeteoShell
 
             final MeteoTemperatures temps = new MeteoTemperatures(H_FILES, DATA_TEMPERATURES_FOLDER, stations);
 
+            if (mode == MeteoMode.DAILY_TEMPERATURES)
+            {
+                temps.addAggregator(new MeteoDailyTemperatures(DATA_DAILY_FOLDER));
+            }
+
+            // temps.addAggregator(new MeteoThresholdDays(DATA_THRESHOLDS_FOLDER));
+            // temps.addAggregator(new MeteoTemperatureSketches(DATA_SKETCHES_FOLDER));
+            // temps.addAggregator(new MeteoEpisodes(DATA_EPISODES_FOLDER));
+
+            // temps.metricsSnapshots(60);
+            // temps.memoryBudget(new MeteoMemoryBudget(512 * 1024 * 1024, Path.of(System.getProperty("java.io.tmpdir"), "meteo-spills")));
+            // temps.addMeasure(MeteoMeasure.RR1).addMeasure(MeteoMeasure.FF).addMeasure(MeteoMeasure.U).addMeasure(MeteoMeasure.PMER);
+            // temps.sorted(true);
+            // temps.codec(MeteoCodec.GZIP_FAST);
+            // temps.journal(new MeteoJournal(DATA_TEMPERATURES_FOLDER.resolve("journal-temperatures.csv")));
+            // temps.tail(true);
+            // temps.zones(true);
+
+            // stations.loadMissingStations(DATA_FOLDER.resolve("stations-missings.csv.gz"));
+            // temps.keys(true);
+
+            // temps.write(mode, MeteoFilter.parse("departments=13,83;years=2019-2020;hours=2019070100-2019090100"));
+
             temps.write(mode, periodFilter, null);
         }
 
+        // -------------------------------------------------------------------------------------------------------------
+        // Climatological normals of the baseline periods (from the daily temperatures).
+        // -------------------------------------------------------------------------------------------------------------
+
+        if (mode == MeteoMode.NORMALS)
+        {
+            new MeteoNormals(DATA_DAILY_FOLDER, DATA_FOLDER, "TEMP_AVG", 1980, 2000, 15).write();
+            new MeteoNormals(DATA_DAILY_FOLDER, DATA_FOLDER, "TEMP_AVG", 1990, 2020, 15).write();
+        }
+
+        // -------------------------------------------------------------------------------------------------------------
+        // The hour dimension of the keyed observations (see MeteoTemperatures.keys()).
+        // -------------------------------------------------------------------------------------------------------------
+
+        if (mode == MeteoMode.HOURS)
+        {
+            new MeteoHours(DATA_FOLDER, MeteoH.fromYear(), MeteoH.toYear()).write();
+        }
+
     }
 
 }
@@ -0,0 +1,101 @@
+package crazydev.meteo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The observations of a country (e.g., MeteoH, MeteoNorway) : enumerated as (period, department) units and read as
+ * rows with the columns of the H files. I.e., extracted by the same engine (see MeteoTemperatures).
+ */
+public interface MeteoSource
+{
+    // The columns of the observations (i.e., the ones of the H files) : station ID and time (yyyyMMddHH).
+    String C_STATION = "NUM_POSTE";
+
+    String C_TIMESTAMP = "AAAAMMJJHH";
+
+    /**
+     * MT : the callback is called in parallel for the units of a period; the periods one after the other.
+     *
+     * @param filter    the units pruned by period and department (the rows are filtered by the callback, see
+     *                  MeteoFilter.isAcceptedRow()).
+     * @param journal   skips the completed periods and units; a failing unit is journaled (i.e., quarantined) instead
+     *                  of aborting the pass.
+     * @param completed called once all the units of a period are done (before the period is journaled) : unless the
+     *                  filter does not cover the period (see MeteoFilter.coversPeriod()) or a unit of the journal is
+     *                  failed or absent (see MeteoJournal.isComplete()).
+     */
+    void forEachPD(MeteoFilter filter, @Nullable MeteoJournal journal, Action cb, @Nullable PeriodAction completed);
+
+    default void forEachPD(MeteoFilter filter, Action cb)
+    {
+        forEachPD(filter, null, cb, null);
+    }
+
+    default void forEachPD(@Nullable String periodFilter, @Nullable Integer departmentFilter, @Nullable MeteoJournal journal, Action cb, @Nullable PeriodAction completed)
+    {
+        forEachPD(MeteoFilter.of(periodFilter, departmentFilter), journal, cb, completed);
+    }
+
+    default void forEachPD(@Nullable String periodFilter, @Nullable Integer departmentFilter, Action cb)
+    {
+        forEachPD(periodFilter, departmentFilter, null, cb, null);
+    }
+
+    /**
+     * @param path as given to the callback of forEachPD()
+     */
+    Observations open(Path path, MeteoMetrics metrics) throws IOException;
+
+    /**
+     * The observations of a file as splits to be read in parallel (e.g., see MeteoH.splits()) : each split in the
+     * order of the file and the splits in order. A single split by default.
+     */
+    default List<Observations> openSplits(Path path, MeteoMetrics metrics) throws IOException
+    {
+        return List.of(open(path, metrics));
+    }
+
+    @FunctionalInterface
+    interface Action
+    {
+        boolean cb(int department, String period, Path path);
+    }
+
+    @FunctionalInterface
+    interface PeriodAction
+    {
+        void cb(String period) throws IOException;
+    }
+
+    interface Observations extends Closeable
+    {
+        /**
+         * In the order of the file (i.e., by station and time); the row is only valid during the call.
+         */
+        void forEach(Consumer<Row> cb);
+    }
+
+    interface Row
+    {
+        List<String> getHeader();
+
+        String getField(int index);
+
+        /**
+         * The field as an unsigned number (e.g., station ID, yyyyMMddHH) : e.g., filtered without any parsing (see
+         * MeteoFilter.isAcceptedRow()).
+         *
+         * @return -1 if empty or not only digits.
+         */
+        default long getDigits(int index)
+        {
+            return MeteoFilter.digits(getField(index));
+        }
+    }
+}
@@ -12,7 +12,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.zip.GZIPOutputStream;
+import java.util.function.IntUnaryOperator;
 
 public class MeteoStations
 {
@@ -93,12 +93,122 @@ public class MeteoStations
     // ID -> station
     private final Map<Integer, MeteoStation> stations = new HashMap<>();
 
+    // ID -> dense key : the sorted IDs of the stations first and then the sorted IDs of the missing stations.
+    private final Map<Integer, Integer> keys = new HashMap<>();
+
+    private MeteoCodec codec = MeteoCodec.GZIP;
+
+    private boolean keyed;
+
     public MeteoStations(Path in, Path ic3data)
     {
         this.in = in;
         this.ic3data = ic3data;
     }
 
+    /**
+     * The compression of the generated stations file (default : gzip).
+     */
+    public MeteoStations codec(MeteoCodec codec)
+    {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * The generated stations file with a STATION_KEY column (see key()).
+     */
+    public MeteoStations keys(boolean keyed)
+    {
+        this.keyed = keyed;
+        return this;
+    }
+
+    /**
+     * @return the dense key of a station (or missing station) : same key whatever the run as long as the stations
+     * and the missing stations are the same (i.e., sorted IDs).
+     */
+    public int key(int id)
+    {
+        final Integer key = keys.get(id);
+
+        if (key == null)
+        {
+            throw new RuntimeException("no key for the station " + id);
+        }
+
+        return key;
+    }
+
+    /**
+     * @return the station (or missing station) ID of a key (see key()) : e.g., for the keyed observations read back
+     * (see MeteoColumnStore).
+     */
+    public IntUnaryOperator ids()
+    {
+        final int[] ids = new int[keys.size()];
+
+        keys.forEach((id, key) -> ids[key] = id);
+
+        return key -> {
+
+            if (key < 0 || key >= ids.length)
+            {
+                throw new RuntimeException("no station for the key " + key);
+            }
+
+            return ids[key];
+        };
+    }
+
+    /**
+     * The keys of the missing stations (see MeteoMissingStations) following the keys of the stations.
+     */
+    public void addMissingStations(Collection<Integer> ids)
+    {
+        if (keys.size() != stations.size())
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        final List<Integer> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+
+        for (int id : sorted)
+        {
+            if (keys.putIfAbsent(id, keys.size()) != null)
+            {
+                throw new RuntimeException("OUCH!");
+            }
+        }
+    }
+
+    /**
+     * The keys of the missing stations of a stations-missings file (see MeteoMissingStations).
+     */
+    public void loadMissingStations(Path file) throws IOException
+    {
+        final MeteoCodec fileCodec = MeteoCodec.ofFile(file);
+
+        if (fileCodec == null)
+        {
+            throw new RuntimeException("unexpected file " + file);
+        }
+
+        final List<Integer> ids = new ArrayList<>();
+
+        try (final var reader = CsvReader.builder().fieldSeparator(";").ofNamedCsvRecord(fileCodec.input(Files.newInputStream(file))))
+        {
+            reader.forEach(record -> ids.add(MeteoUtils.parseInteger(record.getField("STATION_ID"))));
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while reading " + file, ex);
+        }
+
+        addMissingStations(ids);
+    }
+
     public MeteoStation getStation(int id)
     {
         final MeteoStation station = getStationEx(id);
@@ -195,6 +305,14 @@ public class MeteoStations
             // }
         }
 
+        final List<Integer> ids = new ArrayList<>(stations.keySet());
+        ids.sort(null);
+
+        for (int id : ids)
+        {
+            keys.put(id, keys.size());
+        }
+
         int opened = 0;
 
         for (MeteoStation station : stations.values())
@@ -221,43 +339,36 @@ public class MeteoStations
 
     public void write() throws IOException
     {
-        final Path file = ic3data.resolve("stations.csv.gz");
+        final Path file = codec.file(ic3data, "stations");
 
-        try (final var writer = CsvWriter.builder().fieldSeparator(';').build(new GZIPOutputStream(Files.newOutputStream(file))))
+        try (final var writer = CsvWriter.builder().fieldSeparator(';').build(codec.output(Files.newOutputStream(file))))
         {
-            writer.writeRecord(
-                    "STATION_IS_MISSING",
-                    "STATION_ID",
-                    "STATION_NAME",
-                    "STATION_LONG_NAME",
-                    "STATION_NAMED_PLACE",
-                    "STATION_DEPARTMENT_ID",
-                    "STATION_DEPARTMENT_NAME",
-                    "STATION_LAT",
-                    "STATION_LON",
-                    "STATION_ALT",
-                    "STATION_START_DATE",
-                    "STATION_END_DATE",
-                    "STATION_IS_CURRENT"
-            );
+            writer.writeRecord(header(keyed));
 
             for (MeteoStation station : stations.values())
             {
-                writer.writeRecord(
-                        String.valueOf(station.isMissing),
-                        String.valueOf(station.id),
-                        station.name,
-                        station.longName,
-                        station.namedPlace,
-                        String.valueOf(station.dept),
-                        station.deptName,
-                        String.valueOf(station.lat),
-                        String.valueOf(station.lon),
-                        String.valueOf(station.alt),
-                        station.startDate.toString(STATION_DATE_FORMAT),
-                        station.endDate.toString(STATION_DATE_FORMAT),
-                        String.valueOf(station.isCurrent)
-                );
+                final List<String> row = new ArrayList<>(14);
+
+                if (keyed)
+                {
+                    row.add(String.valueOf(key(station.id)));
+                }
+
+                row.add(String.valueOf(station.isMissing));
+                row.add(String.valueOf(station.id));
+                row.add(station.name);
+                row.add(station.longName);
+                row.add(station.namedPlace);
+                row.add(String.valueOf(station.dept));
+                row.add(station.deptName);
+                row.add(String.valueOf(station.lat));
+                row.add(String.valueOf(station.lon));
+                row.add(String.valueOf(station.alt));
+                row.add(station.startDate.toString(STATION_DATE_FORMAT));
+                row.add(station.endDate.toString(STATION_DATE_FORMAT));
+                row.add(String.valueOf(station.isCurrent));
+
+                writer.writeRecord(row);
             }
         }
         catch (IOException ex)
@@ -265,4 +376,33 @@ public class MeteoStations
             throw new IOException("IO error while writing " + file, ex);
         }
     }
+
+    /**
+     * The columns of the stations and missing stations files.
+     */
+    static List<String> header(boolean keyed)
+    {
+        final List<String> header = new ArrayList<>(List.of(
+                "STATION_IS_MISSING",
+                "STATION_ID",
+                "STATION_NAME",
+                "STATION_LONG_NAME",
+                "STATION_NAMED_PLACE",
+                "STATION_DEPARTMENT_ID",
+                "STATION_DEPARTMENT_NAME",
+                "STATION_LAT",
+                "STATION_LON",
+                "STATION_ALT",
+                "STATION_START_DATE",
+                "STATION_END_DATE",
+                "STATION_IS_CURRENT"
+        ));
+
+        if (keyed)
+        {
+            header.addFirst("STATION_KEY");
+        }
+
+        return header;
+    }
 }
@@ -0,0 +1,415 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.writer.CsvWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates a synthetic H folder (same layout and columns as the Météo-France files, see MeteoH) and its stations
+ * file (see MeteoStations) : e.g., to measure the throughput and memory of the extraction without downloading the
+ * actual data.
+ * <p>
+ * Deterministic : each (department, period) file has its own random generator seeded from the seed, the department
+ * and the period; i.e., the output does not depend on the order the files are generated in parallel.
+ */
+public class MeteoSynthetic
+{
+    /**
+     * The columns of the H files.
+     */
+    public static final String[] H_HEADER = ("NUM_POSTE;NOM_USUEL;LAT;LON;ALTI;AAAAMMJJHH;" +
+                                             "RR1;QRR1;DRR1;QDRR1;FF;QFF;DD;QDD;FXY;QFXY;DXY;QDXY;HXY;QHXY;FXI;QFXI;DXI;QDXI;HXI;QHXI;" +
+                                             "FF2;QFF2;DD2;QDD2;FXI2;QFXI2;DXI2;QDXI2;HXI2;QHXI2;FXI3S;QFXI3S;DXI3S;QDXI3S;HFXI3S;QHFXI3S;" +
+                                             "T;QT;TD;QTD;TN;QTN;HTN;QHTN;TX;QTX;HTX;QHTX;DG;QDG;T10;QT10;T20;QT20;T50;QT50;T100;QT100;" +
+                                             "TNSOL;QTNSOL;TN50;QTN50;TCHAUSSEE;QTCHAUSSEE;DHUMEC;QDHUMEC;U;QU;UN;QUN;HUN;QHUN;UX;QUX;HUX;QHUX;" +
+                                             "DHUMI40;QDHUMI40;DHUMI80;QDHUMI80;TSV;QTSV;PMER;QPMER;PSTAT;QPSTAT;PMERMIN;QPERMIN;GEOP;QGEOP;" +
+                                             "N;QN;NBAS;QNBAS;CL;QCL;CM;QCM;CH;QCH;N1;QN1;C1;QC1;B1;QB1;N2;QN2;C2;QC2;B2;QB2;N3;QN3;C3;QC3;B3;QB3;" +
+                                             "N4;QN4;C4;QC4;B4;QB4;VV;QVV;DVV200;QDVV200;WW;QWW;W1;QW1;W2;QW2;SOL;QSOL;SOLNG;QSOLNG;TMER;QTMER;" +
+                                             "VVMER;QVVMER;ETATMER;QETATMER;DIRHOULE;QDIRHOULE;HVAGUE;QHVAGUE;PVAGUE;QPVAGUE;HNEIGEF;QHNEIGEF;" +
+                                             "NEIGETOT;QNEIGETOT;TSNEIGE;QTSNEIGE;TUBENEIGE;QTUBENEIGE;HNEIGEFI3;QHNEIGEFI3;HNEIGEFI1;QHNEIGEFI1;" +
+                                             "ESNEIGE;QESNEIGE;CHARGENEIGE;QCHARGENEIGE;GLO;QGLO;GLO2;QGLO2;DIR;QDIR;DIR2;QDIR2;DIF;QDIF;DIF2;QDIF2;" +
+                                             "UV;QUV;UV2;QUV2;UV_INDICE;QUV_INDICE;INS;QINS;INS2;QINS2;TLAGON;QTLAGON;TVEGETAUX;QTVEGETAUX;" +
+                                             "ECOULEMENT;QECOULEMENT").split(";");
+
+    private static final int F_RR1 = Arrays.asList(H_HEADER).indexOf("RR1");
+
+    private static final int F_FF = Arrays.asList(H_HEADER).indexOf("FF");
+
+    private static final int F_U = Arrays.asList(H_HEADER).indexOf("U");
+
+    private static final int F_PMER = Arrays.asList(H_HEADER).indexOf("PMER");
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String[] HOURS = new String[24];
+
+    // The formatted values (1/10 unit) from -50.0 to 1100.0 : no formatting per row.
+    private static final int TENTHS_MIN = -500;
+
+    private static final String[] TENTHS = new String[11_501];
+
+    private static final String[] QUALITY_CODES = {"0", "1", "2", "9"};
+
+    static
+    {
+        for (int hh = 0; hh < HOURS.length; hh++)
+        {
+            HOURS[hh] = String.format("%02d", hh);
+        }
+
+        for (int ii = 0; ii < TENTHS.length; ii++)
+        {
+            TENTHS[ii] = MeteoUtils.formatTenths(TENTHS_MIN + ii);
+        }
+    }
+
+    private final Path folder;
+
+    private final int[] departments;
+
+    private final int stationsPerDepartment;
+
+    private final int fromYear;
+
+    private final int toYear;
+
+    private long seed = 42;
+
+    private double missingRate = 0.03;
+
+    // Weights of the quality codes 0, 1, 2, 9.
+    private int[] qualityWeights = {10, 70, 10, 10};
+
+    /**
+     * @param folder   the H folder (historic, previous, latest)
+     * @param fromYear inclusive
+     * @param toYear   inclusive
+     */
+    public MeteoSynthetic(Path folder, int[] departments, int stationsPerDepartment, int fromYear, int toYear)
+    {
+        if (stationsPerDepartment < 1 || stationsPerDepartment > 999 || fromYear > toYear || toYear > 2026)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        this.folder = folder;
+        this.departments = departments;
+        this.stationsPerDepartment = stationsPerDepartment;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    public MeteoSynthetic seed(long seed)
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param missingRate [0..1] : the rate of missing values (empty value and quality).
+     */
+    public MeteoSynthetic missingRate(double missingRate)
+    {
+        this.missingRate = missingRate;
+        return this;
+    }
+
+    /**
+     * The weights of the quality codes 0, 1, 2 and 9.
+     */
+    public MeteoSynthetic qualities(int q0, int q1, int q2, int q9)
+    {
+        this.qualityWeights = new int[]{q0, q1, q2, q9};
+        return this;
+    }
+
+    public static int stationId(int department, int station)
+    {
+        return department * 1_000_000 + (station + 1) * 1_000 + 1;
+    }
+
+    /**
+     * The number of rows of the generated H files : all the hours of all the stations.
+     */
+    public long rowCount()
+    {
+        final long hours = (LocalDate.of(toYear + 1, 1, 1).toEpochDay() - LocalDate.of(fromYear, 1, 1).toEpochDay()) * 24;
+        return hours * stationsPerDepartment * departments.length;
+    }
+
+    /**
+     * Generates the H files : one file per department and period (in parallel).
+     */
+    public void write() throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final List<Path> files = new ArrayList<>();
+        final List<Future<?>> futures = new ArrayList<>();
+
+        final AtomicLong bytes = new AtomicLong();
+
+        try (final ExecutorService pool = Executors.newFixedThreadPool(8))
+        {
+            for (int department : departments)
+            {
+                for (int year = fromYear; year <= toYear; )
+                {
+                    final Period period = Period.of(year);
+
+                    final int from = Math.max(fromYear, period.fromYear);
+                    final int to = Math.min(toYear, period.toYear);
+
+                    final Path file = period.file(new MeteoH(folder.toString()), department);
+
+                    files.add(file);
+                    futures.add(pool.submit(() -> {
+
+                        writeH(file, department, period.name, from, to);
+                        bytes.addAndGet(Files.size(file));
+
+                        return null;
+                    }));
+
+                    year = period.toYear + 1;
+                }
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException | InterruptedException ex)
+        {
+            throw new IOException("error while generating " + folder, ex);
+        }
+
+        MeteoLoggers.GENERAL.warn("%s in %s [ files : %s ] [ rows : %s ] [ size : %s ]".formatted(
+                folder,
+                MeteoUtils.formatMillisEx(startMS),
+                MeteoUtils.formatNice(files.size()),
+                MeteoUtils.formatNice(rowCount()),
+                MeteoUtils.formatSize(bytes.get())
+        ));
+    }
+
+    /**
+     * The stations file (as downloaded from Météo-France) of the generated H files.
+     */
+    public void writeStations(Path file) throws IOException
+    {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(',').build(Files.newBufferedWriter(file)))
+        {
+            writer.writeRecord(
+                    "Id_station", "Nom_usuel", "Nom_long", "Lieu_dit", "Type_poste", "Bassin", "Longitude", "Latitude", "Altitude",
+                    "Date_ouverture", "Date_fermeture", "Ouvert", "Public", "Departement", "Quotidien", "Horaire", "Minute"
+            );
+
+            for (int department : departments)
+            {
+                for (int ss = 0; ss < stationsPerDepartment; ss++)
+                {
+                    final Station station = new Station(department, ss);
+
+                    writer.writeRecord(
+                            String.valueOf(station.id), station.name, "", "", "0", "",
+                            String.valueOf(station.lon), String.valueOf(station.lat), String.valueOf(station.alt),
+                            fromYear + "-01-01", "", "true", "true", String.valueOf(department), "false", "true", "false"
+                    );
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+    }
+
+    private void writeH(Path file, int department, String period, int from, int to) throws IOException
+    {
+        final long startMS = System.currentTimeMillis();
+
+        final SplittableRandom random = new SplittableRandom(seed ^ (department * 1_000_003L + period.hashCode()));
+
+        final int weights = Arrays.stream(qualityWeights).sum();
+
+        Files.createDirectories(file.getParent());
+
+        // Fastest compression : the generation is bound by the compression of the mostly empty columns.
+        final GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(file), 1 << 16)
+        {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+
+        try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(';').build(out))
+        {
+            writer.writeRecord(H_HEADER);
+
+            final String[] record = new String[H_HEADER.length];
+
+            for (int ss = 0; ss < stationsPerDepartment; ss++)
+            {
+                final Station station = new Station(department, ss);
+
+                Arrays.fill(record, "");
+
+                record[MeteoH.F_NUM_POSTE] = String.valueOf(station.id);
+                record[MeteoH.F_NOM_USUEL] = station.name;
+                record[MeteoH.F_LAT] = String.valueOf(station.lat);
+                record[MeteoH.F_LON] = String.valueOf(station.lon);
+                record[MeteoH.F_ALTI] = String.valueOf(station.alt);
+
+                // AR(1) noise : consecutive hours are correlated.
+                double noise = 0;
+
+                for (LocalDate day = LocalDate.of(from, 1, 1); day.getYear() <= to; day = day.plusDays(1))
+                {
+                    final String dayS = day.format(DAY_FORMAT);
+
+                    // Coldest mid-January.
+                    final double seasonal = 13.0 - 9.0 * Math.cos(2 * Math.PI * (day.getDayOfYear() - 15) / 365.25) - station.alt * 0.0065;
+
+                    for (int hh = 0; hh < 24; hh++)
+                    {
+                        noise = 0.9 * noise + random.nextGaussian() * 0.6;
+
+                        // Coldest at 05h UTC.
+                        final double daily = -4.0 * Math.cos(2 * Math.PI * (hh - 5) / 24.0);
+
+                        record[MeteoH.F_AAAAMMJJHH] = dayS + HOURS[hh];
+
+                        value(random, weights, record, MeteoH.F_T, seasonal + daily + noise);
+                        value(random, weights, record, F_RR1, random.nextInt(10) == 0 ? random.nextDouble() * 4 : 0.0);
+                        value(random, weights, record, F_FF, random.nextDouble() * 12);
+                        value(random, weights, record, F_U, Math.min(100, 70 - daily * 5 + random.nextGaussian() * 8));
+                        value(random, weights, record, F_PMER, 1015 + random.nextGaussian() * 8);
+
+                        writer.writeRecord(record);
+                    }
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        MeteoLoggers.GENERAL.debug("%s in %s".formatted(file, MeteoUtils.formatMillisEx(startMS)));
+    }
+
+    /**
+     * The value and its quality (the next field).
+     */
+    private void value(SplittableRandom random, int weights, String[] record, int field, double value)
+    {
+        if (random.nextDouble() < missingRate)
+        {
+            record[field] = "";
+            record[field + 1] = "";
+            return;
+        }
+
+        final int tenths = Math.clamp(MeteoUtils.toTenths(value), TENTHS_MIN, TENTHS_MIN + TENTHS.length - 1);
+
+        record[field] = TENTHS[tenths - TENTHS_MIN];
+        record[field + 1] = quality(random, weights);
+    }
+
+    private String quality(SplittableRandom random, int weights)
+    {
+        int pick = random.nextInt(weights);
+
+        for (int ii = 0; ii < qualityWeights.length; ii++)
+        {
+            pick -= qualityWeights[ii];
+
+            if (pick < 0)
+            {
+                return QUALITY_CODES[ii];
+            }
+        }
+
+        throw new RuntimeException("OUCH!");
+    }
+
+    /**
+     * The period (see MeteoH) of a year.
+     */
+    record Period(String name, int fromYear, int toYear)
+    {
+        static Period of(int year)
+        {
+            if (year >= 2025)
+            {
+                return new Period("latest-2025-2026", 2025, 2026);
+            }
+
+            if (year >= 2020)
+            {
+                return new Period("previous-2020-2024", 2020, 2024);
+            }
+
+            final int decade = year - Math.floorMod(year, 10);
+
+            return new Period(decade + "-" + (decade + 9), decade, decade + 9);
+        }
+
+        Path file(MeteoH h, int department)
+        {
+            if (name.startsWith("latest-"))
+            {
+                return h.latest(department);
+            }
+
+            if (name.startsWith("previous-"))
+            {
+                return h.previous(department);
+            }
+
+            return h.historic(department, name);
+        }
+    }
+
+    private static class Station
+    {
+        final int id;
+
+        final String name;
+
+        final double lat;
+
+        final double lon;
+
+        final int alt;
+
+        Station(int department, int station)
+        {
+            // Not random : same station whatever the period.
+            this.id = stationId(department, station);
+            this.name = "SYNTHETIC " + department + "-" + (station + 1);
+            this.lat = 42.5 + (id % 97) / 16.0;
+            this.lon = -4.5 + (id % 89) / 8.0;
+            this.alt = (id % 1_201);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of the tail update of a period (see MeteoTemperatures.tail()) : the last hour scanned per station and the
+ * size of each generated file once committed (tail-period.csv).
+ * <p>
+ * The newer rows are appended to the files as a new member (e.g., gzip) and the state is then replaced at once : the
+ * files are truncated back to their committed size if the previous pass did not complete (e.g., killed while
+ * appending). Delete the state to generate the files of the period from scratch (e.g., revised older rows).
+ */
+public class MeteoTailState
+{
+    private static final String FILE = "FILE";
+
+    private static final String STATION = "STATION";
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final Path file;
+
+    public final String period;
+
+    // station -> last hour (yyyyMMddHH) as committed : read-only while scanning.
+    private final Int2LongOpenHashMap committed = new Int2LongOpenHashMap();
+
+    // station -> last hour (yyyyMMddHH) as scanned by this pass (guarded by itself).
+    private final Int2LongOpenHashMap scanned = new Int2LongOpenHashMap();
+
+    private MeteoTailState(Path file, String period)
+    {
+        this.file = file;
+        this.period = period;
+
+        committed.defaultReturnValue(NONE);
+        scanned.defaultReturnValue(NONE);
+    }
+
+    public static Path file(Path folder, String period)
+    {
+        return folder.resolve("tail-" + period + ".csv");
+    }
+
+    /**
+     * The committed state of the period with its files recovered : truncated back to their committed size or deleted
+     * if there is no state yet (i.e., generated from scratch).
+     *
+     * @param outputs the generated files of the period (e.g., one per measure)
+     */
+    public static MeteoTailState open(Path folder, String period, List<Path> outputs) throws IOException
+    {
+        final MeteoTailState state = new MeteoTailState(file(folder, period), period);
+
+        // name -> committed size
+        final Map<String, Long> sizes = new HashMap<>();
+
+        if (Files.exists(state.file))
+        {
+            try (final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(Files.newInputStream(state.file)))
+            {
+                for (CsvRecord record : reader)
+                {
+                    switch (record.getField(0))
+                    {
+                        case FILE -> sizes.put(record.getField(1), Long.parseLong(record.getField(2)));
+
+                        case STATION -> state.committed.put(
+                                MeteoUtils.parseInteger(record.getField(1)),
+                                timestamp(record.getField(2))
+                        );
+
+                        default -> throw new IOException("invalid tail state " + state.file);
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new IOException("IO error while reading " + state.file, ex);
+            }
+        }
+
+        for (Path output : outputs)
+        {
+            final long size = sizes.getOrDefault(output.getFileName().toString(), 0L);
+            final long actual = Files.exists(output) ? Files.size(output) : 0;
+
+            if (actual < size)
+            {
+                throw new IOException("%s is shorter than its committed size : delete %s".formatted(output, state.file));
+            }
+
+            if (actual > size)
+            {
+                if (size == 0)
+                {
+                    Files.delete(output);
+                }
+                else
+                {
+                    try (final FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE))
+                    {
+                        channel.truncate(size);
+                    }
+                }
+
+                MeteoLoggers.GENERAL.warn("%s recovered [ %s -> %s ]".formatted(
+                        output.getFileName(),
+                        MeteoUtils.formatSize(actual),
+                        MeteoUtils.formatSize(size)
+                ));
+            }
+        }
+
+        MeteoLoggers.GENERAL.info("tail %s [ stations : %s ]".formatted(period, state.committed.size()));
+
+        return state;
+    }
+
+    /**
+     * From the raw fields : the older rows are not parsed (see MeteoFilter.isAcceptedRow()).
+     *
+     * @param stationId see MeteoSource.Row.getDigits()
+     * @param timestamp yyyyMMddHH (see MeteoSource.Row.getDigits())
+     * @return the row is newer than the last hour committed for the station; newer if not a number (i.e., reported
+     * once parsed).
+     */
+    public boolean isNewer(long stationId, long timestamp)
+    {
+        if (stationId < 0 || stationId > Integer.MAX_VALUE || timestamp < 0)
+        {
+            return true;
+        }
+
+        return timestamp > committed.get((int) stationId);
+    }
+
+    /**
+     * The last hours (yyyyMMddHH) scanned by a unit (or one of its splits).
+     */
+    public void scanned(Int2LongOpenHashMap lastHours)
+    {
+        synchronized (scanned)
+        {
+            max(scanned, lastHours);
+        }
+    }
+
+    /**
+     * The files of the period are closed : forced to the disk and their size committed with the last hours.
+     */
+    public void commit(List<Path> outputs) throws IOException
+    {
+        synchronized (scanned)
+        {
+            max(committed, scanned);
+
+            scanned.clear();
+        }
+
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try
+        {
+            try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(';').build(Files.newOutputStream(tmp)))
+            {
+                for (Path output : outputs)
+                {
+                    if (Files.exists(output))
+                    {
+                        try (final FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE))
+                        {
+                            channel.force(true);
+                        }
+                    }
+
+                    writer.writeRecord(FILE, output.getFileName().toString(), String.valueOf(Files.exists(output) ? Files.size(output) : 0));
+                }
+
+                final int[] stations = committed.keySet().toIntArray();
+                IntArrays.quickSort(stations);
+
+                for (int station : stations)
+                {
+                    writer.writeRecord(STATION, String.valueOf(station), String.valueOf(committed.get(station)));
+                }
+            }
+
+            try (final FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE))
+            {
+                channel.force(true);
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + file, ex);
+        }
+
+        MeteoLoggers.GENERAL.info("tail %s committed [ stations : %s ]".formatted(period, committed.size()));
+    }
+
+    /**
+     * @return yyyyMMddHH (validated).
+     */
+    private static long timestamp(String field)
+    {
+        MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, field);
+
+        return Long.parseLong(field);
+    }
+
+    private static void max(Int2LongOpenHashMap into, Int2LongOpenHashMap hours)
+    {
+        for (int station : hours.keySet().toIntArray())
+        {
+            final long hour = hours.get(station);
+
+            if (hour > into.get(station))
+            {
+                into.put(station, hour);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package crazydev.meteo;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch of temperatures : temperatures are 1/10 °C integers within a narrow range, so an
+ * exact histogram is both smaller than a t-digest or KLL sketch and free of any rank error.
+ * <p>
+ * Serialized as the number of distinct values (varint) followed by (value delta (zigzag varint), count (varint)).
+ */
+public class MeteoTemperatureSketch
+{
+    // The temperature (1/10 °C) of counts[0].
+    private int offset;
+
+    private int[] counts = new int[0];
+
+    private long count;
+
+    public long count()
+    {
+        return count;
+    }
+
+    /**
+     * @param tenths 1/10 °C
+     */
+    public void add(int tenths)
+    {
+        add(tenths, 1);
+    }
+
+    public void merge(MeteoTemperatureSketch other)
+    {
+        for (int ii = 0; ii < other.counts.length; ii++)
+        {
+            if (other.counts[ii] > 0)
+            {
+                add(other.offset + ii, other.counts[ii]);
+            }
+        }
+    }
+
+    /**
+     * Nearest rank.
+     *
+     * @param quantile [0..1]
+     *
+     * @return 1/10 °C
+     */
+    public int quantile(double quantile)
+    {
+        if (count == 0 || quantile < 0 || quantile > 1)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+
+        long seen = 0;
+
+        for (int ii = 0; ii < counts.length; ii++)
+        {
+            seen += counts[ii];
+
+            if (seen >= rank)
+            {
+                return offset + ii;
+            }
+        }
+
+        throw new RuntimeException("OUCH!");
+    }
+
+    public byte[] toBytes()
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int distinct = 0;
+
+        for (int value : counts)
+        {
+            if (value > 0)
+            {
+                distinct++;
+            }
+        }
+
+        MeteoVarints.write(out, distinct);
+
+        int previous = 0;
+
+        for (int ii = 0; ii < counts.length; ii++)
+        {
+            if (counts[ii] > 0)
+            {
+                final int value = offset + ii;
+
+                MeteoVarints.writeZigzag(out, value - previous);
+                MeteoVarints.write(out, counts[ii]);
+
+                previous = value;
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    public static MeteoTemperatureSketch of(byte[] bytes)
+    {
+        final MeteoTemperatureSketch sketch = new MeteoTemperatureSketch();
+
+        final int[] pos = {0};
+        final int distinct = MeteoVarints.read(bytes, pos);
+
+        int previous = 0;
+
+        for (int ii = 0; ii < distinct; ii++)
+        {
+            final int value = previous + MeteoVarints.readZigzag(bytes, pos);
+
+            sketch.add(value, MeteoVarints.read(bytes, pos));
+
+            previous = value;
+        }
+
+        if (pos[0] != bytes.length)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        return sketch;
+    }
+
+    private void add(int tenths, int times)
+    {
+        if (counts.length == 0)
+        {
+            offset = tenths;
+            counts = new int[1];
+        }
+        else if (tenths < offset)
+        {
+            final int[] newCounts = new int[counts.length + (offset - tenths)];
+            System.arraycopy(counts, 0, newCounts, offset - tenths, counts.length);
+
+            counts = newCounts;
+            offset = tenths;
+        }
+        else if (tenths >= offset + counts.length)
+        {
+            counts = Arrays.copyOf(counts, tenths - offset + 1);
+        }
+
+        counts[tenths - offset] += times;
+        count += times;
+    }
+}
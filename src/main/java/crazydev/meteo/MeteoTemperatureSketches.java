@@ -0,0 +1,198 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.NamedCsvRecord;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The quantile sketches (see MeteoTemperatureSketch) of the temperatures per station and month
+ * (sketches-period.csv.gz) : percentiles across departments and years are answered by merging the sketches
+ * instead of scanning the hourly observations.
+ */
+public class MeteoTemperatureSketches implements MeteoTemperaturesAggregator
+{
+    private final Path ic3data;
+
+    private final MeteoPeriodWriter writer;
+
+    public MeteoTemperatureSketches(Path ic3data)
+    {
+        this.ic3data = ic3data;
+
+        this.writer = new MeteoPeriodWriter(
+                ic3data, "sketches",
+                "STATION_ID",
+                "YEAR",
+                "MONTH",
+                "COUNT",
+                "SKETCH"
+        );
+    }
+
+    @Override
+    public Task createTask(int department, String period)
+    {
+        final List<String[]> batch = new ArrayList<>();
+
+        // station ID -> current month
+        final Int2ObjectOpenHashMap<MonthSketch> months = new Int2ObjectOpenHashMap<>();
+
+        return new Task()
+        {
+            @Override
+            public void accept(int stationId, LocalDateTime time, double temp, int tempQ)
+            {
+                MonthSketch month = months.get(stationId);
+
+                if (month != null && (month.year != time.getYear() || month.month != time.getMonthOfYear()))
+                {
+                    batch.add(month.toRecord());
+                    month = null;
+
+                    if (batch.size() > 10_000)
+                    {
+                        writer.write(period, batch);
+                        batch.clear();
+                    }
+                }
+
+                if (month == null)
+                {
+                    month = new MonthSketch(stationId, time.getYear(), time.getMonthOfYear());
+                    months.put(stationId, month);
+                }
+
+                month.sketch.add(MeteoUtils.toTenths(temp));
+            }
+
+            @Override
+            public void flush()
+            {
+                for (MonthSketch month : months.values())
+                {
+                    batch.add(month.toRecord());
+                }
+
+                months.clear();
+
+                if (!batch.isEmpty())
+                {
+                    writer.write(period, batch);
+                    batch.clear();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+
+    /**
+     * Merges the sketches of the selected stations, years (inclusive) and months (1..12).
+     */
+    public MeteoTemperatureSketch merge(IntPredicate stations, int fromYear, int toYear, IntPredicate months) throws IOException
+    {
+        final MeteoTemperatureSketch merged = new MeteoTemperatureSketch();
+
+        final List<Path> paths = new ArrayList<>();
+
+        try (final var stream = Files.list(ic3data))
+        {
+            stream.forEach(path -> {
+
+                final String name = path.getFileName().toString();
+
+                if (name.startsWith("sketches-") && name.endsWith(".csv.gz"))
+                {
+                    final MeteoInterval interval = MeteoInterval.of(name.substring("sketches-".length(), name.length() - ".csv.gz".length()));
+
+                    if (interval.from.getYear() <= toYear && interval.to.getYear() > fromYear)
+                    {
+                        paths.add(path);
+                    }
+                }
+            });
+        }
+
+        for (Path path : paths)
+        {
+            try (final var reader = createCsvReader(path))
+            {
+                reader.forEach(record -> {
+
+                    final int year = MeteoUtils.parseInteger(record.getField(1));
+                    final int month = MeteoUtils.parseInteger(record.getField(2));
+
+                    if (year < fromYear || year > toYear || !months.test(month))
+                    {
+                        return;
+                    }
+
+                    if (!stations.test(MeteoUtils.parseInteger(record.getField(0))))
+                    {
+                        return;
+                    }
+
+                    merged.merge(MeteoTemperatureSketch.of(Base64.getDecoder().decode(record.getField(4))));
+                });
+            }
+            catch (IOException ex)
+            {
+                throw new IOException("IO error while reading " + path, ex);
+            }
+        }
+
+        return merged;
+    }
+
+    private static CsvReader<NamedCsvRecord> createCsvReader(Path path) throws IOException
+    {
+        return CsvReader.builder()
+                .fieldSeparator(";")
+                .ofNamedCsvRecord(
+                        new GZIPInputStream(Files.newInputStream(path))
+                );
+    }
+
+    static class MonthSketch
+    {
+        final int stationId;
+
+        final int year;
+
+        final int month;
+
+        final MeteoTemperatureSketch sketch = new MeteoTemperatureSketch();
+
+        MonthSketch(int stationId, int year, int month)
+        {
+            this.stationId = stationId;
+            this.year = year;
+            this.month = month;
+        }
+
+        String[] toRecord()
+        {
+            return new String[]{
+                    String.valueOf(stationId),
+                    String.valueOf(year),
+                    String.valueOf(month),
+                    String.valueOf(sketch.count()),
+                    Base64.getEncoder().encodeToString(sketch.toBytes())
+            };
+        }
+    }
+}
@@ -1,10 +1,7 @@
 package crazydev.meteo;
 
-import de.siegmar.fastcsv.reader.CsvReader;
-import de.siegmar.fastcsv.reader.NamedCsvRecord;
-import de.siegmar.fastcsv.writer.CsvWriter;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import org.apache.commons.lang3.mutable.MutableInt;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.jetbrains.annotations.Nullable;
 import org.joda.time.LocalDateTime;
 
@@ -12,42 +9,235 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
+/**
+ * Extracts the temperatures (observations-period.csv.gz) and optionally other measures (see MeteoMeasure) of the
+ * H files (or any other source, see MeteoSource) : each file is scanned once whatever the number of measures.
+ */
 public class MeteoTemperatures
 {
-    private final MeteoH in;
+    // The order of the sorted output : station then time (yyyyMMddHH : 10 digits).
+    static final MeteoPeriodWriter.SortKey ORDER = row -> Long.parseLong(row[0]) * 10_000_000_000L + Long.parseLong(row[1]);
+
+    // The order of the sorted keyed output (see keys()) : the keys of the stations follow their IDs but the missing
+    // stations come last (i.e., a period file is no longer sorted across its departments). The hour keys are signed.
+    static final MeteoPeriodWriter.SortKey KEY_ORDER = row -> ((long) Integer.parseInt(row[0]) << 32) | (Integer.parseInt(row[1]) - (long) Integer.MIN_VALUE);
+
+    private final MeteoSource in;
 
     private final Path ic3data;
 
     private final MeteoStations stations;
 
-    private final Object obsWriterLOCK = new Object();
+    // T first.
+    private final List<MeteoMeasure> measures = new ArrayList<>();
+
+    // Indexed as the measures.
+    private final List<MeteoPeriodWriter> writers = new ArrayList<>();
+
+    private final Object writersLOCK = new Object();
+
+    @Nullable
+    private String writersPeriod;
+
+    private final List<MeteoTemperaturesAggregator> aggregators = new ArrayList<>();
+
+    private int metricsSnapshotSeconds;
 
     @Nullable
-    private CsvWriter obsWriter;
+    private MeteoMemoryBudget budget;
 
+    private boolean sorted;
+
+    private MeteoCodec codec = MeteoCodec.GZIP;
+
+    @Nullable
+    private MeteoJournal journal;
+
+    private boolean keyed;
+
+    private boolean tail;
+
+    private boolean zones;
+
+    // Tail update : the state of the period being written (guarded by writersLOCK).
     @Nullable
-    private String obsWriterPeriod;
+    private MeteoTailState tailState;
 
-    public MeteoTemperatures(MeteoH in, Path ic3data, MeteoStations stations)
+    public MeteoTemperatures(MeteoSource in, Path ic3data, MeteoStations stations)
     {
         this.in = in;
         this.ic3data = ic3data;
         this.stations = stations;
+
+        // Not through addMeasure() : overridable.
+        this.measures.add(MeteoMeasure.T);
+        this.writers.add(MeteoMeasure.T.createWriter(ic3data));
+    }
+
+    /**
+     * Extracted while streaming the temperatures (e.g., precipitations) : same stations and opening periods.
+     */
+    public MeteoTemperatures addMeasure(MeteoMeasure measure)
+    {
+        if (measures.contains(measure))
+        {
+            throw new RuntimeException("OUCH!");
+        }
+
+        measures.add(measure);
+        writers.add(measure.createWriter(ic3data));
+
+        return this;
+    }
+
+    /**
+     * Computed while streaming the observations (e.g., daily temperatures).
+     */
+    public MeteoTemperatures addAggregator(MeteoTemperaturesAggregator aggregator)
+    {
+        aggregators.add(aggregator);
+        return this;
+    }
+
+    /**
+     * Logs a snapshot of the metrics (see MeteoMetrics) every given seconds while writing (0 : none).
+     */
+    public MeteoTemperatures metricsSnapshots(int seconds)
+    {
+        this.metricsSnapshotSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * Bounded memory : the department threads wait for the budget before processing a file and the unique
+     * observations checks spill to temporary files (null : unbounded).
+     */
+    public MeteoTemperatures memoryBudget(@Nullable MeteoMemoryBudget budget)
+    {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * The compression of the generated files (default : gzip, i.e., icCube inputs).
+     */
+    public MeteoTemperatures codec(MeteoCodec codec)
+    {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * The generated files sorted by station and time : each department file is sorted on its own and the files of
+     * a period are the concatenation of the departments (i.e., disjoint station IDs) in order.
+     */
+    public MeteoTemperatures sorted(boolean sorted)
+    {
+        this.sorted = sorted;
+        return this;
+    }
+
+    /**
+     * Resumable pass : each (period, department) unit is committed on its own (see MeteoPeriodWriter.partitioned())
+     * and journaled; a restarted pass skips the completed units and a failing unit is quarantined (null : none).
+     */
+    public MeteoTemperatures journal(@Nullable MeteoJournal journal)
+    {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * The generated files with compact integer keys instead of the station ID and the timestamp : the station key
+     * (see MeteoStations.key(), i.e., the missing stations loaded) and the hour key (see MeteoHours). Joined on
+     * STATION_KEY and HOUR_KEY in the Meteo-keyed.icc-schema file.
+     */
+    public MeteoTemperatures keys(boolean keyed)
+    {
+        this.keyed = keyed;
+        return this;
+    }
+
+    /**
+     * Tail update (e.g., the daily latest files) : only the rows newer than the last hour of their station (see
+     * MeteoTailState) are appended to the generated files as a new member (the files of a period without any state
+     * are generated from scratch).
+     */
+    public MeteoTemperatures tail(boolean tail)
+    {
+        this.tail = tail;
+        return this;
+    }
+
+    /**
+     * A zone map (see MeteoZoneMap) next to each generated file : e.g., the members of the departments once sorted
+     * or of each tail update.
+     */
+    public MeteoTemperatures zones(boolean zones)
+    {
+        this.zones = zones;
+        return this;
     }
 
     public void write(MeteoMode mode, @Nullable String periodFilter, @Nullable Integer departmentFilter) throws IOException
+    {
+        write(mode, MeteoFilter.of(periodFilter, departmentFilter));
+    }
+
+    /**
+     * @param filter the files pruned by name and the rows rejected before being parsed (see MeteoFilter).
+     */
+    public void write(MeteoMode mode, MeteoFilter filter) throws IOException
     {
         final long totalStartMS = System.currentTimeMillis();
 
+        // Their output is not committed per unit : would be incomplete once resumed.
+        if (journal != null && !aggregators.isEmpty())
+        {
+            throw new RuntimeException("the aggregators cannot be journaled");
+        }
+
+        // The aggregators would only see the newer rows; the members of the units are kept by the journal.
+        if (tail && (journal != null || !aggregators.isEmpty()))
+        {
+            throw new RuntimeException("the tail update cannot be journaled or aggregated");
+        }
+
+        // A unit would be journaled (or its last hours committed) with some of its rows only.
+        if (filter.hasRowFilter() && (journal != null || tail))
+        {
+            throw new RuntimeException("the journal and the tail update require all the rows : " + filter);
+        }
+
+        final MeteoMetrics metrics = new MeteoMetrics("temperatures").snapshotEvery(metricsSnapshotSeconds);
+
+        for (int ii = 0; ii < writers.size(); ii++)
+        {
+            final MeteoPeriodWriter writer = writers.get(ii);
+
+            writer.header(measures.get(ii).header(keyed));
+            writer.metrics(metrics);
+            writer.codec(codec);
+            writer.sorted(sorted ? (keyed ? KEY_ORDER : ORDER) : null);
+            writer.spills(budget);
+            writer.partitioned(journal != null);
+            writer.appended(tail);
+            writer.zones(zones);
+        }
+
+        final MeteoFilter rowFilter = filter.hasRowFilter() ? filter : null;
+
         final AtomicInteger obsCountT = new AtomicInteger();
         final AtomicInteger availableTempCountT = new AtomicInteger();
         final AtomicInteger writtenTempCountT = new AtomicInteger();
 
-        in.forEachPD(periodFilter, departmentFilter, (department, period, path) -> {
+        in.forEachPD(filter, journal, (department, period, path) -> {
 
             // ---------------------------------------------------------------------------------------------------------
             // MT callback.
@@ -62,115 +252,191 @@ public class MeteoTemperatures
 
                 final long startMS = System.currentTimeMillis();
 
-                synchronized (obsWriterLOCK)
+                final MeteoTailState unitTail;
+
+                synchronized (writersLOCK)
                 {
-                    if (obsWriter == null)
+                    // The periods are processed one after the other.
+                    if (writersPeriod != null && !writersPeriod.equals(period))
                     {
-                        obsWriter = createCsvObsWriter(period);
-                        obsWriterPeriod = period;
+                        for (MeteoPeriodWriter writer : writers)
+                        {
+                            writer.close(writersPeriod);
+                        }
+
+                        commitTail(writersPeriod);
                     }
-                    else if (!obsWriterPeriod.equals(period))
+
+                    writersPeriod = period;
+
+                    // Recovered before any row is appended.
+                    if (tail && tailState == null)
                     {
-                        obsWriter.close();
-                        obsWriter = createCsvObsWriter(period);
-                        obsWriterPeriod = period;
+                        tailState = MeteoTailState.open(ic3data, period, files(period));
                     }
+
+                    unitTail = tailState;
                 }
 
                 final MeteoInterval p = MeteoInterval.of(period);
 
-                final TempObsBatch batch = new TempObsBatch();
+                final MeteoTemperaturesAggregator.Task[] tasks = new MeteoTemperaturesAggregator.Task[aggregators.size()];
 
-                try (final var reader = createCsvReader(path))
+                for (int ii = 0; ii < tasks.length; ii++)
                 {
-                    MeteoLoggers.GENERAL.info(period + " @ " + department);
+                    tasks[ii] = aggregators.get(ii).createTask(department, period);
+                }
 
-                    // ( NUM_POST << 32 ) + AAAAMMJJHH
-                    final Set<Long> uniqueObservations = new LongOpenHashSet();
+                final List<MeteoSource.Observations> splits = in.openSplits(path, metrics);
 
-                    final MutableInt availableTempCount = new MutableInt();
-                    final MutableInt writtenTempCount = new MutableInt();
+                // The batches of the measures of each split (about 256 bytes per row).
+                final long taskBytes = splits.size() * measures.size() * 10_000L * 256;
 
-                    reader.forEach(record -> {
+                if (budget != null)
+                {
+                    budget.reserve(taskBytes);
+                }
 
-                        final int stationId = MeteoUtils.parseInteger(record.getField(MeteoH.F_NUM_POSTE));
-                        final MeteoStation station = stations.getStationEx(stationId);
+                // Any failure (e.g., duplicate observations, IO error) : the rows of the unit written so far are dropped.
+                boolean completed = false;
 
-                        final LocalDateTime time = MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, record.getField(MeteoH.F_AAAAMMJJHH));
-                        MeteoUtils.assertObservationTime(p, time);
+                try (final MeteoUniqueObservations uniqueObservations = new MeteoUniqueObservations(budget))
+                {
+                    MeteoLoggers.GENERAL.info(period + " @ " + department + (splits.size() > 1 ? " [ splits : " + splits.size() + " ]" : ""));
 
-                        assertUniqueObservations(uniqueObservations, stationId, time);
+                    final List<UnitScan> scans = new ArrayList<>(splits.size());
 
-                        final Double temp = MeteoUtils.parseObservationTemperature(record.getField(MeteoH.F_T));
+                    for (int ii = 0; ii < splits.size(); ii++)
+                    {
+                        scans.add(new UnitScan(department, period, p, metrics, uniqueObservations, tasks, unitTail, rowFilter));
+                    }
 
-                        if (temp == null)
+                    // The aggregators expect the rows in order : the splits (in order) one after the other.
+                    if (splits.size() == 1 || tasks.length > 0)
+                    {
+                        for (int ii = 0; ii < splits.size(); ii++)
                         {
-                            return;
+                            scans.get(ii).scan(splits.get(ii));
                         }
+                    }
+                    else
+                    {
+                        scanSplits(splits, scans);
+                    }
 
-                        availableTempCount.increment();
+                    uniqueObservations.assertUnique();
 
-                        final Integer tempQ = MeteoUtils.parseObservationQuality(record.getField(MeteoH.F_QT));
-                        MeteoUtils.assertObservationQuality(temp, tempQ);
+                    int availableTempCount = 0;
+                    int writtenTempCount = 0;
 
-                        // Temps. for a missing station are by definition within their opening period.
-                        // Indeed, the opening period is computed from existing temps.
+                    for (UnitScan scan : scans)
+                    {
+                        scan.flush();
 
-                        if (station == null || station.isWithinOpenedPeriod(time))
-                        {
-                            batch.batch.add(new TempObs(stationId, time, temp, tempQ));
-                            writtenTempCount.increment();
+                        availableTempCount += scan.availableTempCount;
+                        writtenTempCount += scan.writtenTempCount;
+                    }
 
-                            if (batch.batch.size() > 10_000)
-                            {
-                                synchronized (obsWriterLOCK)
-                                {
-                                    writeObservation(obsWriter, batch.batch);
-                                }
-                                batch.batch.clear();
-                            }
-                        }
-                    });
+                    for (MeteoPeriodWriter writer : writers)
+                    {
+                        writer.closeUnit(period, department);
+                    }
 
-                    if (!batch.batch.isEmpty())
+                    for (MeteoTemperaturesAggregator.Task task : tasks)
                     {
-                        synchronized (obsWriterLOCK)
-                        {
-                            writeObservation(obsWriter, batch.batch);
-                        }
-                        batch.batch.clear();
+                        task.flush();
                     }
 
                     MeteoLoggers.GENERAL.debug("%s @ %s in %s [ obs. count : %s ] [ available-temps : %s] [ written-temps : %s ]".formatted(
                             period,
                             department,
                             MeteoUtils.formatMillisEx(startMS),
-                            MeteoUtils.formatNice(uniqueObservations.size()),
-                            MeteoUtils.formatNice(availableTempCount.intValue()),
-                            MeteoUtils.formatNice(writtenTempCount.intValue())
+                            MeteoUtils.formatNice(uniqueObservations.count()),
+                            MeteoUtils.formatNice(availableTempCount),
+                            MeteoUtils.formatNice(writtenTempCount)
                     ));
 
-                    obsCountT.addAndGet(uniqueObservations.size());
-                    availableTempCountT.addAndGet(availableTempCount.intValue());
-                    writtenTempCountT.addAndGet(writtenTempCount.intValue());
+                    metrics.fileProcessed(department, startMS);
+
+                    obsCountT.addAndGet((int) uniqueObservations.count());
+                    availableTempCountT.addAndGet(availableTempCount);
+                    writtenTempCountT.addAndGet(writtenTempCount);
+
+                    completed = true;
 
                     return true;
                 }
+                finally
+                {
+                    try
+                    {
+                        if (!completed)
+                        {
+                            for (MeteoPeriodWriter writer : writers)
+                            {
+                                writer.abortUnit(period, department);
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        for (MeteoSource.Observations split : splits)
+                        {
+                            split.close();
+                        }
+
+                        if (budget != null)
+                        {
+                            budget.release(taskBytes);
+                        }
+                    }
+                }
             }
             catch (IOException ex)
             {
                 throw new RuntimeException("error while processing " + path, ex);
             }
+
+        }, period -> {
+
+            // The period file is complete : written from the committed units before being journaled.
+            for (MeteoPeriodWriter writer : writers)
+            {
+                writer.close(period);
+                writer.deleteUnits(period);
+            }
+
+            synchronized (writersLOCK)
+            {
+                commitTail(period);
+            }
         });
 
-        synchronized (obsWriterLOCK)
+        synchronized (writersLOCK)
         {
-            if (obsWriter != null)
+            for (MeteoPeriodWriter writer : writers)
+            {
+                writer.close();
+            }
+
+            if (writersPeriod != null)
             {
-                obsWriter.close();
-                obsWriter = null;
-                obsWriterPeriod = null;
+                commitTail(writersPeriod);
             }
+
+            writersPeriod = null;
+        }
+
+        for (MeteoTemperaturesAggregator aggregator : aggregators)
+        {
+            aggregator.close();
+        }
+
+        metrics.report(ic3data.resolve("metrics-temperatures.json"));
+
+        if (budget != null)
+        {
+            MeteoLoggers.GENERAL.info("memory " + budget);
         }
 
         MeteoLoggers.GENERAL.warn("%s [ obs. count : %s ] [ available-temps : %s] [ written-temps : %s ]".formatted(
@@ -181,80 +447,337 @@ public class MeteoTemperatures
         ));
     }
 
-    private CsvWriter createCsvObsWriter(String period) throws IOException
+    /**
+     * The generated files of the period (i.e., one per measure).
+     */
+    private List<Path> files(String period)
     {
-        final CsvWriter writer = CsvWriter.builder()
-                .fieldSeparator(';')
-                .build(new GZIPOutputStream(Files.newOutputStream(ic3data.resolve("observations-" + period + ".csv.gz"))));
-
-        writer.writeRecord(
-                "STATION_ID",
-                "TIMESTAMP",
-                "TEMP",
-                "Q_TEMP"
-        );
-
-        return writer;
+        return writers.stream().map(writer -> writer.file(period)).toList();
     }
 
-    private void writeObservation(CsvWriter writer, List<TempObs> batch)
+    /**
+     * Tail update : the files of the period are closed (guarded by writersLOCK).
+     */
+    private void commitTail(String period) throws IOException
     {
-        for (TempObs obs : batch)
+        if (tailState != null && tailState.period.equals(period))
         {
-            writer.writeRecord(obs.stationId, obs.time, obs.temp, obs.tempQ);
+            tailState.commit(files(period));
+            tailState = null;
         }
     }
 
-    private static CsvReader<NamedCsvRecord> createCsvReader(Path path) throws IOException
+    /**
+     * *** Blocking *** call : the splits of a file scanned in parallel.
+     */
+    private static void scanSplits(List<MeteoSource.Observations> splits, List<UnitScan> scans)
     {
-        return CsvReader.builder()
-                .fieldSeparator(";")
-                .ofNamedCsvRecord(
-                        new GZIPInputStream(Files.newInputStream(path))
-                );
+        try (final ExecutorService pool = Executors.newFixedThreadPool(splits.size()))
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int ii = 0; ii < splits.size(); ii++)
+            {
+                final MeteoSource.Observations split = splits.get(ii);
+                final UnitScan scan = scans.get(ii);
+
+                futures.add(pool.submit(() -> scan.scan(split)));
+            }
+
+            try
+            {
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (ExecutionException ex)
+            {
+                if (ex.getCause() instanceof RuntimeException cause)
+                {
+                    throw cause;
+                }
+
+                throw new RuntimeException("OUCH!", ex);
+            }
+            catch (InterruptedException ex)
+            {
+                throw new RuntimeException("OUCH!", ex);
+            }
+        }
     }
 
-    private static void assertUniqueObservations(Set<Long> uniques, int stationId, LocalDateTime time)
+    private static void flush(MeteoPeriodWriter writer, int department, String period, ObsBatch batch)
     {
-        final int high = stationId;
+        final MeteoEvents.WriterFlush event = new MeteoEvents.WriterFlush();
+        event.begin();
 
-        final int low =
-                time.getHourOfDay()
-                + (time.getDayOfMonth() * 100)
-                + (time.getMonthOfYear() * 100 * 100)
-                + (time.getYear() * 100 * 100 * 100);
+        writer.write(period, department, batch.batch);
 
-        final long unique = ((long) high << 32) | (low & 0xFFFFFFFFL);
+        event.end();
 
-        if (uniques.contains(unique))
+        if (event.shouldCommit())
         {
-            throw new RuntimeException("OUCH!");
+            event.period = period;
+            event.department = department;
+            event.path = writer.file(period).toString();
+            event.rows = batch.batch.size();
+            event.commit();
         }
 
-        uniques.add(unique);
+        batch.batch.clear();
     }
 
-    static class TempObs
+    /**
+     * The rows of a file (or of one of its splits, see MeteoSource.openSplits()) batched per measure into the unit of
+     * the department.
+     */
+    private class UnitScan
     {
-        final String stationId;
+        private final int department;
+
+        private final String period;
+
+        private final MeteoInterval p;
+
+        private final MeteoMetrics metrics;
+
+        // Shared by the splits : the keys are checked by batch.
+        private final MeteoUniqueObservations uniqueObservations;
+
+        private final LongArrayList uniqueKeys = new LongArrayList();
+
+        private final MeteoTemperaturesAggregator.Task[] tasks;
+
+        private final ObsBatch[] batches;
+
+        // Tail update : station -> last hour (yyyyMMddHH) scanned.
+        @Nullable
+        private final MeteoTailState tail;
+
+        private final Int2LongOpenHashMap lastHours = new Int2LongOpenHashMap();
+
+        @Nullable
+        private final MeteoFilter filter;
+
+        // Station, time and (value, quality) field per measure : resolved from the header.
+        private final int[] fields = new int[2 + 2 * measures.size()];
+
+        int availableTempCount;
+
+        int writtenTempCount;
+
+        UnitScan(int department, String period, MeteoInterval p, MeteoMetrics metrics, MeteoUniqueObservations uniqueObservations, MeteoTemperaturesAggregator.Task[] tasks, @Nullable MeteoTailState tail, @Nullable MeteoFilter filter)
+        {
+            this.department = department;
+            this.period = period;
+            this.p = p;
+            this.metrics = metrics;
+            this.uniqueObservations = uniqueObservations;
+            this.tasks = tasks;
+            this.tail = tail;
+            this.filter = filter;
+            this.batches = new ObsBatch[measures.size()];
+
+            for (int ii = 0; ii < batches.length; ii++)
+            {
+                batches[ii] = new ObsBatch(keyed ? stations : null);
+            }
+
+            Arrays.fill(fields, -1);
+            lastHours.defaultReturnValue(Long.MIN_VALUE);
+        }
+
+        void scan(MeteoSource.Observations reader)
+        {
+            reader.forEach(this::accept);
+            checkUniqueKeys();
+
+            if (tail != null)
+            {
+                tail.scanned(lastHours);
+            }
+        }
+
+        private void accept(MeteoSource.Row record)
+        {
+            metrics.rowsParsed.increment();
+
+            if (fields[0] == -1)
+            {
+                final List<String> header = record.getHeader();
+
+                fields[0] = MeteoMeasure.field(header, MeteoSource.C_STATION);
+                fields[1] = MeteoMeasure.field(header, MeteoSource.C_TIMESTAMP);
+
+                for (int ii = 0; ii < measures.size(); ii++)
+                {
+                    fields[2 + 2 * ii] = MeteoMeasure.field(header, measures.get(ii).column);
+                    fields[2 + 2 * ii + 1] = MeteoMeasure.field(header, measures.get(ii).qualityColumn);
+                }
+            }
+
+            // From the raw fields : the rejected rows are not parsed.
+            if (filter != null && !filter.isAcceptedRow(record.getDigits(fields[0]), record.getDigits(fields[1])))
+            {
+                metrics.rowsFiltered.increment();
+                return;
+            }
+
+            // Same for the rows older than the committed tail.
+            if (tail != null && !tail.isNewer(record.getDigits(fields[0]), record.getDigits(fields[1])))
+            {
+                metrics.rowsSkipped.increment();
+                return;
+            }
+
+            final int stationId = MeteoUtils.parseInteger(record.getField(fields[0]));
+            final MeteoStation station = stations.getStationEx(stationId);
+
+            final LocalDateTime time = MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, record.getField(fields[1]));
+            MeteoUtils.assertObservationTime(p, time);
 
-        final String time;
+            if (tail != null)
+            {
+                // Valid once parsed (see above).
+                final long hour = record.getDigits(fields[1]);
+
+                if (hour > lastHours.get(stationId))
+                {
+                    lastHours.put(stationId, hour);
+                }
+            }
+
+            uniqueKeys.add(MeteoUniqueObservations.key(stationId, time));
+
+            if (uniqueKeys.size() >= 10_000)
+            {
+                checkUniqueKeys();
+            }
+
+            // Temps. for a missing station are by definition within their opening period.
+            // Indeed, the opening period is computed from existing temps.
+
+            final boolean isWithinOpenedPeriod = station == null || station.isWithinOpenedPeriod(time);
+
+            for (int ii = 0; ii < batches.length; ii++)
+            {
+                final Double value = MeteoUtils.parseObservationValue(record.getField(fields[2 + 2 * ii]));
+
+                if (value == null)
+                {
+                    if (ii == 0)
+                    {
+                        metrics.rowsMissing.increment();
+                    }
+
+                    continue;
+                }
+
+                final Integer valueQ = MeteoUtils.parseObservationQuality(record.getField(fields[2 + 2 * ii + 1]));
+                MeteoUtils.assertObservationQuality(value, valueQ);
+
+                if (ii == 0)
+                {
+                    availableTempCount++;
+                }
+
+                if (!isWithinOpenedPeriod)
+                {
+                    if (ii == 0)
+                    {
+                        metrics.rowsRejected.increment();
+                    }
+
+                    continue;
+                }
+
+                batches[ii].add(stationId, time, value, valueQ);
+
+                if (ii == 0)
+                {
+                    writtenTempCount++;
+                    metrics.rowsWritten.increment();
 
-        final String temp;
+                    for (MeteoTemperaturesAggregator.Task task : tasks)
+                    {
+                        task.accept(stationId, time, value, valueQ);
+                    }
+                }
+
+                if (batches[ii].batch.size() > 10_000)
+                {
+                    MeteoTemperatures.flush(writers.get(ii), department, period, batches[ii]);
+                }
+            }
+        }
 
-        final String tempQ;
+        private void checkUniqueKeys()
+        {
+            synchronized (uniqueObservations)
+            {
+                for (int ii = 0; ii < uniqueKeys.size(); ii++)
+                {
+                    uniqueObservations.add(uniqueKeys.getLong(ii));
+                }
+            }
+
+            uniqueKeys.clear();
+        }
 
-        public TempObs(int stationId, LocalDateTime time, double temp, int tempQ)
+        /**
+         * The remaining rows written.
+         */
+        void flush()
         {
-            this.stationId = String.valueOf(stationId);
-            this.time = time.toString(MeteoH.TIMESTAMP_FORMAT);
-            this.temp = String.valueOf(temp);
-            this.tempQ = String.valueOf(tempQ);
+            for (int ii = 0; ii < batches.length; ii++)
+            {
+                if (!batches[ii].batch.isEmpty())
+                {
+                    MeteoTemperatures.flush(writers.get(ii), department, period, batches[ii]);
+                }
+            }
         }
     }
 
-    static class TempObsBatch
+    static class ObsBatch
     {
-        final List<TempObs> batch = new ArrayList<>();
+        final List<String[]> batch = new ArrayList<>();
+
+        // Keyed rows (see keys()).
+        @Nullable
+        private final MeteoStations keys;
+
+        ObsBatch()
+        {
+            this(null);
+        }
+
+        ObsBatch(@Nullable MeteoStations keys)
+        {
+            this.keys = keys;
+        }
+
+        void add(int stationId, LocalDateTime time, double value, int valueQ)
+        {
+            if (keys != null)
+            {
+                batch.add(new String[]{
+                        String.valueOf(keys.key(stationId)),
+                        String.valueOf(MeteoHours.key(time)),
+                        String.valueOf(value),
+                        String.valueOf(valueQ)
+                });
+
+                return;
+            }
+
+            batch.add(new String[]{
+                    String.valueOf(stationId),
+                    time.toString(MeteoH.TIMESTAMP_FORMAT),
+                    String.valueOf(value),
+                    String.valueOf(valueQ)
+            });
+        }
     }
 }
@@ -0,0 +1,31 @@
+package crazydev.meteo;
+
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+
+/**
+ * Computed in the same pass as the observations extraction (see MeteoTemperatures).
+ */
+public interface MeteoTemperaturesAggregator
+{
+    /**
+     * MT : called for each (period, department) file; the returned task is confined to the calling thread.
+     */
+    Task createTask(int department, String period);
+
+    void close() throws IOException;
+
+    interface Task
+    {
+        /**
+         * Called for each written temperature in the order of the file (i.e., by station and time).
+         */
+        void accept(int stationId, LocalDateTime time, double temp, int tempQ);
+
+        /**
+         * End of the file.
+         */
+        void flush();
+    }
+}
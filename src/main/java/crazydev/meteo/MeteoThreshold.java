@@ -0,0 +1,95 @@
+package crazydev.meteo;
+
+import java.util.List;
+
+/**
+ * A daily temperature threshold (e.g., TX >= 35 °C) : see MeteoThresholdDays.
+ */
+public class MeteoThreshold
+{
+    public static final MeteoThreshold TX_GE_35 = new MeteoThreshold("DAYS_TX_GE_35", Measure.TX, true, 35.0);
+
+    public static final MeteoThreshold TX_GE_30 = new MeteoThreshold("DAYS_TX_GE_30", Measure.TX, true, 30.0);
+
+    public static final MeteoThreshold TN_LE_0 = new MeteoThreshold("DAYS_TN_LE_0", Measure.TN, false, 0.0);
+
+    // Tropical nights.
+    public static final MeteoThreshold TN_GE_20 = new MeteoThreshold("DAYS_TN_GE_20", Measure.TN, true, 20.0);
+
+    public static final MeteoThreshold TN_LE_M5 = new MeteoThreshold("DAYS_TN_LE_M5", Measure.TN, false, -5.0);
+
+    public static final List<MeteoThreshold> DEFAULTS = List.of(TX_GE_35, TX_GE_30, TN_LE_0, TN_GE_20);
+
+    public enum Measure
+    {
+        MIN,
+        MAX,
+        AVG,
+        TN,
+        TX
+    }
+
+    /**
+     * The name of the column in the generated file.
+     */
+    public final String name;
+
+    public final Measure measure;
+
+    // >= (or <=)
+    public final boolean isGreater;
+
+    // 1/10 °C
+    public final int tenths;
+
+    public MeteoThreshold(String name, Measure measure, boolean isGreater, double temp)
+    {
+        this.name = name;
+        this.measure = measure;
+        this.isGreater = isGreater;
+        this.tenths = MeteoUtils.toTenths(temp);
+    }
+
+    public boolean isReached(MeteoDailyTemperature day)
+    {
+        if (!hasValue(day))
+        {
+            return false;
+        }
+
+        final int value = value(day);
+
+        return isGreater ? value >= tenths : value <= tenths;
+    }
+
+    boolean hasValue(MeteoDailyTemperature day)
+    {
+        return switch (measure)
+        {
+            case MIN, MAX, AVG -> day.count > 0;
+            case TN -> day.tnCount > 0;
+            case TX -> day.txCount > 0;
+        };
+    }
+
+    /**
+     * 1/10 °C (see hasValue).
+     */
+    int value(MeteoDailyTemperature day)
+    {
+        return switch (measure)
+        {
+            case MIN -> day.min;
+            case MAX -> day.max;
+            case AVG -> MeteoUtils.toTenths(day.avg());
+            case TN -> day.tn;
+            case TX -> day.tx;
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
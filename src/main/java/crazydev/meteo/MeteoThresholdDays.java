@@ -0,0 +1,161 @@
+package crazydev.meteo;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The number of days per station and month reaching each threshold (thresholds-period.csv.gz), e.g., the number
+ * of days with TX >= 35 °C or the number of tropical nights.
+ */
+public class MeteoThresholdDays implements MeteoTemperaturesAggregator
+{
+    private final List<MeteoThreshold> thresholds;
+
+    private final MeteoPeriodWriter writer;
+
+    public MeteoThresholdDays(Path ic3data)
+    {
+        this(ic3data, MeteoThreshold.DEFAULTS);
+    }
+
+    public MeteoThresholdDays(Path ic3data, List<MeteoThreshold> thresholds)
+    {
+        this.thresholds = thresholds;
+
+        final List<String> header = new ArrayList<>(List.of(
+                "STATION_ID",
+                "YEAR",
+                "MONTH",
+                "DAYS"
+        ));
+
+        for (MeteoThreshold threshold : thresholds)
+        {
+            header.add(threshold.name);
+        }
+
+        this.writer = new MeteoPeriodWriter(ic3data, "thresholds", header.toArray(new String[0]));
+    }
+
+    @Override
+    public Task createTask(int department, String period)
+    {
+        final List<String[]> batch = new ArrayList<>();
+
+        // station ID -> current month
+        final Int2ObjectOpenHashMap<MonthCounts> months = new Int2ObjectOpenHashMap<>();
+
+        final MeteoDailyAccumulator accumulator = new MeteoDailyAccumulator(day -> {
+
+            final LocalDate date = day.date();
+
+            MonthCounts month = months.get(day.stationId);
+
+            if (month != null && (month.year != date.getYear() || month.month != date.getMonthOfYear()))
+            {
+                batch.add(month.toRecord());
+                month = null;
+            }
+
+            if (month == null)
+            {
+                month = new MonthCounts(day.stationId, date.getYear(), date.getMonthOfYear(), thresholds.size());
+                months.put(day.stationId, month);
+            }
+
+            month.days++;
+
+            for (int ii = 0; ii < thresholds.size(); ii++)
+            {
+                if (thresholds.get(ii).isReached(day))
+                {
+                    month.counts[ii]++;
+                }
+            }
+        });
+
+        return new Task()
+        {
+            @Override
+            public void accept(int stationId, LocalDateTime time, double temp, int tempQ)
+            {
+                accumulator.accept(stationId, time, temp);
+
+                if (batch.size() > 10_000)
+                {
+                    writer.write(period, batch);
+                    batch.clear();
+                }
+            }
+
+            @Override
+            public void flush()
+            {
+                accumulator.flush();
+
+                for (MonthCounts month : months.values())
+                {
+                    batch.add(month.toRecord());
+                }
+
+                months.clear();
+
+                if (!batch.isEmpty())
+                {
+                    writer.write(period, batch);
+                    batch.clear();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+
+    static class MonthCounts
+    {
+        final int stationId;
+
+        final int year;
+
+        final int month;
+
+        int days;
+
+        final int[] counts;
+
+        MonthCounts(int stationId, int year, int month, int thresholdCount)
+        {
+            this.stationId = stationId;
+            this.year = year;
+            this.month = month;
+            this.counts = new int[thresholdCount];
+        }
+
+        String[] toRecord()
+        {
+            final String[] record = new String[4 + counts.length];
+
+            record[0] = String.valueOf(stationId);
+            record[1] = String.valueOf(year);
+            record[2] = String.valueOf(month);
+            record[3] = String.valueOf(days);
+
+            for (int ii = 0; ii < counts.length; ii++)
+            {
+                record[4 + ii] = String.valueOf(counts[ii]);
+            }
+
+            return record;
+        }
+    }
+}
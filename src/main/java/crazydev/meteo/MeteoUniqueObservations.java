@@ -0,0 +1,285 @@
+package crazydev.meteo;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.LocalDateTime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Asserts the (station, time) of the observations of an H file are unique.
+ * <p>
+ * Without memory budget : a hash set (duplicates are reported immediately). With a memory budget : the keys are
+ * appended to an array growing as long as the budget allows, then sorted and spilled as a run to a temporary file;
+ * the runs are merged at the end (duplicates are reported once the file is read).
+ */
+class MeteoUniqueObservations implements AutoCloseable
+{
+    // 8 MB : the array grows by (at least) this many keys.
+    private static final int CHUNK = 1 << 20;
+
+    @Nullable
+    private final MeteoMemoryBudget budget;
+
+    @Nullable
+    private final LongOpenHashSet uniques;
+
+    private long[] keys = LongArrays.EMPTY_ARRAY;
+
+    private int size;
+
+    private long reserved;
+
+    private final List<Path> runs = new ArrayList<>();
+
+    private long count;
+
+    MeteoUniqueObservations(@Nullable MeteoMemoryBudget budget)
+    {
+        this.budget = budget;
+        this.uniques = budget == null ? new LongOpenHashSet() : null;
+    }
+
+    /**
+     * ( NUM_POST << 32 ) + AAAAMMJJHH
+     */
+    static long key(int stationId, LocalDateTime time)
+    {
+        final int low =
+                time.getHourOfDay()
+                + (time.getDayOfMonth() * 100)
+                + (time.getMonthOfYear() * 100 * 100)
+                + (time.getYear() * 100 * 100 * 100);
+
+        return ((long) stationId << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    void add(int stationId, LocalDateTime time)
+    {
+        add(key(stationId, time));
+    }
+
+    /**
+     * @param key see key()
+     */
+    void add(long key)
+    {
+        count++;
+
+        if (uniques != null)
+        {
+            if (!uniques.add(key))
+            {
+                throw duplicate(key);
+            }
+
+            return;
+        }
+
+        if (size == keys.length)
+        {
+            try
+            {
+                grow();
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("IO error while spilling the observations", ex);
+            }
+        }
+
+        keys[size++] = key;
+    }
+
+    long count()
+    {
+        return count;
+    }
+
+    /**
+     * Checks the keys not checked yet (i.e., with a memory budget).
+     */
+    void assertUnique() throws IOException
+    {
+        if (uniques != null)
+        {
+            return;
+        }
+
+        if (runs.isEmpty())
+        {
+            sortAndCheck();
+            return;
+        }
+
+        spill();
+        merge();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (budget != null)
+        {
+            budget.release(reserved);
+            reserved = 0;
+        }
+
+        keys = LongArrays.EMPTY_ARRAY;
+
+        for (Path run : runs)
+        {
+            Files.deleteIfExists(run);
+        }
+
+        runs.clear();
+    }
+
+    private void grow() throws IOException
+    {
+        final int length = keys.length + Math.max(CHUNK, keys.length / 2);
+        final long bytes = (long) (length - keys.length) * Long.BYTES;
+
+        if (size > 0 && !budget.tryReserve(bytes))
+        {
+            // Budget reached : the (sorted) keys to a run and the array is reused.
+            spill();
+            return;
+        }
+
+        if (size == 0)
+        {
+            budget.reserveForced(bytes);
+        }
+
+        reserved += bytes;
+        keys = Arrays.copyOf(keys, length);
+    }
+
+    private void sortAndCheck()
+    {
+        LongArrays.radixSort(keys, 0, size);
+
+        for (int ii = 1; ii < size; ii++)
+        {
+            if (keys[ii] == keys[ii - 1])
+            {
+                throw duplicate(keys[ii]);
+            }
+        }
+    }
+
+    private void spill() throws IOException
+    {
+        if (size == 0)
+        {
+            return;
+        }
+
+        sortAndCheck();
+
+        final Path run = budget.createSpillFile("unique-observations-");
+        runs.add(run);
+
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16)))
+        {
+            for (int ii = 0; ii < size; ii++)
+            {
+                out.writeLong(keys[ii]);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + run, ex);
+        }
+
+        budget.spills.incrementAndGet();
+        budget.spilledBytes.addAndGet((long) size * Long.BYTES);
+
+        size = 0;
+    }
+
+    /**
+     * K-way merge of the (sorted) runs : a duplicate is two equal consecutive keys.
+     */
+    private void merge() throws IOException
+    {
+        final DataInputStream[] ins = new DataInputStream[runs.size()];
+        final long[] heads = new long[runs.size()];
+        final boolean[] isEmpty = new boolean[runs.size()];
+
+        try
+        {
+            for (int ii = 0; ii < ins.length; ii++)
+            {
+                ins[ii] = new DataInputStream(new BufferedInputStream(Files.newInputStream(runs.get(ii)), 1 << 16));
+                heads[ii] = ins[ii].readLong();
+            }
+
+            boolean isFirst = true;
+            long previous = 0;
+
+            while (true)
+            {
+                int min = -1;
+
+                // A few runs only : no heap required.
+                for (int ii = 0; ii < ins.length; ii++)
+                {
+                    if (!isEmpty[ii] && (min == -1 || heads[ii] < heads[min]))
+                    {
+                        min = ii;
+                    }
+                }
+
+                if (min == -1)
+                {
+                    break;
+                }
+
+                if (!isFirst && heads[min] == previous)
+                {
+                    throw duplicate(previous);
+                }
+
+                isFirst = false;
+                previous = heads[min];
+
+                try
+                {
+                    heads[min] = ins[min].readLong();
+                }
+                catch (EOFException ex)
+                {
+                    isEmpty[min] = true;
+                }
+            }
+        }
+        finally
+        {
+            for (DataInputStream in : ins)
+            {
+                if (in != null)
+                {
+                    in.close();
+                }
+            }
+        }
+    }
+
+    private static RuntimeException duplicate(long key)
+    {
+        return new RuntimeException("duplicated observation : " + (key >>> 32) + " @ " + (int) key);
+    }
+}
@@ -167,6 +167,12 @@ public abstract class MeteoUtils
 
     @Nullable
     public static Double parseObservationTemperature(String value)
+    {
+        return parseObservationValue(value);
+    }
+
+    @Nullable
+    public static Double parseObservationValue(String value)
     {
         if (isNullOrBlank(value))
         {
@@ -186,6 +192,41 @@ public abstract class MeteoUtils
         return Integer.parseInt(value);
     }
 
+    /**
+     * Temperatures are provided in °C with a single decimal : this is a lossless integer representation.
+     */
+    public static int toTenths(double temp)
+    {
+        return (int) Math.round(temp * 10.0);
+    }
+
+    public static String formatTenths(int tenths)
+    {
+        return String.valueOf(tenths / 10.0);
+    }
+
+    /**
+     * Observations timestamps are UTC.
+     */
+    public static long epochDay(LocalDateTime time)
+    {
+        return java.time.LocalDate.of(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth()).toEpochDay();
+    }
+
+    /**
+     * Hours since 1970-01-01T00 (UTC) : fits an int for the whole history (1780 onward).
+     */
+    public static int epochHour(LocalDateTime time)
+    {
+        return (int) (epochDay(time) * 24 + time.getHourOfDay());
+    }
+
+    public static LocalDate ofEpochDay(long epochDay)
+    {
+        final java.time.LocalDate date = java.time.LocalDate.ofEpochDay(epochDay);
+        return new LocalDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
     @Contract("null -> true")
     public static boolean isNullOrBlank(@Nullable String string)
     {
@@ -0,0 +1,64 @@
+package crazydev.meteo;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * The varint (7 bits per byte, little endian) and zigzag (small negative values as small positive ones) encodings of
+ * the serialized sketches and series blocks (see MeteoTemperatureSketch and MeteoSeriesCodec).
+ */
+public abstract class MeteoVarints
+{
+    private MeteoVarints()
+    {
+    }
+
+    public static void write(ByteArrayOutputStream out, int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write(value);
+    }
+
+    public static void writeZigzag(ByteArrayOutputStream out, int value)
+    {
+        write(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * @param pos the position in bytes : advanced past the value.
+     */
+    public static int read(byte[] bytes, int[] pos)
+    {
+        int value = 0;
+        int shift = 0;
+
+        while (true)
+        {
+            if (pos[0] >= bytes.length)
+            {
+                throw new RuntimeException("OUCH!");
+            }
+
+            final byte b = bytes[pos[0]++];
+
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+
+            shift += 7;
+        }
+    }
+
+    public static int readZigzag(byte[] bytes, int[] pos)
+    {
+        final int value = read(bytes, pos);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,304 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The zone map of a generated file (prefix-period.csv.gz.zones, see MeteoPeriodWriter.zones()) : per member (e.g.,
+ * the unit of a department, a tail update) its bytes, its row count and the range of the station and time columns
+ * (i.e., STATION_ID and TIMESTAMP as numbers or STATION_KEY and HOUR_KEY once keyed).
+ * <pre>
+ *     OFFSET;LENGTH;ROWS;STATION_MIN;STATION_MAX;TIME_MIN;TIME_MAX
+ * </pre>
+ * A reader only inflates the members that may match (see open()); the first member of a file starts with the header.
+ * The zone map is ignored once it no longer covers the file (e.g., written again without zones).
+ */
+public class MeteoZoneMap
+{
+    private final Path file;
+
+    private final List<Zone> zones;
+
+    private MeteoZoneMap(Path file, List<Zone> zones)
+    {
+        this.file = file;
+        this.zones = zones;
+    }
+
+    public static Path zonesFile(Path file)
+    {
+        return file.resolveSibling(file.getFileName() + ".zones");
+    }
+
+    /**
+     * @return null if none or not covering the file.
+     */
+    @Nullable
+    public static MeteoZoneMap load(Path file) throws IOException
+    {
+        if (!Files.exists(file))
+        {
+            return null;
+        }
+
+        final List<Zone> zones = load(file, Files.size(file));
+        return zones != null ? new MeteoZoneMap(file, zones) : null;
+    }
+
+    /**
+     * @param size e.g., the size of the file before appending new members
+     * @return the zones up to the size (i.e., the ones of a failed append dropped); null if none or not covering
+     * the file up to the size.
+     */
+    @Nullable
+    static List<Zone> load(Path file, long size) throws IOException
+    {
+        final Path zonesFile = zonesFile(file);
+
+        if (!Files.exists(zonesFile))
+        {
+            return null;
+        }
+
+        final List<Zone> zones = new ArrayList<>();
+
+        try (final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(Files.newInputStream(zonesFile)))
+        {
+            for (CsvRecord record : reader)
+            {
+                if (record.getField(0).equals("OFFSET"))
+                {
+                    continue;
+                }
+
+                final Zone zone = new Zone(
+                        Long.parseLong(record.getField(0)),
+                        Long.parseLong(record.getField(1)),
+                        Long.parseLong(record.getField(2)),
+                        Long.parseLong(record.getField(3)),
+                        Long.parseLong(record.getField(4)),
+                        Long.parseLong(record.getField(5)),
+                        Long.parseLong(record.getField(6))
+                );
+
+                if (zone.end() <= size)
+                {
+                    zones.add(zone);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while reading " + zonesFile, ex);
+        }
+
+        if (zones.isEmpty() || zones.getLast().end() != size)
+        {
+            return null;
+        }
+
+        return zones;
+    }
+
+    static void save(Path file, List<Zone> zones) throws IOException
+    {
+        final Path zonesFile = zonesFile(file);
+        final Path tmp = zonesFile.resolveSibling(zonesFile.getFileName() + ".tmp");
+
+        try
+        {
+            try (final CsvWriter writer = CsvWriter.builder().fieldSeparator(';').build(Files.newOutputStream(tmp)))
+            {
+                writer.writeRecord("OFFSET", "LENGTH", "ROWS", "STATION_MIN", "STATION_MAX", "TIME_MIN", "TIME_MAX");
+
+                for (Zone zone : zones)
+                {
+                    writer.writeRecord(
+                            String.valueOf(zone.offset),
+                            String.valueOf(zone.length),
+                            String.valueOf(zone.rows),
+                            String.valueOf(zone.stationMin),
+                            String.valueOf(zone.stationMax),
+                            String.valueOf(zone.timeMin),
+                            String.valueOf(zone.timeMax)
+                    );
+                }
+            }
+
+            Files.move(tmp, zonesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("IO error while writing " + zonesFile, ex);
+        }
+    }
+
+    static void delete(Path file) throws IOException
+    {
+        Files.deleteIfExists(zonesFile(file));
+    }
+
+    public List<Zone> zones()
+    {
+        return zones;
+    }
+
+    public long rowCount()
+    {
+        return zones.stream().mapToLong(Zone::rows).sum();
+    }
+
+    /**
+     * @return the compressed bytes of the member (see MeteoCodec.input()).
+     */
+    public InputStream open(Zone zone) throws IOException
+    {
+        return new ZoneInputStream(file, zone);
+    }
+
+    /**
+     * @param offset the first byte of the member within the file (0 : the header first)
+     */
+    public record Zone(long offset, long length, long rows, long stationMin, long stationMax, long timeMin, long timeMax)
+    {
+        public long end()
+        {
+            return offset + length;
+        }
+
+        public boolean hasHeader()
+        {
+            return offset == 0;
+        }
+
+        /**
+         * Inclusive ranges.
+         */
+        public boolean overlaps(long stationFrom, long stationTo, long timeFrom, long timeTo)
+        {
+            return rows > 0 && stationMin <= stationTo && stationMax >= stationFrom && timeMin <= timeTo && timeMax >= timeFrom;
+        }
+    }
+
+    /**
+     * The rows of a member being written : the first two columns parsed as numbers (e.g., yyyyMMddHH sorts as
+     * a number).
+     */
+    static class Stats
+    {
+        long rows;
+
+        long stationMin = Long.MAX_VALUE;
+
+        long stationMax = Long.MIN_VALUE;
+
+        long timeMin = Long.MAX_VALUE;
+
+        long timeMax = Long.MIN_VALUE;
+
+        /**
+         * A member written without stats (e.g., committed by a previous pass).
+         *
+         * @param in the inflated member (without any header)
+         */
+        static Stats scan(InputStream in) throws IOException
+        {
+            final Stats stats = new Stats();
+
+            try (final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(in))
+            {
+                for (CsvRecord record : reader)
+                {
+                    stats.add(Long.parseLong(record.getField(0)), Long.parseLong(record.getField(1)));
+                }
+            }
+
+            return stats;
+        }
+
+        void add(List<String[]> rows)
+        {
+            for (String[] row : rows)
+            {
+                add(Long.parseLong(row[0]), Long.parseLong(row[1]));
+            }
+        }
+
+        private void add(long station, long time)
+        {
+            rows++;
+
+            stationMin = Math.min(stationMin, station);
+            stationMax = Math.max(stationMax, station);
+            timeMin = Math.min(timeMin, time);
+            timeMax = Math.max(timeMax, time);
+        }
+
+        Zone zone(long offset, long length)
+        {
+            return new Zone(offset, length, rows, stationMin, stationMax, timeMin, timeMax);
+        }
+    }
+
+    /**
+     * The bytes of a member.
+     */
+    private static class ZoneInputStream extends InputStream
+    {
+        private final FileChannel channel;
+
+        private long remaining;
+
+        ZoneInputStream(Path file, Zone zone) throws IOException
+        {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.channel.position(zone.offset);
+            this.remaining = zone.length;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            final int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)));
+
+            if (read == -1)
+            {
+                throw new IOException("unexpected end of the member");
+            }
+
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package crazydev.meteo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The keyed observations (see MeteoTemperatures.keys()) read back : same rows as the observations with the station IDs
+ * and the timestamps.
+ */
+class MeteoColumnStoreTest
+{
+    @TempDir
+    Path folder;
+
+    @Test
+    void keyed() throws IOException
+    {
+        final MeteoSynthetic synthetic = new MeteoSynthetic(folder.resolve("H"), new int[]{13, 83}, 2, 2018, 2019);
+
+        synthetic.write();
+        synthetic.writeStations(folder.resolve("stations.csv"));
+
+        final MeteoStations stations = new MeteoStations(folder.resolve("stations.csv"), folder);
+        stations.build();
+
+        final Path plain = generate(stations, "plain", false);
+        final Path keyed = generate(stations, "keyed", true);
+
+        try (final MeteoColumnStore expected = MeteoColumnStore.loadObservations(plain);
+             final MeteoColumnStore actual = MeteoColumnStore.loadObservations(keyed, null, stations.ids()))
+        {
+            assertEquals(expected.stationCount(), actual.stationCount());
+
+            for (int station = 0; station < expected.stationCount(); station++)
+            {
+                assertEquals(expected.stationId(station), actual.stationId(station));
+                assertEquals(expected.stationDepartment(station), actual.stationDepartment(station));
+            }
+
+            final List<String> rows = rows(expected);
+
+            assertFalse(rows.isEmpty());
+            assertEquals(rows, rows(actual));
+        }
+
+        final IOException ex = assertThrows(IOException.class, () -> MeteoColumnStore.loadObservations(keyed));
+
+        assertTrue(ex.getMessage().contains("STATION_KEY"), ex.getMessage());
+    }
+
+    private Path generate(MeteoStations stations, String name, boolean keyed) throws IOException
+    {
+        final Path output = Files.createDirectories(folder.resolve(name));
+
+        new MeteoTemperatures(new MeteoH(folder.resolve("H").toString()), output, stations)
+                .keys(keyed)
+                .write(MeteoMode.TEMPERATURES, null, null);
+
+        return output;
+    }
+
+    private static List<String> rows(MeteoColumnStore store)
+    {
+        final List<String> rows = new ArrayList<>();
+
+        for (int station = 0; station < store.stationCount(); station++)
+        {
+            final long from = store.stationOffset(station);
+
+            for (long row = from; row < from + store.stationRowCount(station); row++)
+            {
+                rows.add(store.stationId(station) + ";" + store.hour(row) + ";" + store.temp(row) + ";" + store.quality(row));
+            }
+        }
+
+        rows.sort(null);
+
+        return rows;
+    }
+}
@@ -0,0 +1,213 @@
+package crazydev.meteo;
+
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The rows of the scanner (vector and scalar masks) are the ones of the CSV reader.
+ */
+class MeteoFieldScannerTest
+{
+    @Test
+    void masks()
+    {
+        // The vector masks if the module is added (see build.gradle.kts).
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+        {
+            assertNotNull(MeteoFieldScanner.vectorMasks());
+        }
+    }
+
+    @Test
+    void quotedFields() throws IOException
+    {
+        assertSameRows("""
+                A;B;C
+                1;"a;b";3
+                "x""y";;"z"
+                ;"";
+                """);
+    }
+
+    @Test
+    void crlfAndEmptyLines() throws IOException
+    {
+        assertSameRows("\r\nA;B\r\n1;2\r\n\r\n\n3;4\n\r\n5;\"6;7\"\r\n\n");
+    }
+
+    @Test
+    void noFinalNewline() throws IOException
+    {
+        assertSameRows("A;B\n1;2\n3;4");
+        assertSameRows("A;B\r\n1;2\r\n3;\"4;5\"");
+        assertSameRows("A;B\n\n1");
+        assertSameRows("");
+    }
+
+    @Test
+    void chunkBoundaries() throws IOException
+    {
+        // Lines of all the lengths around the 64 bytes chunks : each separator/newline at every offset of a chunk.
+        for (int length = 1; length <= 3 * MeteoFieldScanner.CHUNK; length++)
+        {
+            final StringBuilder csv = new StringBuilder("A;B;C\n");
+
+            for (int ll = 0; ll < 5; ll++)
+            {
+                final String field = "x".repeat(length);
+                csv.append(field).append(';').append(ll % 2 == 0 ? "\"q;" + field + "\"" : field).append(';').append(ll).append(ll % 3 == 0 ? "\r\n" : "\n");
+            }
+
+            assertSameRows(csv.toString());
+        }
+    }
+
+    @Test
+    void bufferBoundaries() throws IOException
+    {
+        final SplittableRandom random = new SplittableRandom(42);
+
+        // Several buffers (1 MB) : random lines crossing the buffers.
+        final StringBuilder csv = new StringBuilder("NUM_POSTE;AAAAMMJJHH;T;QT\n");
+
+        while (csv.length() < 3 * (1 << 20) + 123)
+        {
+            appendLine(random, csv);
+        }
+
+        assertSameRows(csv.toString());
+
+        // A line larger than the buffer (i.e., the buffer grown).
+        final String large = "A;B\n1;" + "y".repeat(3 * (1 << 20) / 2) + "\n2;\"z;z\"\n";
+
+        assertSameRows(large);
+    }
+
+    private static void appendLine(SplittableRandom random, StringBuilder csv)
+    {
+        if (random.nextInt(50) == 0)
+        {
+            csv.append(random.nextBoolean() ? "\n" : "\r\n");
+            return;
+        }
+
+        final int fieldCount = 1 + random.nextInt(8);
+
+        for (int ff = 0; ff < fieldCount; ff++)
+        {
+            if (ff > 0)
+            {
+                csv.append(';');
+            }
+
+            final int kind = random.nextInt(10);
+
+            if (kind == 0)
+            {
+                csv.append('"').append(text(random)).append(";\"\"").append(text(random)).append('"');
+            }
+            else if (kind < 5)
+            {
+                csv.append(random.nextLong(0, 100_000_000_000L));
+            }
+            else if (kind < 9)
+            {
+                csv.append(text(random));
+            }
+        }
+
+        csv.append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+    }
+
+    private static String text(SplittableRandom random)
+    {
+        final String chars = "abcdefghijklmnopqrstuvwxyz0123456789 .,-é";
+        final StringBuilder text = new StringBuilder();
+
+        for (int ii = random.nextInt(1 + random.nextInt(200)); ii > 0; ii--)
+        {
+            text.append(chars.charAt(random.nextInt(chars.length())));
+        }
+
+        return text.toString();
+    }
+
+    private static void assertSameRows(String csv) throws IOException
+    {
+        final byte[] data = csv.getBytes(StandardCharsets.UTF_8);
+        final List<List<String>> expected = read(data);
+
+        assertEquals(expected, scan(data, new MeteoFieldScanner.ScalarMasks()), "scalar");
+        assertEquals(expected, scan(data, MeteoFieldScanner.MASKS), MeteoFieldScanner.MASKS.toString());
+    }
+
+    /**
+     * The header first.
+     */
+    private static List<List<String>> read(byte[] data) throws IOException
+    {
+        final List<List<String>> rows = new ArrayList<>();
+
+        try (final CsvReader<CsvRecord> reader = CsvReader.builder().fieldSeparator(';').ofCsvRecord(new ByteArrayInputStream(data)))
+        {
+            for (CsvRecord record : reader)
+            {
+                rows.add(List.copyOf(record.getFields()));
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * The header first.
+     */
+    private static List<List<String>> scan(byte[] data, MeteoFieldScanner.Masks masks) throws IOException
+    {
+        final List<List<String>> rows = new ArrayList<>();
+
+        try (final MeteoFieldScanner scanner = new MeteoFieldScanner(new ByteArrayInputStream(data), ';', masks))
+        {
+            scanner.forEach(row -> {
+
+                if (rows.isEmpty())
+                {
+                    rows.add(row.getHeader());
+                }
+
+                final List<String> fields = new ArrayList<>();
+
+                for (int ii = 0; ; ii++)
+                {
+                    final String field;
+
+                    try
+                    {
+                        field = row.getField(ii);
+                    }
+                    catch (IndexOutOfBoundsException ex)
+                    {
+                        break;
+                    }
+
+                    assertEquals(MeteoFilter.digits(field), row.getDigits(ii), field);
+                    fields.add(field);
+                }
+
+                rows.add(fields);
+            });
+        }
+
+        return rows;
+    }
+}
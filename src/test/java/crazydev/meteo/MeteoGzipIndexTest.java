@@ -0,0 +1,192 @@
+package crazydev.meteo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The access points (see MeteoInflater) and the splits (see MeteoGzipIndex) of generated gzip files : many deflate
+ * blocks (i.e., sync flushed within the lines or not) and several members. The lines of the splits are the lines of
+ * the file (as inflated by GZIPInputStream).
+ */
+class MeteoGzipIndexTest
+{
+    private static final byte[] HEADER = "STATION_ID;TIMESTAMP;TEMP;Q_TEMP\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final long SPAN = 16 * 1024;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void member() throws IOException
+    {
+        final Path file = folder.resolve("H_13.csv.gz");
+        Files.write(file, member(new SplittableRandom(42), true, 20_000));
+
+        assertSplits(file);
+    }
+
+    @Test
+    void members() throws IOException
+    {
+        final SplittableRandom random = new SplittableRandom(7);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(member(random, true, 8_000));
+        bytes.write(member(random, false, 5));
+        bytes.write(member(random, false, 12_000));
+
+        final Path file = folder.resolve("H_83.csv.gz");
+        Files.write(file, bytes.toByteArray());
+
+        assertSplits(file);
+    }
+
+    private void assertSplits(Path file) throws IOException
+    {
+        final byte[] expected;
+
+        try (final InputStream in = new GZIPInputStream(Files.newInputStream(file)))
+        {
+            expected = in.readAllBytes();
+        }
+
+        // The access points : some of them within a line (i.e., SKIP then TAIL).
+        final List<Boolean> lineStarts = new ArrayList<>();
+
+        try (final InputStream in = Files.newInputStream(file))
+        {
+            final MeteoInflater inflater = new MeteoInflater(in, SPAN, (byteOffset, outOffset, window, lineStart) -> {
+
+                // None at the start of a member.
+                if (window.length > 0)
+                {
+                    assertEquals(Math.min(outOffset, MeteoInflater.WINDOW), window.length);
+                }
+
+                assertArrayEquals(Arrays.copyOfRange(expected, (int) (outOffset - window.length), (int) outOffset), window);
+                assertEquals(outOffset == 0 || expected[(int) outOffset - 1] == '\n', lineStart);
+
+                lineStarts.add(lineStart);
+            });
+
+            assertEquals(expected.length, inflater.inflate());
+            assertArrayEquals(HEADER, inflater.header());
+        }
+
+        assertTrue(lineStarts.size() > 10, "access points : " + lineStarts.size());
+        assertTrue(lineStarts.contains(false));
+
+        final MeteoGzipIndex index = MeteoGzipIndex.build(file, SPAN);
+
+        assertEquals(lineStarts.size(), index.splitCount());
+        assertEquals(new String(expected, StandardCharsets.UTF_8), inflate(index));
+
+        // Reloaded from the .idx file.
+        index.save();
+
+        final MeteoGzipIndex saved = MeteoGzipIndex.load(file);
+
+        assertNotNull(saved);
+        assertEquals(index.splitCount(), saved.splitCount());
+        assertEquals(new String(expected, StandardCharsets.UTF_8), inflate(saved));
+
+        // Not up-to-date once the file modified.
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+
+        assertNull(MeteoGzipIndex.load(file));
+    }
+
+    /**
+     * @return the concatenation of the lines of the splits (with the header once).
+     */
+    private static String inflate(MeteoGzipIndex index) throws IOException
+    {
+        final StringBuilder lines = new StringBuilder();
+
+        for (int ii = 0; ii < index.splitCount(); ii++)
+        {
+            final String split;
+
+            try (final InputStream in = index.split(ii))
+            {
+                split = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            assertTrue(split.isEmpty() || split.endsWith("\n"), "split " + ii);
+
+            if (ii == 0)
+            {
+                lines.append(split);
+            }
+            else
+            {
+                assertTrue(split.startsWith(new String(HEADER, StandardCharsets.UTF_8)), "split " + ii);
+                lines.append(split, HEADER.length, split.length());
+            }
+        }
+
+        return lines.toString();
+    }
+
+    /**
+     * A gzip member sync flushed every few KB (i.e., a deflate block ending on a byte) : within a line or not.
+     */
+    private static byte[] member(SplittableRandom random, boolean header, int lineCount) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final GZIPOutputStream out = new GZIPOutputStream(bytes, 512, true))
+        {
+            if (header)
+            {
+                out.write(HEADER);
+            }
+
+            long flushed = 0;
+            long written = 0;
+
+            for (int ii = 0; ii < lineCount; ii++)
+            {
+                final byte[] line = "%d;%d;%.1f;%d\n".formatted(
+                        13_000_000 + random.nextInt(100),
+                        2019070100 + ii,
+                        random.nextInt(-100, 400) / 10.0,
+                        random.nextInt(3)
+                ).getBytes(StandardCharsets.UTF_8);
+
+                final int cut = random.nextInt(line.length + 1);
+
+                out.write(line, 0, cut);
+                written += cut;
+
+                if (written - flushed > 2_000 + random.nextInt(4_000))
+                {
+                    out.flush();
+                    flushed = written;
+                }
+
+                out.write(line, cut, line.length - cut);
+                written += line.length - cut;
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,144 @@
+package crazydev.meteo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A small Norway folder (sources.csv and a zip per station) as downloaded by the norway scripts.
+ */
+class MeteoNorwayTest
+{
+    @TempDir
+    Path folder;
+
+    @Test
+    void stationIds() throws IOException
+    {
+        fixture();
+
+        // SN99999 : no temperatures file.
+        assertEquals(List.of(18700, 50540), new MeteoNorway(folder, 1900, 2026).stationIds());
+    }
+
+    @Test
+    void units() throws IOException
+    {
+        fixture();
+
+        final MeteoNorway norway = new MeteoNorway(folder, 1900, 2026);
+
+        final List<String> units = new ArrayList<>();
+
+        norway.forEachPD(new MeteoFilter(), (department, period, path) -> {
+
+            synchronized (units)
+            {
+                units.add(department + "@" + period + ":" + path.getFileName());
+            }
+
+            return true;
+        });
+
+        units.sort(null);
+
+        assertEquals(List.of("18700@1900-2026:SN18700.zip", "50540@1900-2026:SN50540.zip"), units);
+
+        // Pruned by station and period.
+        units.clear();
+        norway.forEachPD(MeteoFilter.parse("stations=50540"), (department, period, path) -> units.add(String.valueOf(department)));
+        norway.forEachPD(MeteoFilter.parse("period=>2027"), (department, period, path) -> units.add(String.valueOf(department)));
+
+        assertEquals(List.of("50540"), units);
+    }
+
+    @Test
+    void observations() throws IOException
+    {
+        fixture();
+
+        final List<String> rows = new ArrayList<>();
+
+        try (final MeteoMetrics metrics = new MeteoMetrics("norway");
+             final MeteoSource.Observations observations = new MeteoNorway(folder, 1900, 2026).open(folder.resolve("SN18700.zip"), metrics))
+        {
+            observations.forEach(row -> {
+
+                assertEquals(MeteoNorway.HEADER, row.getHeader());
+
+                rows.add(String.join(";", row.getField(0), row.getField(1), row.getField(2), row.getField(3)));
+            });
+        }
+
+        assertEquals(List.of(
+                "18700;1970010100;-3.5;1",
+                "18700;1970010101;-3.4;2",
+                "18700;1970010102;;",
+                "18700;1970010103;12.3;9",
+                "18700;1970010104;0.0;9"
+        ), rows);
+    }
+
+    @Test
+    void parsing()
+    {
+        assertEquals(18700, MeteoNorway.parseStationId("SN18700"));
+        assertEquals(18700, MeteoNorway.parseStationId("SN18700:0"));
+        assertThrows(RuntimeException.class, () -> MeteoNorway.parseStationId("18700"));
+
+        assertEquals("1970010113", MeteoNorway.parseTimestamp("1970-01-01 13:00:00+00:00"));
+        assertThrows(RuntimeException.class, () -> MeteoNorway.parseTimestamp("1970-01-01"));
+
+        assertEquals("1", MeteoNorway.parseQuality("0"));
+        assertEquals("2", MeteoNorway.parseQuality("3"));
+        assertEquals("9", MeteoNorway.parseQuality("-1"));
+        assertEquals("9", MeteoNorway.parseQuality(""));
+    }
+
+    private void fixture() throws IOException
+    {
+        Files.writeString(folder.resolve("sources.csv"), """
+                id,name,shortName,countryCode,county,municipality,latitude,longitude
+                SN18700,OSLO - BLINDERN,Blindern,NO,OSLO,OSLO,59.9423,10.72
+                SN50540,BERGEN - FLORIDA,Florida,NO,VESTLAND,BERGEN,60.383,5.3327
+                SN99999,NOWHERE,Nowhere,NO,NONE,NONE,60.0,10.0
+                """);
+
+        // A repeated hour (i.e., several sensors) is skipped; no final newline.
+        zip("SN18700", """
+                date,temperature,quality code
+                1970-01-01 00:00:00+00:00,-3.5,0
+                1970-01-01 00:00:00+00:00,-3.7,0
+                1970-01-01 01:00:00+00:00,-3.44,2
+                1970-01-01 02:00:00+00:00,,0
+                1970-01-01 03:00:00+00:00,12.34,-1
+                1970-01-01 04:00:00+00:00,0,""");
+
+        zip("SN50540", """
+                date,temperature,quality code
+                2020-06-01 12:00:00+00:00,15.2,0
+                """);
+    }
+
+    private void zip(String station, String csv) throws IOException
+    {
+        try (final OutputStream out = Files.newOutputStream(folder.resolve(station + ".zip"));
+             final ZipOutputStream zip = new ZipOutputStream(out))
+        {
+            zip.putNextEntry(new ZipEntry(station + ".csv"));
+            zip.write(csv.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
+}
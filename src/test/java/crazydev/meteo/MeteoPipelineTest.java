@@ -0,0 +1,178 @@
+package crazydev.meteo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The pipeline end to end against a local HTTP server serving small synthetic H files (see MeteoSynthetic) : the
+ * generated files are compared to the ones extracted directly from the served H files.
+ */
+class MeteoPipelineTest
+{
+    private static final String OBSERVATIONS = "observations-2010-2019.csv.gz";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void downloadsAndExtracts() throws IOException
+    {
+        final Path remote = generate();
+
+        // 84 : not served (404), i.e., no station in the department for the period.
+        final MeteoFilter filter = MeteoFilter.parse("period=2010-2019;departments=13,83,84");
+
+        try (final Server server = new Server(remote, Set.of()))
+        {
+            final Path output = pipeline(server, filter);
+
+            assertTrue(Files.exists(folder.resolve("H/historic/13/H_13_2010-2019.csv.gz")));
+            assertTrue(Files.exists(folder.resolve("H/historic/83/H_83_2010-2019.csv.gz")));
+            assertFalse(Files.exists(folder.resolve("H/historic/84/H_84_2010-2019.csv.gz")));
+
+            assertArrayEquals(
+                    Files.readAllBytes(extract(remote, filter).resolve(OBSERVATIONS)),
+                    Files.readAllBytes(output.resolve(OBSERVATIONS))
+            );
+        }
+    }
+
+    @Test
+    void failingDownloadFailsTheRun() throws IOException
+    {
+        final Path remote = generate();
+
+        try (final Server server = new Server(remote, Set.of("H_83_2010-2019.csv.gz")))
+        {
+            final IOException ex = assertThrows(IOException.class, () -> pipeline(server, MeteoFilter.parse("period=2010-2019;departments=13,83")));
+
+            assertTrue(ex.getMessage().contains("2010-2019/83"), ex.getMessage());
+            assertFalse(ex.getMessage().contains("2010-2019/13"), ex.getMessage());
+
+            // The other files extracted anyway.
+            assertArrayEquals(
+                    Files.readAllBytes(extract(remote, MeteoFilter.parse("period=2010-2019;departments=13")).resolve(OBSERVATIONS)),
+                    Files.readAllBytes(folder.resolve("pipeline").resolve(OBSERVATIONS))
+            );
+        }
+    }
+
+    /**
+     * @return the served H folder (13 and 83 over 2019) with its stations file.
+     */
+    private Path generate() throws IOException
+    {
+        final Path remote = folder.resolve("remote");
+
+        final MeteoSynthetic synthetic = new MeteoSynthetic(remote, new int[]{13, 83}, 2, 2019, 2019);
+
+        synthetic.write();
+        synthetic.writeStations(folder.resolve("stations.csv"));
+
+        return remote;
+    }
+
+    private Path pipeline(Server server, MeteoFilter filter) throws IOException
+    {
+        final Path output = Files.createDirectories(folder.resolve("pipeline"));
+
+        final MeteoH in = new MeteoH(folder.resolve("H").toString());
+        final MeteoStations stations = new MeteoStations(folder.resolve("stations.csv"), output);
+        final MeteoTemperatures temps = new MeteoTemperatures(in, output, stations).sorted(true);
+
+        new MeteoPipeline(in, new MeteoDownloader(in, server.baseUrl()), stations, temps).run(filter);
+
+        return output;
+    }
+
+    private Path extract(Path remote, MeteoFilter filter) throws IOException
+    {
+        final Path output = Files.createDirectories(folder.resolve("expected"));
+
+        final MeteoStations stations = new MeteoStations(folder.resolve("stations.csv"), output);
+        stations.build();
+
+        new MeteoTemperatures(new MeteoH(remote.toString()), output, stations).sorted(true).write(MeteoMode.TEMPERATURES, filter);
+
+        return output;
+    }
+
+    /**
+     * Serves the H files of a folder by name (404 if none) : the failing ones as 500.
+     */
+    private static class Server implements AutoCloseable
+    {
+        private final Path folder;
+
+        private final Set<String> failing;
+
+        private final HttpServer server;
+
+        Server(Path folder, Set<String> failing) throws IOException
+        {
+            this.folder = folder;
+            this.failing = failing;
+
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            this.server.createContext("/H/", this::handle);
+            this.server.start();
+        }
+
+        String baseUrl()
+        {
+            return "http://%s:%d/H/".formatted(server.getAddress().getHostString(), server.getAddress().getPort());
+        }
+
+        private void handle(HttpExchange exchange) throws IOException
+        {
+            try (exchange)
+            {
+                final String name = Path.of(exchange.getRequestURI().getPath()).getFileName().toString();
+
+                if (failing.contains(name))
+                {
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+
+                final Path file;
+
+                try (final var files = Files.walk(folder))
+                {
+                    file = files.filter(path -> path.getFileName().toString().equals(name)).findFirst().orElse(null);
+                }
+
+                if (file == null)
+                {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                exchange.sendResponseHeaders(200, Files.size(file));
+
+                try (final OutputStream out = exchange.getResponseBody())
+                {
+                    Files.copy(file, out);
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package crazydev.meteo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The query server over a small observations folder (as generated by MeteoTemperatures from synthetic H files) : the
+ * responses are compared to the statistics computed row by row from the store.
+ */
+class MeteoQueryServerTest
+{
+    @TempDir
+    Path folder;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void queries() throws IOException, InterruptedException
+    {
+        try (final MeteoColumnStore store = MeteoColumnStore.loadObservations(generate());
+             final MeteoQueryServer server = new MeteoQueryServer(store, 0, 1024 * 1024).start())
+        {
+            final int stationId = MeteoSynthetic.stationId(83, 1);
+
+            final int from = MeteoUtils.epochHour(MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, "2019070100"));
+            final int to = MeteoUtils.epochHour(MeteoUtils.parseDateTime(MeteoH.TIMESTAMP_FORMAT, "2019090100"));
+
+            assertQuery(server, store, "granularity=none&statistic=count",
+                    "none", "count", (station, row) -> true);
+
+            assertQuery(server, store, "departments=83&granularity=day&statistic=min",
+                    "day", "min", (station, row) -> store.stationDepartment(station) == 83);
+
+            assertQuery(server, store, "departments=13&from=2019070100&to=2019090100&granularity=month&statistic=avg",
+                    "month", "avg", (station, row) -> store.stationDepartment(station) == 13 && store.hour(row) >= from && store.hour(row) < to);
+
+            assertQuery(server, store, "stations=" + stationId + "&granularity=year&statistic=stddev",
+                    "year", "stddev", (station, row) -> store.stationId(station) == stationId);
+
+            assertQuery(server, store, "qualities=0,2&statistic=max",
+                    "none", "max", (station, row) -> store.quality(row) == 0 || store.quality(row) == 2);
+        }
+    }
+
+    @Test
+    void errors() throws IOException, InterruptedException
+    {
+        try (final MeteoColumnStore store = MeteoColumnStore.loadObservations(generate());
+             final MeteoQueryServer server = new MeteoQueryServer(store, 0, 1024 * 1024).start())
+        {
+            final HttpResponse<String> unknown = get(server, "departments=13&foo=1");
+
+            assertEquals(400, unknown.statusCode());
+            assertTrue(unknown.body().contains("unknown parameter foo"), unknown.body());
+
+            assertEquals(400, get(server, "statistic=median").statusCode());
+            assertEquals(400, get(server, "granularity=week").statusCode());
+            assertEquals(400, get(server, "from=2019").statusCode());
+        }
+    }
+
+    @Test
+    void cache() throws IOException, InterruptedException
+    {
+        try (final MeteoColumnStore store = MeteoColumnStore.loadObservations(generate());
+             final MeteoQueryServer server = new MeteoQueryServer(store, 0, 1024 * 1024).start())
+        {
+            final HttpResponse<String> computed = get(server, "departments=13&granularity=month&statistic=max");
+            final HttpResponse<String> cached = get(server, "granularity=month&statistic=max&departments=13");
+
+            assertEquals(200, computed.statusCode());
+            assertTrue(computed.headers().firstValue("X-Scan-MS").isPresent());
+
+            // Same parameters (whatever their order) : from the cache.
+            assertEquals(200, cached.statusCode());
+            assertEquals(computed.body(), cached.body());
+            assertFalse(cached.headers().firstValue("X-Scan-MS").isPresent());
+        }
+    }
+
+    /**
+     * @return the observations folder of the departments 13 and 83 (2 stations each) over 2018-2019.
+     */
+    private Path generate() throws IOException
+    {
+        final MeteoSynthetic synthetic = new MeteoSynthetic(folder.resolve("H"), new int[]{13, 83}, 2, 2018, 2019);
+
+        synthetic.write();
+        synthetic.writeStations(folder.resolve("stations.csv"));
+
+        final Path output = Files.createDirectories(folder.resolve("temperatures"));
+
+        final MeteoStations stations = new MeteoStations(folder.resolve("stations.csv"), output);
+        stations.build();
+
+        new MeteoTemperatures(new MeteoH(folder.resolve("H").toString()), output, stations).write(MeteoMode.TEMPERATURES, null, null);
+
+        return output;
+    }
+
+    private HttpResponse<String> get(MeteoQueryServer server, String query) throws IOException, InterruptedException
+    {
+        final URI uri = URI.create("http://localhost:%d/query?%s".formatted(server.port(), query));
+
+        return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void assertQuery(MeteoQueryServer server, MeteoColumnStore store, String query, String granularity, String statistic, RowPredicate accepted) throws IOException, InterruptedException
+    {
+        final HttpResponse<String> response = get(server, query);
+
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(expected(store, granularity, statistic, accepted), response.body(), query);
+    }
+
+    /**
+     * Row by row.
+     */
+    private static String expected(MeteoColumnStore store, String granularity, String statistic, RowPredicate accepted)
+    {
+        final Map<String, MeteoScan.Stats> stats = new TreeMap<>();
+
+        for (int station = 0; station < store.stationCount(); station++)
+        {
+            final int ss = station;
+
+            for (long row = store.stationOffset(station); row < store.stationOffset(station) + store.stationRowCount(station); row++)
+            {
+                if (!accepted.test(ss, row))
+                {
+                    continue;
+                }
+
+                final LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(store.hour(row), 24));
+
+                final String key = switch (granularity)
+                {
+                    case "none" -> "all";
+                    case "day" -> date.toString();
+                    case "month" -> String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+                    case "year" -> String.valueOf(date.getYear());
+                    default -> throw new RuntimeException("OUCH!");
+                };
+
+                stats.computeIfAbsent(key, k -> new MeteoScan.Stats()).add(store.temp(row));
+            }
+        }
+
+        assertFalse(stats.isEmpty());
+
+        final MeteoJson json = new MeteoJson().beginObject();
+
+        json.field("granularity", granularity);
+        json.field("statistic", statistic);
+
+        json.name("rows").beginArray();
+
+        stats.forEach((key, value) -> {
+
+            json.beginObject();
+            json.field("key", key);
+            json.name("value");
+
+            switch (statistic)
+            {
+                case "avg" -> json.value(value.avg());
+                case "min" -> json.value(value.min / 10.0);
+                case "max" -> json.value(value.max / 10.0);
+                case "count" -> json.value(value.count);
+                case "stddev" -> json.value(value.stddev());
+            }
+
+            json.field("count", value.count);
+            json.endObject();
+        });
+
+        json.endArray();
+
+        return json.endObject().toString();
+    }
+
+    @FunctionalInterface
+    private interface RowPredicate
+    {
+        boolean test(int station, long row);
+    }
+}
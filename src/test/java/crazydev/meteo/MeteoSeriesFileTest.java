@@ -0,0 +1,130 @@
+package crazydev.meteo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The blocks (see MeteoSeriesCodec) and the series file of a small synthetic store (see MeteoSynthetic) read back.
+ */
+class MeteoSeriesFileTest
+{
+    @TempDir
+    Path folder;
+
+    @Test
+    void codec()
+    {
+        final SplittableRandom random = new SplittableRandom(42);
+
+        assertRoundTrip(new int[0], new short[0], new byte[0]);
+        assertRoundTrip(new int[]{-5}, new short[]{-123}, new byte[]{9});
+
+        for (int ii = 0; ii < 100; ii++)
+        {
+            final int count = 1 + random.nextInt(10_000);
+
+            final int[] hours = new int[count];
+            final short[] temps = new short[count];
+            final byte[] qualities = new byte[count];
+
+            hours[0] = random.nextInt(-2_000_000, 600_000);
+            temps[0] = (short) random.nextInt(-400, 500);
+            qualities[0] = 1;
+
+            for (int rr = 1; rr < count; rr++)
+            {
+                // Mostly hourly : a few gaps (and a few other steps).
+                hours[rr] = hours[rr - 1] + (random.nextInt(20) == 0 ? 1 + random.nextInt(5_000) : 1);
+                temps[rr] = (short) Math.clamp(temps[rr - 1] + random.nextInt(-30, 31), -900, 900);
+                qualities[rr] = random.nextInt(50) == 0 ? (byte) new int[]{0, 1, 2, 9}[random.nextInt(4)] : qualities[rr - 1];
+            }
+
+            assertRoundTrip(hours, temps, qualities);
+        }
+    }
+
+    private static void assertRoundTrip(int[] hours, short[] temps, byte[] qualities)
+    {
+        final MeteoSeriesCodec.Block block = MeteoSeriesCodec.decode(MeteoSeriesCodec.encode(hours, temps, qualities, hours.length));
+
+        assertEquals(hours.length, block.count);
+        assertArrayEquals(hours, block.hours);
+        assertArrayEquals(temps, block.temps);
+        assertArrayEquals(qualities, block.qualities);
+    }
+
+    @Test
+    void file() throws IOException
+    {
+        new MeteoSynthetic(folder.resolve("H"), new int[]{13, 83}, 3, 2018, 2020).missingRate(0.05).write();
+
+        final Path file = folder.resolve("observations.series");
+
+        try (final MeteoColumnStore store = MeteoColumnStore.load(new MeteoH(folder.resolve("H").toString()), new MeteoFilter()))
+        {
+            MeteoSeriesFile.write(store, file);
+
+            try (final MeteoSeriesFile.Reader reader = MeteoSeriesFile.open(file))
+            {
+                // A block per station and year.
+                assertEquals(store.stationCount() * 3, reader.blockCount());
+
+                for (int station = 0; station < store.stationCount(); station++)
+                {
+                    final int stationId = store.stationId(station);
+
+                    assertEquals(rows(store, station, 1780, 2026), rows(reader, stationId, 1780, 2026));
+
+                    // The blocks of the other years skipped.
+                    assertEquals(rows(store, station, 2019, 2019), rows(reader, stationId, 2019, 2019));
+                    assertEquals(rows(store, station, 2019, 2020), rows(reader, stationId, 2019, 2020));
+                    assertEquals(rows(store, station, 2018, 2018), rows(reader, stationId, 1900, 2018));
+
+                    assertEquals(List.of(), rows(reader, stationId, 2021, 2026));
+                    assertEquals(List.of(), rows(reader, stationId, 2020, 2019));
+                }
+
+                assertEquals(List.of(), rows(reader, 99_999_999, 1780, 2026));
+            }
+        }
+    }
+
+    private static List<String> rows(MeteoColumnStore store, int station, int fromYear, int toYear)
+    {
+        final List<String> rows = new ArrayList<>();
+
+        final long from = store.stationOffset(station);
+
+        for (long row = from; row < from + store.stationRowCount(station); row++)
+        {
+            final int year = LocalDate.ofEpochDay(Math.floorDiv(store.hour(row), 24)).getYear();
+
+            if (year >= fromYear && year <= toYear)
+            {
+                rows.add(store.stationId(station) + ";" + store.hour(row) + ";" + store.temp(row) + ";" + store.quality(row));
+            }
+        }
+
+        return rows;
+    }
+
+    private static List<String> rows(MeteoSeriesFile.Reader reader, int stationId, int fromYear, int toYear) throws IOException
+    {
+        final List<String> rows = new ArrayList<>();
+
+        final long count = reader.read(stationId, fromYear, toYear, (id, hour, temp, quality) -> rows.add(id + ";" + hour + ";" + temp + ";" + quality));
+
+        assertEquals(rows.size(), count);
+
+        return rows;
+    }
+}
@@ -0,0 +1,58 @@
+package crazydev.meteo;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The masks of a 64 bytes chunk compared as 16, 32 or 64 bytes vectors (i.e., the preferred species of the CPU).
+ * <p>
+ * Only loaded if the jdk.incubator.vector module is available (--add-modules jdk.incubator.vector).
+ */
+class MeteoVectorMasks implements MeteoFieldScanner.Masks
+{
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final MeteoFieldScanner.Masks scalar = new MeteoFieldScanner.ScalarMasks();
+
+    MeteoVectorMasks()
+    {
+        if (MeteoFieldScanner.CHUNK % SPECIES.length() != 0)
+        {
+            throw new RuntimeException("OUCH!");
+        }
+    }
+
+    @Override
+    public void masks(byte[] buffer, int offset, int length, byte separator, long[] masks)
+    {
+        // The end of the data.
+        if (length < MeteoFieldScanner.CHUNK)
+        {
+            scalar.masks(buffer, offset, length, separator, masks);
+            return;
+        }
+
+        long separators = 0;
+        long newlines = 0;
+        long quotes = 0;
+
+        for (int ii = 0; ii < MeteoFieldScanner.CHUNK; ii += SPECIES.length())
+        {
+            final ByteVector bytes = ByteVector.fromArray(SPECIES, buffer, offset + ii);
+
+            separators |= bytes.eq(separator).toLong() << ii;
+            newlines |= bytes.eq((byte) '\n').toLong() << ii;
+            quotes |= bytes.eq((byte) '"').toLong() << ii;
+        }
+
+        masks[0] = separators;
+        masks[1] = newlines;
+        masks[2] = quotes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "vector (%d bytes)".formatted(SPECIES.length());
+    }
+}